@@ -0,0 +1,404 @@
+package kostiq.kostiqai;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import net.fabricmc.api.ModInitializer;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerTickEvents;
+import net.fabricmc.fabric.api.gametest.v1.CustomTestProvider;
+import net.fabricmc.fabric.api.gametest.v1.FabricGameTest;
+import net.fabricmc.loader.api.FabricLoader;
+import net.fabricmc.loader.api.entrypoint.EntrypointContainer;
+import net.minecraft.SharedConstants;
+import net.minecraft.block.BlockState;
+import net.minecraft.block.Blocks;
+import net.minecraft.entity.Entity;
+import net.minecraft.entity.EntityType;
+import net.minecraft.entity.EquipmentSlot;
+import net.minecraft.entity.ItemEntity;
+import net.minecraft.entity.SpawnReason;
+import net.minecraft.entity.player.PlayerEntity;
+import net.minecraft.item.ItemStack;
+import net.minecraft.item.Items;
+import net.minecraft.server.network.ServerPlayerEntity;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.test.TestContext;
+import net.minecraft.test.TestFunction;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.Box;
+import net.minecraft.util.math.Vec3d;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.BiConsumer;
+
+/**
+ * Per-action cost suite ({@code ./gradlew runGametest}).
+ * Every test builds the same fixed arena (33x33 stone floor, 9 blocks deep, clear air above), puts a
+ * mock player in the middle with armor, a full inventory and loose items around, and runs one action
+ * through {@link Kostiqai#runActionNow} with fixed parameters. Tests are generated from
+ * {@link ActionCatalog#ALL_TYPES}, so a new action type is measured without touching this class.
+ * It records the action body's own time (median and trimmed mean of warmed-up runs), the server tick
+ * time before and after, changed block states and entity counts at fixed points, and whether the
+ * arena is back to its original state once rollbacks and despawns have run. Each action is its own
+ * batch, so tests run one at a time and don't skew each other's tick times.
+ * <p>
+ * Results go to {@code -Dkostiqai.perf.report} (JSON). With {@code -Dkostiqai.perf.baseline} pointing
+ * at an earlier report, an action whose median body time got more than 1.5x (+0.25 ms) slower fails
+ * its test.
+ */
+public class ActionCostGameTest implements FabricGameTest {
+
+    private static final Logger LOG = LoggerFactory.getLogger("kostiqai");
+
+    private static final int HALF = 16, DEPTH = 9, HEIGHT = 24;
+    private static final int WARMUP = 20;                 // ticks of baseline before the action
+    private static final int WARM_RUNS = 4, SAMPLES = 9;  // discarded and timed runs of the body
+    private static final int[] PROBES = {1, 5, 20, 60, 140};
+    private static final int SETTLE = 320;                // rollbacks (<=200t) and the temporary wither (300t) are done by then
+    private static final int TICK_LIMIT = WARMUP + SETTLE + 2 * (WARM_RUNS + SAMPLES) + SETTLE + 40;
+    private static final double REGRESSION_FACTOR = 1.5;
+    private static final long REGRESSION_SLACK_NS = 250_000;
+
+    private static final Map<String, JsonObject> RESULTS = new ConcurrentSkipListMap<>();
+    private static boolean directorPaused = false;
+
+    public ActionCostGameTest() { TickSampler.register(); }
+
+    // ===== ACTIONS =====
+    // Fixed parameters per type; a catalog type without an entry runs with its defaults.
+    private static final Map<String, Object[]> PARAMS = Map.ofEntries(
+            Map.entry("CAGE", new Object[]{"material", "minecraft:glass", "radius", 3, "height", 10, "duration_ticks", 200}),
+            Map.entry("SPAWN", new Object[]{"entity", "minecraft:zombie", "count", 8, "radius", 4}),
+            Map.entry("ITEM_MAGNET", new Object[]{"radius", 25}),
+            Map.entry("WITHER_MAYBE", new Object[]{"chance", 1.0}),
+            Map.entry("LAVA_TRAP", new Object[]{"duration_ticks", 200}),
+            Map.entry("ICE_RING", new Object[]{"radius", 5, "duration_ticks", 200}),
+            Map.entry("BOUNCY_FLOOR", new Object[]{"duration_ticks", 200}),
+            Map.entry("HONEY_TRAP", new Object[]{"duration_ticks", 200}),
+            Map.entry("SAND_DRIZZLE", new Object[]{"duration_ticks", 200}),
+            Map.entry("FIRE_UNDER", new Object[]{"duration_ticks", 200}),
+            Map.entry("FLOOR_PULL", new Object[]{"depth", 8, "duration_ticks", 200}),
+            Map.entry("PISTON_SHOVE", new Object[]{"dx", 6, "dz", 0, "up", 1.2}),
+            Map.entry("YEET_EXPLOSION", new Object[]{"power", 3.0}),
+            Map.entry("BERSERK", new Object[]{"seconds", 10}),
+            Map.entry("SWITCH_WHILE_MINING", new Object[]{"watch_seconds", 6}),
+            Map.entry("RUBBERBAND", new Object[]{"delay_ticks", 40}),
+            Map.entry("FLIP_VIEW", new Object[]{"seconds", 8}),
+            Map.entry("HYPER_SPEED", new Object[]{"seconds", 8, "amplifier", 20}),
+            Map.entry("LEVITATE_LONG", new Object[]{"seconds", 12}),
+            Map.entry("LEVITATE", new Object[]{"seconds", 4}),
+            Map.entry("SLOW", new Object[]{"seconds", 10, "amplifier", 1}),
+            Map.entry("FATIGUE", new Object[]{"seconds", 12, "amplifier", 1}),
+            Map.entry("NAUSEA", new Object[]{"seconds", 8}),
+            Map.entry("BLIND", new Object[]{"seconds", 5})
+    );
+
+    // Extra world setup an action needs to do anything at all.
+    private static final Map<String, BiConsumer<ServerWorld, BlockPos>> FIXTURES = Map.of(
+            "FORCE_RIDE", (sw, center) -> EntityType.PIG.spawn(sw, center.add(3, 0, 0), SpawnReason.COMMAND)
+    );
+
+    // One test per catalog type, each in its own batch.
+    @CustomTestProvider
+    public Collection<TestFunction> costs() {
+        List<TestFunction> out = new ArrayList<>();
+        for (String type : ActionCatalog.ALL_TYPES) {
+            String id = type.toLowerCase(Locale.ROOT);
+            JsonObject action = action(type, PARAMS.getOrDefault(type, new Object[0]));
+            BiConsumer<ServerWorld, BlockPos> fixture = FIXTURES.get(type);
+            out.add(new TestFunction("kostiqai_cost_" + id, "kostiqai.cost." + id, EMPTY_STRUCTURE, TICK_LIMIT, 0, true,
+                    ctx -> measure(ctx, action, fixture)));
+        }
+        return out;
+    }
+
+    // ===== HARNESS =====
+    // Phase 1 (tick WARMUP): one cold run, probed for blocks and entities until everything has settled.
+    // Phase 2: the fixture is rebuilt before every run, WARM_RUNS more runs are discarded so the body
+    // is JIT-compiled, then SAMPLES runs are timed and reduced to a median and a trimmed mean.
+    private void measure(TestContext ctx, JsonObject action, BiConsumer<ServerWorld, BlockPos> fixture) {
+        String type = action.get("type").getAsString();
+        ServerWorld sw = ctx.getWorld();
+        BlockPos center = ctx.getAbsolutePos(new BlockPos(0, 1, 0));
+        Box box = new Box(center.getX() - HALF, center.getY() - DEPTH - 1, center.getZ() - HALF,
+                center.getX() + HALF + 1, center.getY() + HEIGHT, center.getZ() + HALF + 1);
+
+        pauseDirector(sw);
+        buildArena(sw, center);
+        ServerPlayerEntity player = ctx.createMockServerPlayerInWorld();
+        player.getAbilities().invulnerable = true; // lava, fire and mobs must not kill it between runs
+        setUp(sw, center, box, player, fixture);
+
+        BlockState[] before = capture(sw, center);
+        int entitiesBefore = entities(sw, box);
+        long baselineFrom = TickSampler.now();
+
+        JsonObject row = new JsonObject();
+        row.addProperty("action", type);
+        int[] peakBlocks = {0}, peakEntities = {entitiesBefore};
+        long[] mark = new long[1];
+        long[] samples = new long[SAMPLES];
+
+        ctx.runAtTick(WARMUP, () -> {
+            mark[0] = TickSampler.now();
+            long t0 = System.nanoTime();
+            JsonObject params = mod().runActionNow(sw.getServer(), player, action);
+            long bodyNs = System.nanoTime() - t0;
+            ctx.assertTrue(params != null, "unknown action " + type);
+            row.add("params", params);
+            row.addProperty("bodyNanosCold", bodyNs);
+            row.add("tickBefore", TickSampler.stats(baselineFrom, mark[0]));
+        });
+        for (int p : PROBES) {
+            ctx.runAtTick(WARMUP + p, () -> {
+                peakBlocks[0] = Math.max(peakBlocks[0], changed(sw, center, before));
+                peakEntities[0] = Math.max(peakEntities[0], entities(sw, box));
+            });
+        }
+        int timed = WARMUP + SETTLE;
+        ctx.runAtTick(timed, () -> {
+            row.add("tickAfter", TickSampler.stats(mark[0], TickSampler.now()));
+            row.addProperty("blocksChangedPeak", peakBlocks[0]);
+            row.addProperty("blocksNotRestored", changed(sw, center, before));
+            row.addProperty("entitiesBefore", entitiesBefore);
+            row.addProperty("entitiesPeak", peakEntities[0]);
+            row.addProperty("entitiesAfter", entities(sw, box));
+        });
+        // every run gets the same starting point: fresh arena, player and fixture one tick before it
+        for (int i = 0; i < WARM_RUNS + SAMPLES; i++) {
+            final int run = i;
+            int at = timed + 1 + 2 * i;
+            ctx.runAtTick(at, () -> {
+                buildArena(sw, center);
+                setUp(sw, center, box, player, fixture);
+            });
+            ctx.runAtTick(at + 1, () -> {
+                long t0 = System.nanoTime();
+                mod().runActionNow(sw.getServer(), player, action);
+                long bodyNs = System.nanoTime() - t0;
+                if (run >= WARM_RUNS) samples[run - WARM_RUNS] = bodyNs;
+            });
+        }
+        // the timed runs left rollbacks behind; let them finish before the arena is torn down
+        ctx.runAtTick(timed + 2 * (WARM_RUNS + SAMPLES) + SETTLE, () -> {
+            Arrays.sort(samples);
+            long median = samples[SAMPLES / 2];
+            row.addProperty("bodyNanosMedian", median);
+            row.addProperty("bodyNanosTrimmedMean", trimmedMean(samples));
+            row.addProperty("bodyNanosMin", samples[0]);
+            row.addProperty("bodyNanosMax", samples[SAMPLES - 1]);
+            row.addProperty("warmRuns", WARM_RUNS);
+            row.addProperty("samples", SAMPLES);
+            RESULTS.put(type, row);
+            LOG.info("[KostiqAI] cost {}: body median={}us cold={}us peakBlocks={} peakEntities={}", type,
+                    median / 1000, row.get("bodyNanosCold").getAsLong() / 1000, peakBlocks[0], peakEntities[0]);
+            writeReport();
+            String regression = regression(type, median);
+
+            sw.getServer().getPlayerManager().remove(player);
+            for (Entity e : sw.getEntitiesByClass(Entity.class, box, e -> !(e instanceof PlayerEntity))) e.discard();
+            clearArena(sw, center);
+            ctx.assertTrue(regression == null, regression);
+            ctx.complete();
+        });
+    }
+
+    // Clears what earlier runs left behind and puts the player, loose items and fixture back.
+    private static void setUp(ServerWorld sw, BlockPos center, Box box, ServerPlayerEntity player, BiConsumer<ServerWorld, BlockPos> fixture) {
+        for (Entity e : sw.getEntitiesByClass(Entity.class, box, e -> !(e instanceof PlayerEntity))) e.discard();
+        player.stopRiding();
+        player.clearStatusEffects();
+        player.extinguish();
+        player.setHealth(player.getMaxHealth());
+        player.setVelocity(Vec3d.ZERO);
+        player.fallDistance = 0;
+        player.requestTeleport(center.getX() + 0.5, center.getY(), center.getZ() + 0.5);
+        equip(player);
+        scatterItems(sw, center);
+        if (fixture != null) fixture.accept(sw, center);
+    }
+
+    // Mean of the sorted samples without the lowest and highest fifth.
+    private static long trimmedMean(long[] sorted) {
+        int cut = sorted.length / 5;
+        long sum = 0;
+        for (int i = cut; i < sorted.length - cut; i++) sum += sorted[i];
+        return sum / Math.max(1, sorted.length - 2 * cut);
+    }
+
+    private static JsonObject action(String type, Object... kv) {
+        JsonObject o = new JsonObject();
+        o.addProperty("type", type);
+        o.addProperty("reason", "perf suite");
+        for (int i = 0; i < kv.length; i += 2) {
+            if (kv[i + 1] instanceof Number n) o.addProperty((String) kv[i], n);
+            else o.addProperty((String) kv[i], String.valueOf(kv[i + 1]));
+        }
+        return o;
+    }
+
+    private static Kostiqai mod() {
+        for (EntrypointContainer<ModInitializer> c : FabricLoader.getInstance().getEntrypointContainers("main", ModInitializer.class))
+            if (c.getEntrypoint() instanceof Kostiqai k) return k;
+        throw new IllegalStateException("KostiqAI entrypoint not loaded");
+    }
+
+    // The director must not plan against the mock players while we measure.
+    private static void pauseDirector(ServerWorld sw) {
+        if (directorPaused) return;
+        sw.getServer().getCommandManager().executeWithPrefix(sw.getServer().getCommandSource(), "kostiqai toggle off");
+        directorPaused = true;
+    }
+
+    // ===== ARENA =====
+    private static void buildArena(ServerWorld sw, BlockPos center) {
+        BlockPos.Mutable m = new BlockPos.Mutable();
+        for (int dx = -HALF; dx <= HALF; dx++) for (int dz = -HALF; dz <= HALF; dz++) {
+            for (int dy = -DEPTH; dy < HEIGHT; dy++) {
+                m.set(center.getX() + dx, center.getY() + dy, center.getZ() + dz);
+                sw.setBlockState(m, dy < 0 ? Blocks.STONE.getDefaultState() : Blocks.AIR.getDefaultState(), 2);
+            }
+        }
+    }
+
+    private static void clearArena(ServerWorld sw, BlockPos center) {
+        BlockPos.Mutable m = new BlockPos.Mutable();
+        for (int dx = -HALF; dx <= HALF; dx++) for (int dz = -HALF; dz <= HALF; dz++) {
+            for (int dy = -DEPTH; dy < HEIGHT; dy++) {
+                m.set(center.getX() + dx, center.getY() + dy, center.getZ() + dz);
+                sw.setBlockState(m, Blocks.AIR.getDefaultState(), 2);
+            }
+        }
+    }
+
+    private static void equip(ServerPlayerEntity p) {
+        p.equipStack(EquipmentSlot.HEAD, new ItemStack(Items.IRON_HELMET));
+        p.equipStack(EquipmentSlot.CHEST, new ItemStack(Items.IRON_CHESTPLATE));
+        p.equipStack(EquipmentSlot.LEGS, new ItemStack(Items.IRON_LEGGINGS));
+        p.equipStack(EquipmentSlot.FEET, new ItemStack(Items.IRON_BOOTS));
+        for (int i = 0; i < 27; i++) p.getInventory().setStack(i, new ItemStack(i % 2 == 0 ? Items.COBBLESTONE : Items.BREAD, 32));
+    }
+
+    private static void scatterItems(ServerWorld sw, BlockPos center) {
+        for (int i = 0; i < 32; i++) {
+            double a = i * (Math.PI / 16), r = 4 + (i % 4) * 3;
+            ItemEntity item = new ItemEntity(sw, center.getX() + 0.5 + Math.cos(a) * r, center.getY() + 0.5, center.getZ() + 0.5 + Math.sin(a) * r,
+                    new ItemStack(Items.STICK, 4));
+            item.setPickupDelay(32767);
+            sw.spawnEntity(item);
+        }
+    }
+
+    private static BlockState[] capture(ServerWorld sw, BlockPos center) {
+        int side = 2 * HALF + 1;
+        BlockState[] out = new BlockState[side * side * (DEPTH + HEIGHT)];
+        BlockPos.Mutable m = new BlockPos.Mutable();
+        int i = 0;
+        for (int dx = -HALF; dx <= HALF; dx++) for (int dz = -HALF; dz <= HALF; dz++) for (int dy = -DEPTH; dy < HEIGHT; dy++)
+            out[i++] = sw.getBlockState(m.set(center.getX() + dx, center.getY() + dy, center.getZ() + dz));
+        return out;
+    }
+
+    private static int changed(ServerWorld sw, BlockPos center, BlockState[] before) {
+        BlockState[] now = capture(sw, center);
+        int n = 0;
+        for (int i = 0; i < now.length; i++) if (now[i] != before[i]) n++;
+        return n;
+    }
+
+    private static int entities(ServerWorld sw, Box box) {
+        return sw.getEntitiesByClass(Entity.class, box, e -> !(e instanceof PlayerEntity)).size();
+    }
+
+    // ===== REPORT =====
+    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+
+    private static synchronized void writeReport() {
+        JsonObject root = new JsonObject();
+        root.addProperty("generated", Instant.now().toString());
+        root.addProperty("minecraft", SharedConstants.getGameVersion().getName());
+        JsonArray rows = new JsonArray();
+        RESULTS.values().forEach(rows::add);
+        root.add("results", rows);
+        Path out = Path.of(System.getProperty("kostiqai.perf.report", "kostiqai-action-costs.json"));
+        try {
+            if (out.getParent() != null) Files.createDirectories(out.getParent());
+            Files.writeString(out, GSON.toJson(root), StandardCharsets.UTF_8);
+        } catch (Exception e) {
+            LOG.warn("[KostiqAI] could not write perf report {}", out, e);
+        }
+    }
+
+    private static JsonObject baseline;
+
+    // Message when the action body regressed against the baseline report, else null.
+    private static String regression(String type, long medianNs) {
+        String path = System.getProperty("kostiqai.perf.baseline");
+        if (path == null || path.isBlank()) return null;
+        try {
+            if (baseline == null) {
+                baseline = new JsonObject();
+                JsonObject root = JsonParser.parseString(Files.readString(Path.of(path), StandardCharsets.UTF_8)).getAsJsonObject();
+                for (JsonElement e : root.getAsJsonArray("results"))
+                    baseline.add(e.getAsJsonObject().get("action").getAsString(), e);
+            }
+        } catch (Exception e) {
+            LOG.warn("[KostiqAI] could not read perf baseline {}", path, e);
+            return null;
+        }
+        if (!baseline.has(type)) return null;
+        JsonElement was = baseline.getAsJsonObject(type).get("bodyNanosMedian");
+        if (was == null) return null; // report from before the median was recorded
+        long limit = (long) (was.getAsLong() * REGRESSION_FACTOR) + REGRESSION_SLACK_NS;
+        return medianNs <= limit ? null : String.format(Locale.ROOT, "%s body median %dus, baseline %dus (limit %dus)",
+                type, medianNs / 1000, was.getAsLong() / 1000, limit / 1000);
+    }
+
+    // ===== TICK TIMES =====
+    // Full server tick durations (START to END, so the mod's own tick work is inside) in a ring buffer.
+    static final class TickSampler {
+        private static final int SIZE = 1 << 12;
+        private static final long[] RING = new long[SIZE];
+        private static long ticks, startNanos;
+        private static boolean registered;
+
+        static synchronized void register() {
+            if (registered) return;
+            registered = true;
+            ServerTickEvents.START_SERVER_TICK.register(s -> startNanos = System.nanoTime());
+            ServerTickEvents.END_SERVER_TICK.register(s -> RING[(int) (ticks++ & (SIZE - 1))] = System.nanoTime() - startNanos);
+        }
+
+        static long now() { return ticks; }
+
+        static JsonObject stats(long from, long to) {
+            from = Math.max(from, to - SIZE);
+            long n = Math.max(0, to - from), sum = 0, max = 0;
+            for (long t = from; t < to; t++) {
+                long v = RING[(int) (t & (SIZE - 1))];
+                sum += v;
+                max = Math.max(max, v);
+            }
+            JsonObject o = new JsonObject();
+            o.addProperty("ticks", n);
+            o.addProperty("meanNanos", n == 0 ? 0 : sum / n);
+            o.addProperty("maxNanos", max);
+            return o;
+        }
+    }
+}
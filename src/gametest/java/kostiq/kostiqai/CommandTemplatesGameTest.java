@@ -0,0 +1,73 @@
+package kostiq.kostiqai;
+
+import net.fabricmc.fabric.api.gametest.v1.FabricGameTest;
+import net.minecraft.entity.EntityType;
+import net.minecraft.entity.effect.StatusEffects;
+import net.minecraft.entity.passive.PigEntity;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.network.ServerPlayerEntity;
+import net.minecraft.test.GameTest;
+import net.minecraft.test.TestContext;
+import net.minecraft.util.math.BlockPos;
+
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * {TARGET} binding in {@link CommandTemplates}: a placeholder is only bound as the source entity when
+ * it sits in the root command; past an {@code execute as/at} redirect it must fall back to text,
+ * otherwise {@code @s} would resolve against the forked sources instead of the target.
+ */
+public class CommandTemplatesGameTest implements FabricGameTest {
+
+    private static final Set<String> ALLOW = Set.of("execute", "effect", "particle", "tp");
+
+    @GameTest(templateName = EMPTY_STRUCTURE, batchId = "kostiqai_templates")
+    public void modes(TestContext ctx) {
+        MinecraftServer server = ctx.getWorld().getServer();
+        CommandTemplates templates = templates();
+
+        expect(ctx, templates, server, "effect give {TARGET} minecraft:speed 5 1", CommandTemplates.Mode.BIND);
+        // tp is an alias: it is allowlisted as typed, but its arguments live in the redirected context
+        expect(ctx, templates, server, "tp {TARGET} ~ ~1 ~", CommandTemplates.Mode.TEXT);
+        expect(ctx, templates, server, "execute as @a run tp @s ~ ~1 ~", CommandTemplates.Mode.PLAIN);
+        expect(ctx, templates, server, "execute at {TARGET} run particle minecraft:flame ~ ~1 ~", CommandTemplates.Mode.BIND);
+        expect(ctx, templates, server, "execute as @a at {TARGET} run particle minecraft:flame ~ ~1 ~", CommandTemplates.Mode.TEXT);
+        expect(ctx, templates, server, "execute as @a run effect give {TARGET} minecraft:speed 5 1", CommandTemplates.Mode.TEXT);
+        expect(ctx, templates, server, "execute at {TARGET} run tp {TARGET} ~ ~1 ~", CommandTemplates.Mode.TEXT);
+        ctx.assertFalse(templates.compile(server, "teleport {TARGET} ~ ~1 ~", ALLOW).ok(), "teleport is not allowlisted");
+        ctx.complete();
+    }
+
+    @GameTest(templateName = EMPTY_STRUCTURE, batchId = "kostiqai_templates")
+    public void targetAfterRedirect(TestContext ctx) {
+        MinecraftServer server = ctx.getWorld().getServer();
+        CommandTemplates templates = templates();
+        ServerPlayerEntity player = ctx.createMockServerPlayerInWorld();
+        PigEntity pig = ctx.spawnEntity(EntityType.PIG, new BlockPos(1, 1, 1));
+
+        // bound as @s, this would hand the effect to every forked source (the pig) instead of the player
+        CommandTemplates.Template t = templates.compile(server,
+                "execute as @e[type=minecraft:pig,distance=..16] at @s run effect give {TARGET} minecraft:glowing 5", ALLOW);
+        ctx.assertTrue(t.ok(), "rejected: " + t.reason());
+        try {
+            templates.execute(server, t, player);
+        } catch (Exception e) {
+            ctx.throwGameTestException("execute failed: " + e.getMessage());
+        }
+        ctx.assertTrue(player.hasStatusEffect(StatusEffects.GLOWING), "target did not get the effect");
+        ctx.assertFalse(pig.hasStatusEffect(StatusEffects.GLOWING), "forked source got the effect");
+        server.getPlayerManager().remove(player);
+        ctx.complete();
+    }
+
+    private static CommandTemplates templates() {
+        return new CommandTemplates(16, new ParsedCommandCache(16, new LongAdder(), new LongAdder()));
+    }
+
+    private static void expect(TestContext ctx, CommandTemplates templates, MinecraftServer server, String template, CommandTemplates.Mode mode) {
+        CommandTemplates.Template t = templates.compile(server, template, ALLOW);
+        ctx.assertTrue(t.ok(), template + ": rejected (" + t.reason() + ")");
+        ctx.assertTrue(t.mode() == mode, template + ": expected " + mode + ", got " + t.mode());
+    }
+}
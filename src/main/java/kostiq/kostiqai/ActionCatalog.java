@@ -0,0 +1,70 @@
+package kostiq.kostiqai;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Action type tables: every type the director knows, its severity tier and the pools used for
+ * same-tier substitutions. No game types in here, so the planners and the offline simulator share it.
+ */
+final class ActionCatalog {
+
+    private ActionCatalog() {}
+
+    // List of all action types for the heuristic planner
+    static final List<String> ALL_TYPES = List.of(
+            "SLOW", "FATIGUE", "NAUSEA", "BLIND", "LEVITATE", "LEVITATE_LONG", "HOTBAR_SHUFFLE", "SWITCH_WHILE_MINING",
+            "ICE_RING", "BOUNCY_FLOOR", "HONEY_TRAP", "SAND_DRIZZLE", "FIRE_UNDER", "UNEQUIP_ARMOR", "RUBBERBAND",
+            "CAGE", "SPAWN", "PISTON_SHOVE", "DROP_INVENTORY",
+            "WITHER_MAYBE", "LAVA_TRAP",
+            "YEET_EXPLOSION", "HYPER_SPEED", "ITEM_MAGNET", "FLOOR_PULL",
+            // New in v7
+            "WITHER_TEMPORARY", "BERSERK", "FLIP_VIEW", "INVENTORY_SPAM", "FORCE_RIDE"
+    );
+
+    // Actions that write blocks into the world (paused by the governor when the server is critical)
+    static final Set<String> WORLD_EDIT_TYPES = Set.of(
+            "CAGE", "ICE_RING", "BOUNCY_FLOOR", "HONEY_TRAP", "SAND_DRIZZLE", "FIRE_UNDER", "LAVA_TRAP", "FLOOR_PULL"
+    );
+
+    // Substitution pools when a pick is on cooldown or overused
+    static final List<String> HEADLINES = List.of(
+            "CAGE", "SPAWN", "LAVA_TRAP", "ICE_RING", "SAND_DRIZZLE", "BOUNCY_FLOOR", "HONEY_TRAP", "PISTON_SHOVE", "DROP_INVENTORY", "FIRE_UNDER", "UNEQUIP_ARMOR"
+    );
+    static final List<String> FLOURISHES = List.of(
+            "SLOW", "FATIGUE", "NAUSEA", "BLIND", "LEVITATE", "LEVITATE_LONG", "HOTBAR_SHUFFLE", "SWITCH_WHILE_MINING", "RUBBERBAND"
+    );
+    // Headlines a MILD player never gets as a substitute
+    static final Set<String> MILD_EXCLUDED = Set.of(
+            "LAVA_TRAP", "SAND_DRIZZLE", "PISTON_SHOVE", "SPAWN", "CAGE", "DROP_INVENTORY", "FIRE_UNDER", "UNEQUIP_ARMOR"
+    );
+
+    // bit index of each type in Cfg.bannedMask
+    private static final Map<String, Integer> BIT = new HashMap<>();
+    static { for (int i = 0; i < ALL_TYPES.size(); i++) BIT.put(ALL_TYPES.get(i), i); }
+
+    /** Bit index of a known type, or -1. */
+    static int bit(String type) {
+        Integer b = BIT.get(type);
+        return b == null ? -1 : b;
+    }
+
+    static int severityOf(String type) {
+        if (type == null) return 1;
+        return switch (type) {
+            // Flourishes (mild) - Severity 1
+            case "SLOW","FATIGUE","NAUSEA","BLIND","LEVITATE","HOTBAR_SHUFFLE","SWITCH_WHILE_MINING", "ITEM_MAGNET", "RUBBERBAND", "INVENTORY_SPAM" -> 1;
+            // Visible but modest - Severity 2
+            case "ICE_RING","BOUNCY_FLOOR","HONEY_TRAP","SAND_DRIZZLE","FIRE_UNDER","UNEQUIP_ARMOR", "LEVITATE_LONG", "YEET_EXPLOSION", "HYPER_SPEED", "FORCE_RIDE", "FLIP_VIEW" -> 2;
+            // Spicy mid - Severity 3
+            case "CAGE","SPAWN", "PISTON_SHOVE", "DROP_INVENTORY", "FLOOR_PULL", "BERSERK" -> 3;
+            // Hot - Severity 4
+            case "WITHER_MAYBE", "WITHER_TEMPORARY" -> 4;
+            // Legendary (rare) - Severity 5
+            case "LAVA_TRAP" -> 5;
+            default -> 2;
+        };
+    }
+}
@@ -0,0 +1,69 @@
+package kostiq.kostiqai;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Learned per-type cost of action bodies on the server thread.
+ * Keeps an EWMA of measured nanos plus its mean deviation and budgets with mean + 2 * deviation,
+ * so a type that is usually cheap but occasionally spiky is not underestimated. Types not seen
+ * yet start from a conservative prior. Server thread only.
+ */
+final class ActionCostModel {
+
+    private static final double ALPHA = 0.2;   // weight of a new sample in the mean
+    private static final double BETA = 0.25;   // weight of a new sample in the deviation
+    private static final long PRIOR_EDIT_NS = 1_500_000;
+    private static final long PRIOR_HEAVY_NS = 1_000_000;
+    private static final long PRIOR_EFFECT_NS = 100_000;
+
+    static final class Stats {
+        long count;
+        double meanNs, devNs, blocks, entities;
+        long maxNs;
+
+        long estimateNs() { return (long) (meanNs + 2.0 * devNs); }
+    }
+
+    private final Map<String, Stats> byType = new HashMap<>();
+
+    void record(String type, long nanos, int blocks, int entities) {
+        Stats s = byType.computeIfAbsent(type, k -> new Stats());
+        if (s.count == 0) {
+            s.meanNs = nanos; s.devNs = nanos / 2.0; s.blocks = blocks; s.entities = entities;
+        } else {
+            s.devNs += BETA * (Math.abs(nanos - s.meanNs) - s.devNs);
+            s.meanNs += ALPHA * (nanos - s.meanNs);
+            s.blocks += ALPHA * (blocks - s.blocks);
+            s.entities += ALPHA * (entities - s.entities);
+        }
+        s.count++;
+        s.maxNs = Math.max(s.maxNs, nanos);
+    }
+
+    long estimateNanos(String type) {
+        Stats s = byType.get(type);
+        if (s != null) return s.estimateNs();
+        if (ActionCatalog.WORLD_EDIT_TYPES.contains(type)) return PRIOR_EDIT_NS;
+        if (TickGovernor.HEAVY_TYPES.contains(type)) return PRIOR_HEAVY_NS;
+        return PRIOR_EFFECT_NS;
+    }
+
+    // One line per seen type, most expensive first.
+    List<String> report() {
+        List<Map.Entry<String, Stats>> rows = new ArrayList<>(byType.entrySet());
+        rows.sort((a, b) -> Long.compare(b.getValue().estimateNs(), a.getValue().estimateNs()));
+        List<String> out = new ArrayList<>(rows.size());
+        for (var e : rows) {
+            Stats s = e.getValue();
+            out.add(String.format(Locale.ROOT, "%s n=%d est=%.3fms mean=%.3fms max=%.3fms blocks=%.1f entities=%.1f",
+                    e.getKey(), s.count, s.estimateNs() / 1e6, s.meanNs / 1e6, s.maxNs / 1e6, s.blocks, s.entities));
+        }
+        return out;
+    }
+
+    void reset() { byType.clear(); }
+}
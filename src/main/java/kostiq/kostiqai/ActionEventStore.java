@@ -0,0 +1,164 @@
+package kostiq.kostiqai;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Rolling in-memory action history for windowed /kostiqai stats queries.
+ * Events go into fixed-size segments of parallel primitive arrays (tick, type id, player slot,
+ * outcome, cost); whole segments are dropped once they age out of the retention window, so memory
+ * stays bounded and a query is a scan over a few packed arrays. Type and player names are interned
+ * to small ints; the tables are rebuilt from what is still retained whenever segments are dropped,
+ * so players who left long ago don't pile up. Server thread only.
+ */
+final class ActionEventStore {
+
+    static final int SEGMENT_SIZE = 4096;
+    private static final int MAX_SEGMENTS = 256;  // hard cap (~1M events) whatever the retention
+
+    enum GroupBy { TYPE, PLAYER, OUTCOME }
+
+    record Row(String key, int count, int failed, long costMicros) {}
+    record Result(int events, int failed, long costMicros, List<Row> rows) {}
+
+    private static final class Segment {
+        final int[] tick = new int[SEGMENT_SIZE];
+        final short[] type = new short[SEGMENT_SIZE];
+        final int[] player = new int[SEGMENT_SIZE];
+        final boolean[] ok = new boolean[SEGMENT_SIZE];
+        final int[] costMicros = new int[SEGMENT_SIZE];
+        int size;
+
+        int firstTick() { return tick[0]; }
+        int lastTick() { return tick[size - 1]; }
+
+        // first index with tick >= t (ticks are appended in order)
+        int lowerBound(int t) {
+            int lo = 0, hi = size;
+            while (lo < hi) { int mid = (lo + hi) >>> 1; if (tick[mid] < t) lo = mid + 1; else hi = mid; }
+            return lo;
+        }
+    }
+
+    private final ArrayDeque<Segment> segments = new ArrayDeque<>();
+    private final List<String> typeNames = new ArrayList<>();
+    private final Map<String, Integer> typeIds = new HashMap<>();
+    private final List<String> playerNames = new ArrayList<>();
+    private final Map<String, Integer> playerIds = new HashMap<>();
+    private long total;
+
+    void append(int tick, String type, String player, boolean ok, long costNanos, int retentionTicks) {
+        Segment s = segments.peekLast();
+        if (s == null || s.size == SEGMENT_SIZE) {
+            evict(tick, retentionTicks);
+            s = new Segment();
+            segments.addLast(s);
+        }
+        int i = s.size++;
+        s.tick[i] = tick;
+        s.type[i] = (short) intern(typeIds, typeNames, type);
+        s.player[i] = intern(playerIds, playerNames, player);
+        s.ok[i] = ok;
+        s.costMicros[i] = (int) Math.min(Integer.MAX_VALUE, Math.max(0, costNanos / 1000));
+        total++;
+    }
+
+    // Drops whole segments that ended before the window (and the oldest past the hard cap). Called on
+    // append, before queries and periodically, so a quiet server doesn't keep stale history around.
+    void evict(int now, int retentionTicks) {
+        int before = segments.size();
+        while (!segments.isEmpty() && (segments.peekFirst().size == 0 || segments.peekFirst().lastTick() < now - retentionTicks))
+            segments.removeFirst();
+        while (segments.size() >= MAX_SEGMENTS) segments.removeFirst();
+        if (segments.size() != before) compactNames();
+    }
+
+    // Re-interns only the names retained events still use and rewrites their ids in place.
+    private void compactNames() {
+        int[] typeMap = new int[typeNames.size()], playerMap = new int[playerNames.size()];
+        Arrays.fill(typeMap, -1);
+        Arrays.fill(playerMap, -1);
+        List<String> types = new ArrayList<>(), players = new ArrayList<>();
+        for (Segment s : segments) {
+            for (int i = 0; i < s.size; i++) {
+                int t = s.type[i], p = s.player[i];
+                if (typeMap[t] < 0) { typeMap[t] = types.size(); types.add(typeNames.get(t)); }
+                if (playerMap[p] < 0) { playerMap[p] = players.size(); players.add(playerNames.get(p)); }
+                s.type[i] = (short) typeMap[t];
+                s.player[i] = playerMap[p];
+            }
+        }
+        rebuild(typeIds, typeNames, types);
+        rebuild(playerIds, playerNames, players);
+    }
+
+    private static void rebuild(Map<String, Integer> ids, List<String> names, List<String> kept) {
+        names.clear();
+        names.addAll(kept);
+        ids.clear();
+        for (int i = 0; i < kept.size(); i++) ids.put(kept.get(i), i);
+    }
+
+    private static int intern(Map<String, Integer> ids, List<String> names, String key) {
+        Integer id = ids.get(key);
+        if (id != null) return id;
+        names.add(key);
+        ids.put(key, names.size() - 1);
+        return names.size() - 1;
+    }
+
+    /**
+     * Events with tick >= sinceTick, optionally filtered to one type, one player and/or one outcome,
+     * grouped by the given column and sorted by count (top {@code limit} rows).
+     */
+    Result query(int sinceTick, GroupBy by, String typeFilter, String playerFilter, Boolean okFilter, int limit) {
+        int wantType = typeFilter == null ? -1 : typeIds.getOrDefault(typeFilter, -2);
+        int wantPlayer = playerFilter == null ? -1 : playerIds.getOrDefault(playerFilter, -2);
+        if (wantType == -2 || wantPlayer == -2) return new Result(0, 0, 0, List.of());
+
+        int groups = switch (by) { case TYPE -> typeNames.size(); case PLAYER -> playerNames.size(); case OUTCOME -> 2; };
+        int[] count = new int[groups], failed = new int[groups];
+        long[] cost = new long[groups];
+        int events = 0, fails = 0;
+        long costSum = 0;
+
+        for (Iterator<Segment> it = segments.descendingIterator(); it.hasNext(); ) {
+            Segment s = it.next();
+            if (s.size == 0 || s.lastTick() < sinceTick) break;
+            for (int i = s.firstTick() >= sinceTick ? 0 : s.lowerBound(sinceTick); i < s.size; i++) {
+                if (wantType >= 0 && s.type[i] != wantType) continue;
+                if (wantPlayer >= 0 && s.player[i] != wantPlayer) continue;
+                if (okFilter != null && s.ok[i] != okFilter) continue;
+                int g = switch (by) { case TYPE -> s.type[i]; case PLAYER -> s.player[i]; case OUTCOME -> s.ok[i] ? 0 : 1; };
+                count[g]++;
+                cost[g] += s.costMicros[i];
+                events++;
+                costSum += s.costMicros[i];
+                if (!s.ok[i]) { failed[g]++; fails++; }
+            }
+        }
+
+        List<Row> rows = new ArrayList<>();
+        for (int g = 0; g < groups; g++) {
+            if (count[g] == 0) continue;
+            String key = switch (by) { case TYPE -> typeNames.get(g); case PLAYER -> playerNames.get(g); case OUTCOME -> g == 0 ? "ok" : "failed"; };
+            rows.add(new Row(key, count[g], failed[g], cost[g]));
+        }
+        rows.sort((a, b) -> Integer.compare(b.count(), a.count()));
+        if (rows.size() > limit) rows = new ArrayList<>(rows.subList(0, Math.max(0, limit)));
+        return new Result(events, fails, costSum, rows);
+    }
+
+    long total() { return total; }
+
+    int retained() {
+        int n = 0;
+        for (Segment s : segments) n += s.size;
+        return n;
+    }
+}
@@ -0,0 +1,52 @@
+package kostiq.kostiqai;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.time.Instant;
+
+/**
+ * One executed action as handed from the server thread to the log writer. Formatting (JSON line
+ * or binary record) happens on the writer thread; params must not be mutated after handoff.
+ */
+record ActionLogEntry(long epochMillis, int tick, String type, String target, boolean ok,
+                      long costNanos, int blocks, int entities, JsonObject params) {
+
+    // Streams one log object straight to the writer; no intermediate tree or string.
+    void write(JsonWriter w) throws IOException {
+        w.beginObject();
+        w.name("ts").value(Instant.ofEpochMilli(epochMillis).toString());
+        w.name("tick").value(tick);
+        w.name("type").value(type);
+        w.name("target").value(target);
+        w.name("ok").value(ok);
+        w.name("duration_ms").value(Math.round(costNanos / 1_000.0) / 1_000.0);
+        w.name("blocks").value(blocks);
+        w.name("entities").value(entities);
+        if (params != null) { w.name("params"); element(w, params); }
+        w.endObject();
+    }
+
+    private static void element(JsonWriter w, JsonElement e) throws IOException {
+        if (e == null || e.isJsonNull()) { w.nullValue(); return; }
+        if (e.isJsonPrimitive()) {
+            JsonPrimitive p = e.getAsJsonPrimitive();
+            if (p.isBoolean()) w.value(p.getAsBoolean());
+            else if (p.isNumber()) w.value(p.getAsNumber());
+            else w.value(p.getAsString());
+            return;
+        }
+        if (e.isJsonArray()) {
+            w.beginArray();
+            for (JsonElement x : e.getAsJsonArray()) element(w, x);
+            w.endArray();
+            return;
+        }
+        w.beginObject();
+        for (var m : e.getAsJsonObject().entrySet()) { w.name(m.getKey()); element(w, m.getValue()); }
+        w.endObject();
+    }
+}
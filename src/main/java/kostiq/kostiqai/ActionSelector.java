@@ -0,0 +1,113 @@
+package kostiq.kostiqai;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * The rules between a plan and the action bodies, for one cycle of one director: severity and
+ * governor downshifts, one use of a type per cycle, fair target choice, the minor-repeat skip,
+ * per-player and per-world substitutions, and the bookkeeping after an action ran. No game types in
+ * here, so the mod's runActions and the offline simulator apply exactly the same rules.
+ * Server thread only; create one per cycle.
+ */
+final class ActionSelector {
+
+    private final Kostiqai.Cfg cfg;
+    private final PlayerPacing pacing;
+    private final DiversityWindow diversity;
+    private final Predicate<String> governorAllows;
+    private final int maxSeverity, tick;
+    private final boolean safeWindow, perTarget;
+    private final Random rng;
+    private final Set<String> used = new HashSet<>();
+
+    ActionSelector(Kostiqai.Cfg cfg, PlayerPacing pacing, DiversityWindow diversity, Predicate<String> governorAllows,
+                   int maxSeverity, boolean safeWindow, int tick, Random rng) {
+        this.cfg = cfg; this.pacing = pacing; this.diversity = diversity; this.governorAllows = governorAllows;
+        this.maxSeverity = maxSeverity; this.safeWindow = safeWindow; this.tick = tick; this.rng = rng;
+        // a plan-all batch repeats types across players: uniqueness is then per type and target
+        this.perTarget = cfg.planAll.enabled;
+    }
+
+    int cap() { return perTarget ? cfg.planAll.maxActions : cfg.maxActionsPerCycle; }
+
+    boolean perTarget() { return perTarget; }
+
+    int maxSeverity() { return maxSeverity; }
+
+    private boolean usable(String type) { return !cfg.banned(type) && governorAllows.test(type); }
+
+    // Over the severity cap or held back by the governor: a same-tier substitute, or null to drop the action.
+    String admit(String type) {
+        if (ActionCatalog.severityOf(type) > maxSeverity) {
+            type = HeuristicPlanner.alternateAtSeverity(type, maxSeverity, this::usable, false, safeWindow, rng);
+            if (type == null) return null;
+        }
+        if (!governorAllows.test(type)) type = HeuristicPlanner.alternateAtSeverity(type, maxSeverity, this::usable, false, safeWindow, rng);
+        return type;
+    }
+
+    // A type already used this cycle is swapped for a substitute when there is one; either way it is marked used.
+    String unique(String type, String requestedTarget) {
+        if (used.contains(key(type, requestedTarget))) {
+            String alt = HeuristicPlanner.alternateAtSeverity(type, maxSeverity, this::usable, false, safeWindow, rng);
+            if (alt != null) type = alt;
+        }
+        used.add(key(type, requestedTarget));
+        return type;
+    }
+
+    private String key(String type, String requestedTarget) { return perTarget ? type + "|" + requestedTarget : type; }
+
+    // Eligible players, least recently hit first; everyone when nobody is eligible.
+    <P> List<P> candidates(Collection<P> online, Predicate<P> eligible, Function<P, UUID> id) {
+        List<P> out = new ArrayList<>();
+        for (P p : online) if (eligible.test(p)) out.add(p);
+        if (out.isEmpty()) out.addAll(online);
+        out.sort(Comparator.comparingInt(p -> pacing.lastAction(id.apply(p))));
+        return out;
+    }
+
+    // Random pick from the less recently hit half of sorted candidates.
+    <P> P pickFair(List<P> candidates) {
+        return candidates.get(rng.nextInt(Math.max(1, candidates.size() / 2)));
+    }
+
+    // Minor types are not repeated on a player who had them recently; the headline traps may repeat.
+    static boolean minorRepeat(Collection<String> recent, String type) {
+        return recent.contains(type) && !type.equals("CAGE") && !type.equals("SPAWN") && !type.equals("LAVA_TRAP");
+    }
+
+    // Per-player type cooldown, then per-world overuse: the type to run on this player, or null to skip them.
+    String forPlayer(String type, UUID player, boolean mild, Collection<String> recent) {
+        if (pacing.typeOnCooldown(player, type, tick)) {
+            type = HeuristicPlanner.alternate(type, this::usable, mild, recent, rng);
+            if (type == null) return null;
+        }
+        if (diversity.overused(type, cfg.maxTypeShare)) type = HeuristicPlanner.alternate(type, this::usable, mild, recent, rng);
+        return type;
+    }
+
+    // After a successful action: recent list, world diversity, per-type cooldown and fairness.
+    void acted(UUID player, String type, Deque<String> recent) {
+        recent.addLast(type);
+        if (recent.size() > 4) recent.removeFirst();
+        diversity.remember(type, cfg.globalDiversityWindow);
+        pacing.armType(player, type, tick + Math.max(40, cfg.perActionCooldownTicks));
+        pacing.acted(player, tick);
+    }
+
+    // The any-action cooldown; plan-all arms it once per player after the whole batch.
+    void arm(UUID player) {
+        pacing.arm(player, tick + Math.max(40, cfg.playerCooldownTicks));
+    }
+}
@@ -0,0 +1,281 @@
+package kostiq.kostiqai;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonPrimitive;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Compact action log: fixed-size segment files written through a memory-mapped buffer, rolled over
+ * when full and pruned to the newest {@code maxSegments}.
+ *
+ * <pre>
+ * segment  := header record* 0:int32
+ * header   := "KAIE":int32 version:int16 0:int16 index:int64 createdMillis:int64
+ * record   := length:int32 kind:int8 body          (length covers kind + body)
+ * STRING   := id:varint utf8-bytes                 (defines a string id for this segment)
+ * EVENT    := millis:int64 tick:varint type:varint target:varint ok:int8 costNanos:varlong
+ *             blocks:varint entities:varint nParams:varint (key:varint tag:int8 value)*
+ * value    := STR id:varint | LONG zigzag-varlong | DOUBLE float64 | BOOL int8
+ * </pre>
+ * Every segment carries its own string table, so any single file decodes on its own. The writer is
+ * single-threaded (the log thread); {@link #read} is for offline tools.
+ */
+final class BinaryEventLog implements Closeable {
+
+    static final int MAGIC = 0x4B414945; // "KAIE"
+    static final short VERSION = 1;
+    static final int HEADER_BYTES = 24;
+    static final String SUFFIX = ".kbl";
+
+    static final byte KIND_STRING = 1, KIND_EVENT = 2;
+    static final byte TAG_STR = 0, TAG_LONG = 1, TAG_DOUBLE = 2, TAG_BOOL = 3;
+
+    private final Path dir;
+    private final int segmentBytes;
+    private final int maxSegments;
+
+    private FileChannel channel;
+    private MappedByteBuffer buf;
+    private long index;
+    private final Map<String, Integer> strings = new HashMap<>();
+
+    BinaryEventLog(Path dir, int segmentBytes, int maxSegments) throws IOException {
+        this.dir = dir;
+        this.segmentBytes = Math.max(64 * 1024, segmentBytes);
+        this.maxSegments = Math.max(1, maxSegments);
+        Files.createDirectories(dir);
+        List<Path> existing = segments(dir);
+        this.index = existing.isEmpty() ? 0 : indexOf(existing.get(existing.size() - 1));
+        roll();
+    }
+
+    Path dir() { return dir; }
+
+    // Appends one entry, rolling to a new segment if it doesn't fit. False if it is larger than a whole segment.
+    boolean append(ActionLogEntry e) throws IOException {
+        for (int attempt = 0; attempt < 2; attempt++) {
+            int mark = buf.position(), known = strings.size();
+            try {
+                write(e);
+                buf.putInt(buf.position(), 0); // keep the end marker right after the last record
+                return true;
+            } catch (BufferOverflowException | IndexOutOfBoundsException full) {
+                buf.position(mark);
+                buf.putInt(mark, 0);
+                strings.values().removeIf(id -> id >= known); // their definitions were cut off with the record
+                if (attempt == 0) roll();
+            }
+        }
+        return false;
+    }
+
+    private void write(ActionLogEntry e) {
+        int type = str(e.type()), target = str(e.target());
+        int[] keys = null;
+        if (e.params() != null) {
+            keys = new int[e.params().size()];
+            int i = 0;
+            for (var p : e.params().entrySet()) {
+                keys[i++] = str(p.getKey());
+                JsonElement v = p.getValue();
+                if (v.isJsonPrimitive() && v.getAsJsonPrimitive().isString()) str(v.getAsString());
+                else if (!v.isJsonPrimitive()) str(v.toString());
+            }
+        }
+        int start = beginRecord(KIND_EVENT);
+        buf.putLong(e.epochMillis());
+        putVarLong(buf, e.tick());
+        putVarLong(buf, type);
+        putVarLong(buf, target);
+        buf.put((byte) (e.ok() ? 1 : 0));
+        putVarLong(buf, e.costNanos());
+        putVarLong(buf, e.blocks());
+        putVarLong(buf, e.entities());
+        putVarLong(buf, keys == null ? 0 : keys.length);
+        if (keys != null) {
+            int i = 0;
+            for (var p : e.params().entrySet()) {
+                putVarLong(buf, keys[i++]);
+                putValue(p.getValue());
+            }
+        }
+        endRecord(start);
+    }
+
+    private void putValue(JsonElement v) {
+        if (v.isJsonPrimitive()) {
+            JsonPrimitive p = v.getAsJsonPrimitive();
+            if (p.isBoolean()) { buf.put(TAG_BOOL); buf.put((byte) (p.getAsBoolean() ? 1 : 0)); return; }
+            if (p.isNumber()) {
+                Number n = p.getAsNumber();
+                if (n instanceof Integer || n instanceof Long || n instanceof Short || n instanceof Byte) {
+                    buf.put(TAG_LONG); putVarLong(buf, zigzag(n.longValue()));
+                } else {
+                    buf.put(TAG_DOUBLE); buf.putDouble(n.doubleValue());
+                }
+                return;
+            }
+            buf.put(TAG_STR); putVarLong(buf, strings.get(p.getAsString()));
+            return;
+        }
+        buf.put(TAG_STR); putVarLong(buf, strings.get(v.toString()));
+    }
+
+    // Interns a string, writing its definition record the first time this segment sees it.
+    private int str(String s) {
+        if (s == null) s = "";
+        Integer id = strings.get(s);
+        if (id != null) return id;
+        int nid = strings.size();
+        int start = beginRecord(KIND_STRING);
+        putVarLong(buf, nid);
+        buf.put(s.getBytes(StandardCharsets.UTF_8));
+        endRecord(start);
+        strings.put(s, nid);
+        return nid;
+    }
+
+    private int beginRecord(byte kind) {
+        int start = buf.position();
+        buf.putInt(0);
+        buf.put(kind);
+        return start;
+    }
+
+    private void endRecord(int start) { buf.putInt(start, buf.position() - start - 4); }
+
+    private void roll() throws IOException {
+        closeSegment();
+        index++;
+        Path file = dir.resolve(String.format("events-%06d%s", index, SUFFIX));
+        channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        buf = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+        buf.putInt(MAGIC).putShort(VERSION).putShort((short) 0).putLong(index).putLong(System.currentTimeMillis());
+        buf.putInt(buf.position(), 0);
+        strings.clear();
+        prune();
+    }
+
+    private void prune() throws IOException {
+        List<Path> all = segments(dir);
+        for (int i = 0; i < all.size() - maxSegments; i++) Files.deleteIfExists(all.get(i));
+    }
+
+    private void closeSegment() throws IOException {
+        if (buf != null) buf.force();
+        if (channel != null) channel.close();
+        buf = null;
+        channel = null;
+    }
+
+    void force() { if (buf != null) buf.force(); }
+
+    @Override public void close() throws IOException { closeSegment(); }
+
+    // ===== READING =====
+
+    record Event(long epochMillis, int tick, String type, String target, boolean ok,
+                 long costNanos, int blocks, int entities, Map<String, Object> params) {}
+
+    // Segment files in a directory, oldest first.
+    static List<Path> segments(Path dir) throws IOException {
+        if (!Files.isDirectory(dir)) return List.of();
+        try (Stream<Path> s = Files.list(dir)) {
+            return s.filter(p -> p.getFileName().toString().startsWith("events-") && p.getFileName().toString().endsWith(SUFFIX))
+                    .sorted((a, b) -> Long.compare(indexOf(a), indexOf(b)))
+                    .toList();
+        }
+    }
+
+    private static long indexOf(Path p) {
+        String n = p.getFileName().toString();
+        try { return Long.parseLong(n.substring("events-".length(), n.length() - SUFFIX.length())); }
+        catch (NumberFormatException e) { return -1; }
+    }
+
+    // Decodes every event in one segment, stopping at the end marker or a torn record.
+    static void read(Path file, Consumer<Event> out) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer b = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+            if (b.remaining() < HEADER_BYTES || b.getInt() != MAGIC) throw new IOException("not a KostiqAI event segment: " + file);
+            short version = b.getShort();
+            if (version != VERSION) throw new IOException("unsupported segment version " + version + ": " + file);
+            b.position(HEADER_BYTES);
+            List<String> table = new ArrayList<>();
+            while (b.remaining() >= 4) {
+                int len = b.getInt();
+                if (len <= 0 || len > b.remaining()) break;
+                int end = b.position() + len;
+                byte kind = b.get();
+                if (kind == KIND_STRING) {
+                    int id = (int) getVarLong(b);
+                    byte[] bytes = new byte[end - b.position()];
+                    b.get(bytes);
+                    while (table.size() <= id) table.add("");
+                    table.set(id, new String(bytes, StandardCharsets.UTF_8));
+                } else if (kind == KIND_EVENT) {
+                    long millis = b.getLong();
+                    int tick = (int) getVarLong(b);
+                    String type = table.get((int) getVarLong(b));
+                    String target = table.get((int) getVarLong(b));
+                    boolean ok = b.get() != 0;
+                    long cost = getVarLong(b);
+                    int blocks = (int) getVarLong(b);
+                    int entities = (int) getVarLong(b);
+                    int n = (int) getVarLong(b);
+                    Map<String, Object> params = new LinkedHashMap<>();
+                    for (int i = 0; i < n; i++) {
+                        String key = table.get((int) getVarLong(b));
+                        byte tag = b.get();
+                        params.put(key, switch (tag) {
+                            case TAG_STR -> table.get((int) getVarLong(b));
+                            case TAG_LONG -> unzigzag(getVarLong(b));
+                            case TAG_DOUBLE -> b.getDouble();
+                            case TAG_BOOL -> b.get() != 0;
+                            default -> throw new IOException("bad value tag " + tag + " in " + file);
+                        });
+                    }
+                    out.accept(new Event(millis, tick, type, target, ok, cost, blocks, entities, params));
+                }
+                b.position(end); // skips unknown kinds written by newer versions
+            }
+        }
+    }
+
+    // ===== VARINTS =====
+
+    static void putVarLong(ByteBuffer b, long v) {
+        while ((v & ~0x7FL) != 0) { b.put((byte) ((v & 0x7F) | 0x80)); v >>>= 7; }
+        b.put((byte) v);
+    }
+
+    static long getVarLong(ByteBuffer b) {
+        long v = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte x = b.get();
+            v |= (long) (x & 0x7F) << shift;
+            if ((x & 0x80) == 0) return v;
+        }
+        throw new IllegalStateException("varint too long");
+    }
+
+    private static long zigzag(long v) { return (v << 1) ^ (v >> 63); }
+    private static long unzigzag(long v) { return (v >>> 1) ^ -(v & 1); }
+}
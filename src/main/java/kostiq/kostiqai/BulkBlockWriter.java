@@ -0,0 +1,76 @@
+package kostiq.kostiqai;
+
+import net.minecraft.block.Block;
+import net.minecraft.block.BlockState;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.chunk.WorldChunk;
+
+import java.util.function.BooleanSupplier;
+import java.util.function.Predicate;
+
+/**
+ * Applies a {@link ShapeTemplates.Template} at an anchor, one chunk section at a time.
+ * Cells are bucketed by section (counting sort over the template's bounding box), each chunk is
+ * resolved once per section, unchanged cells are skipped and interior cells are written without
+ * neighbour updates. All writes land in the same tick, so vanilla sends one delta packet per section.
+ */
+final class BulkBlockWriter {
+
+    interface Recorder { void record(int x, int y, int z, BlockState previous); }
+
+    private BulkBlockWriter() {}
+
+    /** @return number of cells actually written */
+    static int apply(ServerWorld sw, BlockPos anchor, ShapeTemplates.Template tpl, BlockState state,
+                     Predicate<BlockState> onlyIf, BooleanSupplier budget, Recorder recorder) {
+        int[] cells = tpl.cells();
+        if (cells.length == 0) return 0;
+        int ax = anchor.getX(), ay = anchor.getY(), az = anchor.getZ();
+
+        // section grid covered by this placement
+        int sx0 = (ax + tpl.minDx()) >> 4, sy0 = (ay + tpl.minDy()) >> 4, sz0 = (az + tpl.minDz()) >> 4;
+        int nx = ((ax + tpl.maxDx()) >> 4) - sx0 + 1;
+        int ny = ((ay + tpl.maxDy()) >> 4) - sy0 + 1;
+        int nz = ((az + tpl.maxDz()) >> 4) - sz0 + 1;
+        int buckets = nx * ny * nz;
+
+        int[] sectionOf = new int[cells.length];
+        int[] start = new int[buckets + 1];
+        for (int i = 0; i < cells.length; i++) {
+            int c = cells[i];
+            int b = (((ay + ShapeTemplates.dy(c)) >> 4) - sy0) * nx * nz
+                    + (((ax + ShapeTemplates.dx(c)) >> 4) - sx0) * nz
+                    + (((az + ShapeTemplates.dz(c)) >> 4) - sz0);
+            sectionOf[i] = b;
+            start[b + 1]++;
+        }
+        for (int b = 0; b < buckets; b++) start[b + 1] += start[b];
+        int[] order = new int[cells.length];
+        int[] fill = start.clone();
+        for (int i = 0; i < cells.length; i++) order[fill[sectionOf[i]]++] = i;
+
+        int bottom = sw.getBottomY(), top = sw.getBottomY() + sw.getHeight();
+        BlockPos.Mutable m = new BlockPos.Mutable();
+        int written = 0;
+        for (int b = 0; b < buckets; b++) {
+            if (start[b] == start[b + 1]) continue;
+            WorldChunk chunk = null;
+            for (int k = start[b]; k < start[b + 1]; k++) {
+                int c = cells[order[k]];
+                int x = ax + ShapeTemplates.dx(c), y = ay + ShapeTemplates.dy(c), z = az + ShapeTemplates.dz(c);
+                if (y < bottom || y >= top) continue;
+                if (chunk == null) chunk = sw.getChunk(x >> 4, z >> 4);
+                m.set(x, y, z);
+                BlockState prev = chunk.getBlockState(m);
+                if (prev == state) continue;
+                if (onlyIf != null && !onlyIf.test(prev)) continue;
+                if (!budget.getAsBoolean()) return written;
+                recorder.record(x, y, z, prev);
+                sw.setBlockState(m, state, ShapeTemplates.surface(c) ? Block.NOTIFY_ALL : Block.NOTIFY_LISTENERS);
+                written++;
+            }
+        }
+        return written;
+    }
+}
@@ -0,0 +1,157 @@
+package kostiq.kostiqai;
+
+import com.mojang.brigadier.CommandDispatcher;
+import com.mojang.brigadier.ParseResults;
+import com.mojang.brigadier.context.CommandContextBuilder;
+import com.mojang.brigadier.context.ParsedArgument;
+import com.mojang.brigadier.context.ParsedCommandNode;
+import com.mojang.brigadier.context.StringRange;
+import com.mojang.brigadier.exceptions.CommandSyntaxException;
+import com.mojang.brigadier.tree.CommandNode;
+import com.mojang.brigadier.tree.LiteralCommandNode;
+import net.minecraft.command.EntitySelector;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.command.ServerCommandSource;
+import net.minecraft.server.network.ServerPlayerEntity;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * AI-issued commands compiled once per template.
+ * A template is parsed against the live dispatcher with {TARGET} replaced by {@code @s}, every
+ * command in the chain (including {@code execute ... run} redirects) is checked against the
+ * allowlist, and the result is cached by its whitespace-normalised text. When every placeholder sits
+ * in an entity argument of the root command (before any redirect) the cached parse is executed as-is
+ * with the target bound as the source entity; anywhere else (messages, NBT, selectors after
+ * {@code execute as ...}) the target name is substituted into the text instead. Both paths run from
+ * the server source with nothing but the entity changed, so position, rotation, world and permission
+ * level are the same whichever mode a template compiles to. Server thread only.
+ */
+final class CommandTemplates {
+
+    static final String TARGET = "{TARGET}";
+    private static final String BOUND = "@s";
+
+    enum Mode { PLAIN, BIND, TEXT }
+
+    /** A compiled template, or a rejection (parse == null, reason set). */
+    record Template(String text, Mode mode, ParseResults<ServerCommandSource> parse, String reason) {
+        boolean ok() { return reason == null; }
+        boolean targeted() { return mode != Mode.PLAIN; }
+    }
+
+    private final LinkedHashMap<String, Template> lru;
+    private final ParsedCommandCache textCache;
+    private CommandDispatcher<ServerCommandSource> boundTo;
+    private Set<String> allowFor;
+    private Set<String> allow = Set.of();
+
+    CommandTemplates(int capacity, ParsedCommandCache textCache) {
+        final int cap = Math.max(16, capacity);
+        this.textCache = textCache;
+        this.lru = new LinkedHashMap<>(cap * 4 / 3 + 1, 0.75f, true) {
+            @Override protected boolean removeEldestEntry(Map.Entry<String, Template> e) { return size() > cap; }
+        };
+    }
+
+    static String key(String template) { return template.trim().replaceAll("\\s+", " "); }
+
+    Template compile(MinecraftServer server, String template, Set<String> allowlist) {
+        CommandDispatcher<ServerCommandSource> d = server.getCommandManager().getDispatcher();
+        if (d != boundTo || allowlist != allowFor) {
+            lru.clear();
+            boundTo = d;
+            allowFor = allowlist;
+            allow = new HashSet<>();
+            for (String a : allowlist) allow.add(a.toLowerCase(Locale.ROOT));
+        }
+        String key = key(template);
+        Template t = lru.get(key);
+        if (t == null) {
+            t = build(d, server.getCommandSource(), key);
+            lru.put(key, t); // rejections are cached too, so a repeating model costs one lookup
+        }
+        return t;
+    }
+
+    private Template build(CommandDispatcher<ServerCommandSource> d, ServerCommandSource src, String key) {
+        String text = key.replace(TARGET, BOUND);
+        ParseResults<ServerCommandSource> parse = d.parse(text, src);
+        if (!parse.getExceptions().isEmpty() || parse.getReader().canRead()) return rejected(key, "does not parse");
+        if (lastChild(parse.getContext()).getCommand() == null) return rejected(key, "incomplete command");
+
+        CommandContextBuilder<ServerCommandSource> parent = null;
+        for (CommandContextBuilder<ServerCommandSource> c = parse.getContext(); c != null; parent = c, c = c.getChild()) {
+            String name = commandName(d, parent, c);
+            if (name == null || !allow.contains(name)) return rejected(key, "'" + name + "' is not allowlisted");
+        }
+
+        if (!key.contains(TARGET)) return new Template(key, Mode.PLAIN, parse, null);
+
+        // every placeholder must land exactly on an entity selector argument to be bindable
+        List<StringRange> slots = new ArrayList<>();
+        int delta = TARGET.length() - BOUND.length();
+        for (int at = key.indexOf(TARGET), k = 0; at >= 0; at = key.indexOf(TARGET, at + TARGET.length()), k++) {
+            int i = at - k * delta;
+            slots.add(StringRange.between(i, i + BOUND.length()));
+        }
+        // Only the root context is resolved against the source we bind; after a redirect (execute as/at ...)
+        // @s means whatever the fork put there, so a placeholder past the first redirect falls back to text.
+        int bound = 0;
+        for (ParsedArgument<ServerCommandSource, ?> a : parse.getContext().getArguments().values()) {
+            if (slots.contains(a.getRange()) && a.getResult() instanceof EntitySelector) bound++;
+        }
+        return new Template(key, bound == slots.size() ? Mode.BIND : Mode.TEXT, bound == slots.size() ? parse : null, null);
+    }
+
+    private static CommandContextBuilder<ServerCommandSource> lastChild(CommandContextBuilder<ServerCommandSource> c) {
+        while (c.getChild() != null) c = c.getChild();
+        return c;
+    }
+
+    // Literal that names the command a context runs: its first node from the root, or the redirect target.
+    // An alias (a bare top-level literal redirecting elsewhere, like tp -> teleport) is named as typed.
+    private static String commandName(CommandDispatcher<ServerCommandSource> d, CommandContextBuilder<ServerCommandSource> parent,
+                                      CommandContextBuilder<ServerCommandSource> c) {
+        CommandNode<ServerCommandSource> origin = c.getRootNode();
+        if (origin != d.getRoot()) {
+            if (parent != null && parent.getRootNode() == d.getRoot() && parent.getNodes().size() == 1) {
+                CommandNode<ServerCommandSource> alias = parent.getNodes().get(0).getNode();
+                if (alias.getRedirect() == origin && alias instanceof LiteralCommandNode<ServerCommandSource> l) return l.getLiteral().toLowerCase(Locale.ROOT);
+            }
+            return origin instanceof LiteralCommandNode<ServerCommandSource> l ? l.getLiteral().toLowerCase(Locale.ROOT) : null;
+        }
+        List<ParsedCommandNode<ServerCommandSource>> nodes = c.getNodes();
+        if (nodes.isEmpty()) return null;
+        return nodes.get(0).getNode() instanceof LiteralCommandNode<ServerCommandSource> l ? l.getLiteral().toLowerCase(Locale.ROOT) : null;
+    }
+
+    private static Template rejected(String key, String reason) { return new Template(key, Mode.PLAIN, null, reason); }
+
+    /** Runs a compiled template; {@code target} is required for targeted templates. */
+    int execute(MinecraftServer server, Template t, ServerPlayerEntity target) throws CommandSyntaxException {
+        switch (t.mode()) {
+            case PLAIN -> {
+                t.parse().getContext().withSource(server.getCommandSource());
+                return boundTo.execute(t.parse());
+            }
+            case BIND -> {
+                t.parse().getContext().withSource(server.getCommandSource().withEntity(target));
+                return boundTo.execute(t.parse());
+            }
+            default -> {
+                return textCache.execute(server, t.text().replace(TARGET, target.getGameProfile().getName()));
+            }
+        }
+    }
+
+    int size() { return lru.size(); }
+
+    void clear() { lru.clear(); boundTo = null; allowFor = null; }
+}
@@ -0,0 +1,109 @@
+package kostiq.kostiqai;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Owns all file I/O for the config file.
+ * A WatchService thread notices edits to the file and a single worker thread reads it
+ * (debounced) and hands the text to the listener; saves go through the same worker, so reads
+ * and writes never interleave and the server thread never touches the disk.
+ * The listener receives {@code null} when the file does not exist yet.
+ */
+final class ConfigWatcher {
+
+    private static final Logger LOG = LoggerFactory.getLogger("kostiqai");
+    private static final long DEBOUNCE_MS = 250;
+
+    private final Path file;
+    private final Consumer<String> listener;
+    private final ExecutorService worker = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "kostiqai-config"); t.setDaemon(true); return t;
+    });
+    private WatchService watch;
+    private Thread watchThread;
+    private volatile String lastWritten; // our own saves come back as modify events; skip those
+
+    ConfigWatcher(Path file, Consumer<String> listener) {
+        this.file = file;
+        this.listener = listener;
+    }
+
+    void start() {
+        reloadNow();
+        try {
+            Files.createDirectories(file.getParent());
+            watch = file.getFileSystem().newWatchService();
+            file.getParent().register(watch, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        } catch (Exception e) {
+            LOG.warn("[KostiqAI] config watch unavailable, use /kostiqai system reload", e);
+            return;
+        }
+        watchThread = new Thread(this::watchLoop, "kostiqai-config-watch");
+        watchThread.setDaemon(true);
+        watchThread.start();
+    }
+
+    void reloadNow() { worker.execute(() -> read(false)); }
+
+    void write(String text) {
+        worker.execute(() -> {
+            try {
+                Files.createDirectories(file.getParent());
+                lastWritten = text;
+                Files.writeString(file, text, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+                LOG.info("[KostiqAI] config saved to {}", file);
+            } catch (Exception e) {
+                LOG.warn("[KostiqAI] config save failed", e);
+            }
+        });
+    }
+
+    void stop() {
+        try { if (watch != null) watch.close(); } catch (Exception ignored) {}
+        worker.shutdown();
+        try { worker.awaitTermination(2, TimeUnit.SECONDS); } catch (InterruptedException e) { Thread.currentThread().interrupt(); }
+    }
+
+    private void watchLoop() {
+        Path name = file.getFileName();
+        try {
+            while (true) {
+                WatchKey key = watch.take();
+                boolean hit = key.pollEvents().stream().anyMatch(ev -> name.equals(ev.context()));
+                key.reset();
+                if (!hit) continue;
+                // editors write in bursts (truncate, write, rename); wait for the burst to settle
+                WatchKey more;
+                while ((more = watch.poll(DEBOUNCE_MS, TimeUnit.MILLISECONDS)) != null) { more.pollEvents(); more.reset(); }
+                worker.execute(() -> read(true));
+            }
+        } catch (ClosedWatchServiceException | InterruptedException ignored) {
+            // shutting down
+        }
+    }
+
+    private void read(boolean fromWatch) {
+        try {
+            if (Files.notExists(file)) { listener.accept(null); return; }
+            String raw = Files.readString(file, StandardCharsets.UTF_8);
+            if (fromWatch && raw.equals(lastWritten)) return;
+            listener.accept(raw);
+        } catch (Exception e) {
+            LOG.warn("[KostiqAI] config read failed, keeping the current snapshot", e);
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package kostiq.kostiqai;
+
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.network.ServerPlayerEntity;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Predicate;
+
+/**
+ * Effects that keep acting on a player for a while (FLIP_VIEW, SWITCH_WHILE_MINING).
+ * Active effects live in one list and are ticked in place: a countdown to expiry and one to the
+ * next firing. An effect drops out when it expires, when its player is offline at a firing, or
+ * when its body reports it is done. Starting the same type on the same player again extends the
+ * running effect instead of stacking a second one. Server thread only.
+ */
+final class ContinuousEffects {
+
+    private static final Logger LOG = LoggerFactory.getLogger("kostiqai");
+
+    // Runs at each firing; false ends the effect early.
+    interface Body { boolean fire(ServerPlayerEntity p); }
+
+    static final class Effect {
+        final int id;
+        final String type;
+        final UUID player;
+        final String playerName;
+        final int interval;
+        final Body body;
+        int left;        // ticks until expiry
+        int untilNext;   // ticks until the next firing
+
+        Effect(int id, String type, UUID player, String playerName, int durationTicks, int interval, int firstDelay, Body body) {
+            this.id = id; this.type = type; this.player = player; this.playerName = playerName;
+            this.interval = Math.max(1, interval); this.body = body;
+            this.left = durationTicks; this.untilNext = Math.max(1, firstDelay);
+        }
+    }
+
+    private final ArrayList<Effect> active = new ArrayList<>();
+    private int nextId = 1;
+
+    Effect start(String type, ServerPlayerEntity p, int durationTicks, int interval, int firstDelay, Body body) {
+        for (Effect e : active) {
+            if (e.type.equals(type) && e.player.equals(p.getUuid())) { e.left = Math.max(e.left, durationTicks); return e; }
+        }
+        Effect e = new Effect(nextId++, type, p.getUuid(), p.getGameProfile().getName(), durationTicks, interval, firstDelay, body);
+        active.add(e);
+        return e;
+    }
+
+    // Advances every effect by one tick and compacts finished ones out of the list.
+    void tick(MinecraftServer server) {
+        int w = 0, n = active.size();
+        for (int i = 0; i < n; i++) {
+            Effect e = active.get(i);
+            boolean keep = --e.left > 0;
+            if (--e.untilNext <= 0) {
+                e.untilNext = e.interval;
+                ServerPlayerEntity p = server.getPlayerManager().getPlayer(e.player);
+                try {
+                    keep = p != null && !p.isRemoved() && e.body.fire(p) && keep;
+                } catch (Exception ex) {
+                    keep = false;
+                    LOG.warn("[KostiqAI] effect {} on {} failed with {}", e.type, e.playerName, ex.toString());
+                }
+            }
+            if (keep) active.set(w++, e);
+        }
+        for (int i = n; i < active.size(); i++) active.set(w++, active.get(i)); // started by a body this tick
+        active.subList(w, active.size()).clear();
+    }
+
+    int cancel(Predicate<Effect> which) {
+        int before = active.size();
+        active.removeIf(which);
+        return before - active.size();
+    }
+
+    boolean isActive(Effect e) { return active.contains(e); }
+
+    boolean affects(UUID player) {
+        for (Effect e : active) if (e.player.equals(player)) return true;
+        return false;
+    }
+
+    List<Effect> list() { return List.copyOf(active); }
+
+    int size() { return active.size(); }
+}
@@ -0,0 +1,59 @@
+package kostiq.kostiqai;
+
+/**
+ * Global difficulty curve: which stage the server is in and whether a BALANCED nasty window is open.
+ * Driven purely by the tick counter, so the mod and the offline simulator advance it the same way.
+ * Server thread only.
+ */
+final class DifficultyCurve {
+
+    enum Difficulty { LINEAR, PROGRESSIVE, BALANCED }
+
+    private long startTick = 0;
+    private int stage = 1;
+    private boolean nasty = false;
+
+    int stage() { return stage; }
+
+    boolean nasty() { return nasty; }
+
+    /** Restarts the curve from stage 1 at {@code tick}. */
+    void reset(long tick) {
+        startTick = tick;
+        stage = 1;
+        nasty = false;
+    }
+
+    void update(long tick, Kostiqai.Cfg c) {
+        if (startTick == 0) startTick = tick;
+        switch (c.difficulty) {
+            case LINEAR -> {
+                stage = 1;
+                nasty = true;
+            }
+            case PROGRESSIVE -> {
+                long sec = (tick - startTick) / 20;
+                stage = (int) Math.max(1, Math.min(c.progMaxStage, (sec / Math.max(1, c.progStageSeconds)) + 1));
+                nasty = true;
+            }
+            case BALANCED -> {
+                int cycleTicks = (c.balSafeSeconds + c.balNastySeconds) * 20;
+                if (cycleTicks <= 0) { stage = 2; nasty = true; break; }
+                long elapsedTicks = tick - startTick;
+                long mod = elapsedTicks % cycleTicks;
+                nasty = (mod >= c.balSafeSeconds * 20L);
+                int baseStage = (int) Math.max(1, Math.min(c.progMaxStage, elapsedTicks / ((long) Math.max(1, c.progStageSeconds * 2) * 20) + 1));
+                stage = Math.max(1, Math.min(c.progMaxStage, baseStage + (nasty ? 1 : 0)));
+            }
+        }
+    }
+
+    /** Curve cap before the governor; Cfg.freeze() tabulates this per stage. */
+    static int cap(Difficulty d, int stage, boolean nasty) {
+        return switch (d) {
+            case LINEAR -> 3;
+            case PROGRESSIVE -> Math.min(5, stage + 1);
+            case BALANCED -> Math.min(5, stage + (nasty ? 1 : 0));
+        };
+    }
+}
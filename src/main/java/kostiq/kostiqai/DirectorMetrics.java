@@ -0,0 +1,198 @@
+package kostiq.kostiqai;
+
+import com.sun.net.httpserver.HttpServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Director counters and an optional Prometheus text-format endpoint.
+ * Everything here is LongAdder/volatile backed; the server thread only increments,
+ * and a scrape is rendered on the endpoint's own thread without touching game state.
+ */
+final class DirectorMetrics {
+
+    private static final Logger LOG = LoggerFactory.getLogger("kostiqai");
+
+    // Upper bounds in seconds, shared by all latency histograms.
+    private static final double[] LATENCY_BUCKETS = {0.0001, 0.0005, 0.001, 0.005, 0.01, 0.05, 0.1, 0.5, 1, 2.5, 5, 10, 30};
+
+    // ===== COUNTERS =====
+    final Map<String, LongAdder> actions = new ConcurrentHashMap<>();          // "TYPE|result"
+    final Map<String, LongAdder> plannerRequests = new ConcurrentHashMap<>();  // planner
+    final Map<String, LongAdder> fallbacks = new ConcurrentHashMap<>();        // reason
+    final Map<String, LongAdder> reactivePlans = new ConcurrentHashMap<>();    // event that crossed the threshold
+    final LongAdder backoffs = new LongAdder();
+    final LongAdder budgetExhausted = new LongAdder();
+    final LongAdder logDrops = new LongAdder();
+    final LongAdder stepsDeferred = new LongAdder();
+    final LongAdder spawnLookups = new LongAdder();
+    final LongAdder commandCacheHits = new LongAdder();
+    final LongAdder commandCacheMisses = new LongAdder();
+
+    // ===== LATENCY =====
+    final Map<String, Latency> plannerLatency = new ConcurrentHashMap<>();     // planner
+    final Map<String, Latency> actionLatency = new ConcurrentHashMap<>();      // type
+
+    // ===== GAUGES (published once per tick by the server thread) =====
+    volatile int pendingDepth;
+    volatile int stepQueueDepth;
+    volatile int activeEffects;
+    volatile int scheduledPlayers;
+    volatile int rollbackBacklog;
+    volatile int rollbackCells;
+    volatile int rollbackParkedChunks;
+    volatile long rollbackMerged;
+    volatile int governorLevel;
+    volatile long msptMicros;
+
+    static void inc(Map<String, LongAdder> m, String key) {
+        m.computeIfAbsent(key, k -> new LongAdder()).increment();
+    }
+
+    void action(String type, boolean ok) { inc(actions, type + "|" + (ok ? "ok" : "error")); }
+
+    void plannerLatency(String planner, long nanos) { plannerLatency.computeIfAbsent(planner, k -> new Latency()).record(nanos); }
+
+    void actionLatency(String type, long nanos) { actionLatency.computeIfAbsent(type, k -> new Latency()).record(nanos); }
+
+    static final class Latency {
+        final LongAdder[] buckets = new LongAdder[LATENCY_BUCKETS.length];
+        final LongAdder count = new LongAdder();
+        final LongAdder sumNanos = new LongAdder();
+        Latency() { for (int i = 0; i < buckets.length; i++) buckets[i] = new LongAdder(); }
+
+        void record(long nanos) {
+            double sec = nanos / 1e9;
+            for (int i = 0; i < LATENCY_BUCKETS.length; i++) {
+                if (sec <= LATENCY_BUCKETS[i]) { buckets[i].increment(); break; }
+            }
+            count.increment();
+            sumNanos.add(nanos);
+        }
+    }
+
+    // ===== RENDER =====
+    String render() {
+        StringBuilder sb = new StringBuilder(4096);
+        header(sb, "kostiqai_actions_total", "counter", "Director actions by type and result.");
+        for (var e : sorted(actions).entrySet()) {
+            String[] k = e.getKey().split("\\|", 2);
+            sb.append("kostiqai_actions_total{type=\"").append(esc(k[0])).append("\",result=\"").append(k.length > 1 ? k[1] : "").append("\"} ").append(e.getValue()).append('\n');
+        }
+        labeled(sb, "kostiqai_planner_requests_total", "Planning cycles by planner.", "planner", plannerRequests);
+        labeled(sb, "kostiqai_planner_fallbacks_total", "Heuristic fallbacks by reason.", "reason", fallbacks);
+        labeled(sb, "kostiqai_reactive_plans_total", "Targeted plans queued by a player's interest score, by the event that crossed the threshold.", "event", reactivePlans);
+        single(sb, "kostiqai_planner_backoffs_total", "counter", "AI planner backoff activations.", backoffs.sum());
+        single(sb, "kostiqai_block_budget_exhausted_total", "counter", "Block writes refused by the per-tick budget.", budgetExhausted.sum());
+        single(sb, "kostiqai_spawn_site_lookups_total", "counter", "Block state reads spent finding spawn sites.", spawnLookups.sum());
+        header(sb, "kostiqai_command_parse_cache_total", "counter", "Command dispatches by parse cache result.");
+        sb.append("kostiqai_command_parse_cache_total{result=\"hit\"} ").append(commandCacheHits.sum()).append('\n');
+        sb.append("kostiqai_command_parse_cache_total{result=\"miss\"} ").append(commandCacheMisses.sum()).append('\n');
+        single(sb, "kostiqai_log_buffer_drops_total", "counter", "Action log lines dropped because the write buffer was full.", logDrops.sum());
+        single(sb, "kostiqai_pending_queue_depth", "gauge", "Delayed work items waiting in the pending queue.", pendingDepth);
+        single(sb, "kostiqai_action_deferrals_total", "counter", "Action bodies held over a tick by the CPU budget (once per body per tick).", stepsDeferred.sum());
+        single(sb, "kostiqai_action_queue_depth", "gauge", "Action bodies waiting for CPU budget.", stepQueueDepth);
+        single(sb, "kostiqai_scheduled_players", "gauge", "Players holding a staggered planning deadline.", scheduledPlayers);
+        single(sb, "kostiqai_active_effects", "gauge", "Continuous effects (FLIP_VIEW, SWITCH_WHILE_MINING) currently running.", activeEffects);
+        single(sb, "kostiqai_rollback_backlog", "gauge", "Rollback jobs not yet applied.", rollbackBacklog);
+        single(sb, "kostiqai_rollback_cells", "gauge", "Distinct cells waiting to be restored across all rollback jobs.", rollbackCells);
+        single(sb, "kostiqai_rollback_parked_chunks", "gauge", "Chunks with due rollback cells waiting to be loaded.", rollbackParkedChunks);
+        single(sb, "kostiqai_rollback_cells_merged_total", "counter", "Rollback claims that landed on a cell another job already held.", rollbackMerged);
+        single(sb, "kostiqai_governor_level", "gauge", "MSPT governor level (0=normal, 1=strained, 2=critical).", governorLevel);
+        single(sb, "kostiqai_mspt_micros", "gauge", "Rolling mean server tick time in microseconds.", msptMicros);
+        histograms(sb, "kostiqai_planner_latency_seconds", "Planner request latency.", "planner", plannerLatency);
+        histograms(sb, "kostiqai_action_latency_seconds", "Action body execution time on the server thread.", "type", actionLatency);
+        return sb.toString();
+    }
+
+    private static <V> TreeMap<String, V> sorted(Map<String, V> m) { return new TreeMap<>(m); }
+
+    private static void header(StringBuilder sb, String name, String type, String help) {
+        sb.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        sb.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void single(StringBuilder sb, String name, String type, String help, long value) {
+        header(sb, name, type, help);
+        sb.append(name).append(' ').append(value).append('\n');
+    }
+
+    private static void labeled(StringBuilder sb, String name, String help, String label, Map<String, LongAdder> m) {
+        header(sb, name, "counter", help);
+        for (var e : sorted(m).entrySet())
+            sb.append(name).append('{').append(label).append("=\"").append(esc(e.getKey())).append("\"} ").append(e.getValue()).append('\n');
+    }
+
+    private static void histograms(StringBuilder sb, String name, String help, String label, Map<String, Latency> m) {
+        header(sb, name, "histogram", help);
+        for (var e : sorted(m).entrySet()) {
+            String l = label + "=\"" + esc(e.getKey()) + "\"";
+            Latency h = e.getValue();
+            long cumulative = 0;
+            for (int i = 0; i < LATENCY_BUCKETS.length; i++) {
+                cumulative += h.buckets[i].sum();
+                sb.append(name).append("_bucket{").append(l).append(",le=\"").append(LATENCY_BUCKETS[i]).append("\"} ").append(cumulative).append('\n');
+            }
+            long count = h.count.sum();
+            sb.append(name).append("_bucket{").append(l).append(",le=\"+Inf\"} ").append(count).append('\n');
+            sb.append(name).append("_sum{").append(l).append("} ").append(String.format(Locale.ROOT, "%.9f", h.sumNanos.sum() / 1e9)).append('\n');
+            sb.append(name).append("_count{").append(l).append("} ").append(count).append('\n');
+        }
+    }
+
+    private static String esc(String v) {
+        return v.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    // ===== HTTP ENDPOINT =====
+    private HttpServer http;
+    private ExecutorService httpExec;
+    private String boundTo;
+
+    synchronized void start(String host, int port) {
+        String want = host + ":" + port;
+        if (http != null && want.equals(boundTo)) return;
+        stop();
+        try {
+            HttpServer s = HttpServer.create(new InetSocketAddress(host, port), 0);
+            s.createContext("/metrics", ex -> {
+                try {
+                    if (!"GET".equalsIgnoreCase(ex.getRequestMethod())) { ex.sendResponseHeaders(405, -1); return; }
+                    byte[] body = render().getBytes(StandardCharsets.UTF_8);
+                    ex.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+                    ex.sendResponseHeaders(200, body.length);
+                    try (OutputStream os = ex.getResponseBody()) { os.write(body); }
+                } catch (IOException e) {
+                    LOG.debug("[KostiqAI] metrics scrape failed", e);
+                } finally {
+                    ex.close();
+                }
+            });
+            httpExec = Executors.newSingleThreadExecutor(r -> { Thread t = new Thread(r, "kostiqai-metrics"); t.setDaemon(true); return t; });
+            s.setExecutor(httpExec);
+            s.start();
+            http = s;
+            boundTo = want;
+            LOG.info("[KostiqAI] metrics endpoint on http://{}/metrics", want);
+        } catch (Exception e) {
+            LOG.warn("[KostiqAI] metrics endpoint failed to bind {}", want, e);
+        }
+    }
+
+    synchronized void stop() {
+        if (http != null) { http.stop(0); http = null; boundTo = null; }
+        if (httpExec != null) { httpExec.shutdownNow(); httpExec = null; }
+    }
+}
@@ -0,0 +1,34 @@
+package kostiq.kostiqai;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Sliding window of the last N action types one director ran, with running per-type counts
+ * so the "is this type overused" check is a map lookup instead of a scan.
+ */
+final class DiversityWindow {
+
+    private final Deque<String> recent = new ArrayDeque<>();
+    private final Map<String, Integer> counts = new HashMap<>();
+
+    void remember(String type, int capacity) {
+        if (type == null || type.isBlank()) return;
+        recent.addLast(type);
+        counts.merge(type, 1, Integer::sum);
+        while (recent.size() > Math.max(10, capacity)) {
+            String old = recent.removeFirst();
+            counts.computeIfPresent(old, (k, n) -> n > 1 ? n - 1 : null);
+        }
+    }
+
+    boolean overused(String type, double maxShare) {
+        if (recent.isEmpty()) return false;
+        double share = (double) counts.getOrDefault(type, 0) / (double) recent.size();
+        return share > Math.max(0.10, Math.min(0.90, maxShare));
+    }
+
+    int size() { return recent.size(); }
+}
@@ -0,0 +1,144 @@
+package kostiq.kostiqai;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Offline reader for {@link BinaryEventLog} segments: converts to JSONL (same shape as the text log)
+ * or CSV, filtered by time, type, player or outcome. No game classes needed.
+ *
+ * <pre>
+ * ./gradlew readEventLog --args="logs/kostiqai-events --format=csv --type=CAGE --since=2025-01-01T00:00:00Z"
+ * </pre>
+ */
+public final class EventLogTool {
+
+    private EventLogTool() {}
+
+    public static void main(String[] args) throws IOException {
+        List<Path> inputs = new ArrayList<>();
+        String format = "jsonl", type = null, player = null, out = null;
+        Boolean ok = null;
+        long since = Long.MIN_VALUE, until = Long.MAX_VALUE;
+        for (String a : args) {
+            if (a.startsWith("--format=")) format = a.substring(9).toLowerCase(Locale.ROOT);
+            else if (a.startsWith("--type=")) type = a.substring(7).toUpperCase(Locale.ROOT);
+            else if (a.startsWith("--player=")) player = a.substring(9);
+            else if (a.startsWith("--since=")) since = parseTime(a.substring(8));
+            else if (a.startsWith("--until=")) until = parseTime(a.substring(8));
+            else if (a.equals("--ok")) ok = true;
+            else if (a.equals("--failed")) ok = false;
+            else if (a.startsWith("--out=")) out = a.substring(6);
+            else if (a.startsWith("--")) { usage("unknown option " + a); return; }
+            else inputs.add(Path.of(a));
+        }
+        if (inputs.isEmpty()) { usage("no input"); return; }
+        if (!format.equals("jsonl") && !format.equals("csv")) { usage("format must be jsonl or csv"); return; }
+
+        List<Path> files = new ArrayList<>();
+        for (Path in : inputs) {
+            if (Files.isDirectory(in)) files.addAll(BinaryEventLog.segments(in));
+            else files.add(in);
+        }
+
+        final boolean csv = format.equals("csv");
+        final String fType = type, fPlayer = player;
+        final Boolean fOk = ok;
+        final long fSince = since, fUntil = until;
+        long[] written = {0};
+        try (Writer w = out == null
+                ? new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8))
+                : Files.newBufferedWriter(Path.of(out), StandardCharsets.UTF_8)) {
+            if (csv) w.write("ts,tick,type,target,ok,duration_ms,blocks,entities,params\n");
+            for (Path f : files) {
+                BinaryEventLog.read(f, e -> {
+                    if (e.epochMillis() < fSince || e.epochMillis() >= fUntil) return;
+                    if (fType != null && !fType.equals(e.type())) return;
+                    if (fPlayer != null && !fPlayer.equalsIgnoreCase(e.target())) return;
+                    if (fOk != null && fOk != e.ok()) return;
+                    try {
+                        w.write(csv ? csvRow(e) : jsonLine(e));
+                        written[0]++;
+                    } catch (IOException ex) { throw new UncheckedIOException(ex); }
+                });
+            }
+        }
+        System.err.printf(Locale.ROOT, "%d events from %d segment(s)%n", written[0], files.size());
+    }
+
+    private static long parseTime(String s) {
+        return s.chars().allMatch(Character::isDigit) ? Long.parseLong(s) : Instant.parse(s).toEpochMilli();
+    }
+
+    private static void usage(String why) {
+        System.err.println("EventLogTool: " + why);
+        System.err.println("usage: <segment-file|dir>... [--format=jsonl|csv] [--since=ISO|millis] [--until=ISO|millis]");
+        System.err.println("       [--type=TYPE] [--player=NAME] [--ok|--failed] [--out=file]");
+    }
+
+    private static String jsonLine(BinaryEventLog.Event e) {
+        StringBuilder sb = new StringBuilder(160);
+        sb.append("{\"ts\":"); str(sb, Instant.ofEpochMilli(e.epochMillis()).toString());
+        sb.append(",\"tick\":").append(e.tick());
+        sb.append(",\"type\":"); str(sb, e.type());
+        sb.append(",\"target\":"); str(sb, e.target());
+        sb.append(",\"ok\":").append(e.ok());
+        sb.append(",\"duration_ms\":").append(durationMs(e));
+        sb.append(",\"blocks\":").append(e.blocks());
+        sb.append(",\"entities\":").append(e.entities());
+        if (!e.params().isEmpty()) sb.append(",\"params\":").append(params(e.params()));
+        return sb.append("}\n").toString();
+    }
+
+    private static String csvRow(BinaryEventLog.Event e) {
+        return String.join(",",
+                Instant.ofEpochMilli(e.epochMillis()).toString(), Integer.toString(e.tick()), csv(e.type()), csv(e.target()),
+                Boolean.toString(e.ok()), Double.toString(durationMs(e)), Integer.toString(e.blocks()), Integer.toString(e.entities()),
+                csv(e.params().isEmpty() ? "" : params(e.params()))) + "\n";
+    }
+
+    private static double durationMs(BinaryEventLog.Event e) { return Math.round(e.costNanos() / 1_000.0) / 1_000.0; }
+
+    private static String params(Map<String, Object> m) {
+        StringBuilder sb = new StringBuilder("{");
+        for (var p : m.entrySet()) {
+            if (sb.length() > 1) sb.append(',');
+            str(sb, p.getKey());
+            sb.append(':');
+            if (p.getValue() instanceof String s) str(sb, s); else sb.append(p.getValue());
+        }
+        return sb.append('}').toString();
+    }
+
+    private static void str(StringBuilder sb, String s) {
+        sb.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"' -> sb.append("\\\"");
+                case '\\' -> sb.append("\\\\");
+                case '\n' -> sb.append("\\n");
+                case '\r' -> sb.append("\\r");
+                case '\t' -> sb.append("\\t");
+                default -> { if (c < 0x20) sb.append(String.format("\\u%04x", (int) c)); else sb.append(c); }
+            }
+        }
+        sb.append('"');
+    }
+
+    private static String csv(String s) {
+        if (s.indexOf(',') < 0 && s.indexOf('"') < 0 && s.indexOf('\n') < 0) return s;
+        return '"' + s.replace("\"", "\"\"") + '"';
+    }
+}
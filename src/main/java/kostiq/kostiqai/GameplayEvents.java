@@ -0,0 +1,27 @@
+package kostiq.kostiqai;
+
+import net.minecraft.server.network.ServerPlayerEntity;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Small synchronous bus for the gameplay moments the director reacts to. Fabric callbacks post
+ * here and subscribers (interest scoring, profile counters) run inline on the server thread, so
+ * a post is a loop over a handful of listeners.
+ */
+final class GameplayEvents {
+
+    enum Kind { DEATH, RESPAWN, DAMAGE, DIMENSION_CHANGE, BREAK_STREAK, ENTER_CAVE, JOIN }
+
+    // magnitude is 1 for one-off events; DAMAGE passes hearts lost
+    interface Listener { void on(ServerPlayerEntity p, Kind kind, float magnitude); }
+
+    private final List<Listener> listeners = new ArrayList<>();
+
+    void subscribe(Listener l) { listeners.add(l); }
+
+    void post(ServerPlayerEntity p, Kind kind, float magnitude) {
+        for (Listener l : listeners) l.on(p, kind, magnitude);
+    }
+}
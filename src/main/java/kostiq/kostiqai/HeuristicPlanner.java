@@ -0,0 +1,203 @@
+package kostiq.kostiqai;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Predicate;
+import java.util.function.ToIntFunction;
+
+/**
+ * The built-in planner and the same-tier substitutions the executor falls back on.
+ * Pure functions of the snapshot JSON, the eligible set, fairness ticks and a caller-owned RNG:
+ * no game state, so the result is reproducible for a given seed and the offline simulator runs
+ * exactly this code. Safe on any thread as long as the RNG is not shared concurrently.
+ */
+final class HeuristicPlanner {
+
+    private HeuristicPlanner() {}
+
+    // Typed, immutable view of one snapshot player: what the planner reads, decoded once and safe to share across threads.
+    record PlayerView(UUID uuid, String name, String mode, boolean nether, Set<String> recent, int lastAction) {}
+
+    // Players that may be targeted (mode != OFF), longest-waiting first.
+    static List<PlayerView> views(JsonObject snapshot, ToIntFunction<UUID> lastAction) {
+        JsonArray players = snapshot.getAsJsonArray("players");
+        if (players == null) return List.of();
+        List<PlayerView> out = new ArrayList<>(players.size());
+        for (JsonElement playerEl : players) {
+            JsonObject p = playerEl.getAsJsonObject();
+            String mode = p.get("mode").getAsString();
+            if (mode.equals("OFF")) continue;
+            UUID id = UUID.fromString(p.get("uuid").getAsString());
+            Set<String> recent = new HashSet<>();
+            for (JsonElement t : p.getAsJsonArray("recent")) recent.add(t.getAsString());
+            out.add(new PlayerView(id, p.get("name").getAsString(), mode, p.get("isNether").getAsBoolean(), Set.copyOf(recent), lastAction.applyAsInt(id)));
+        }
+        out.sort(Comparator.comparingInt(PlayerView::lastAction));
+        return List.copyOf(out);
+    }
+
+    static JsonArray plan(JsonObject snapshot, Set<String> eligible, ToIntFunction<UUID> lastAction, int maxActions, Random rnd) {
+        // 1. Select a target fairly: random pick among the half that waited longest
+        List<PlayerView> candidates = views(snapshot, lastAction);
+        if (candidates.isEmpty()) return new JsonArray();
+        int topBand = Math.max(1, candidates.size() / 2);
+        PlayerView target = candidates.get(rnd.nextInt(topBand));
+        return planFor(target, snapshot.get("maxSeverityNow").getAsInt(), eligible, maxActions, rnd);
+    }
+
+    // Below this many players the fork/join split costs more than it saves.
+    private static final int PARALLEL_MIN_PLAYERS = 8;
+
+    /**
+     * One action set for every targetable player. Each player is planned independently on the common
+     * fork/join pool, with an RNG derived from {@code seed} and their UUID so the result does not depend
+     * on thread scheduling. Results are merged longest-waiting first under a total cap and a per-type cap
+     * of {@code maxTypeShare} of the batch, so one type cannot flood a cycle.
+     */
+    static JsonArray planAll(JsonObject snapshot, Set<String> eligible, ToIntFunction<UUID> lastAction,
+                             int perPlayer, int maxTotal, double maxTypeShare, long seed) {
+        JsonArray out = new JsonArray();
+        List<PlayerView> views = views(snapshot, lastAction);
+        if (views.isEmpty() || maxTotal <= 0) return out;
+        int maxSev = snapshot.get("maxSeverityNow").getAsInt();
+        Set<String> allowed = Set.copyOf(eligible);
+
+        var stream = views.size() >= PARALLEL_MIN_PLAYERS ? views.parallelStream() : views.stream();
+        List<JsonArray> perView = stream
+                .map(v -> planFor(v, maxSev, allowed, perPlayer, new Random(seed ^ v.uuid().getMostSignificantBits() ^ v.uuid().getLeastSignificantBits())))
+                .toList();
+
+        int batch = 0;
+        for (JsonArray a : perView) batch += a.size();
+        int typeCap = Math.max(1, (int) Math.ceil(Math.max(0.10, Math.min(0.90, maxTypeShare)) * Math.min(maxTotal, batch)));
+        Map<String, Integer> typeCounts = new HashMap<>();
+        for (JsonArray a : perView) {
+            for (JsonElement el : a) {
+                if (out.size() >= maxTotal) return out;
+                String type = el.getAsJsonObject().get("type").getAsString();
+                if (typeCounts.merge(type, 1, Integer::sum) > typeCap) continue;
+                out.add(el);
+            }
+        }
+        return out;
+    }
+
+    // 2-3. Actions for one target; reads only its view, the severity cap and the eligible set.
+    private static JsonArray planFor(PlayerView target, int maxSev, Set<String> eligible, int maxActions, Random rnd) {
+        JsonArray out = new JsonArray();
+        String targetName = target.name();
+        String mode = target.mode();
+        boolean isNether = target.nether();
+        Set<String> recentForTarget = target.recent();
+
+        // 2. Determine valid actions
+        List<String> validHeadlines = new ArrayList<>();
+        List<String> validFlourishes = new ArrayList<>();
+
+        for (String actionType : ActionCatalog.ALL_TYPES) {
+            if (!eligible.contains(actionType)) continue;
+            if (recentForTarget.contains(actionType)) continue;
+            if (isNether && actionType.equals("SPAWN")) continue;
+
+            int severity = ActionCatalog.severityOf(actionType);
+            if (severity > maxSev) continue;
+            if (mode.equals("MILD") && severity > 1) continue;
+            if (mode.equals("SPICY") && severity > 4) continue; // SPICY allows up to 4, not 5.
+
+            if (severity > 1) { // Headlines are severity 2+
+                validHeadlines.add(actionType);
+            } else { // Flourishes are severity 1
+                validFlourishes.add(actionType);
+            }
+        }
+
+        // 3. Select actions to perform
+        String chosenHeadline = null;
+        if (!validHeadlines.isEmpty()) {
+            chosenHeadline = validHeadlines.get(rnd.nextInt(validHeadlines.size()));
+            out.add(actionObject(chosenHeadline, targetName, rnd));
+        }
+
+        if (!validFlourishes.isEmpty()) {
+            if (rnd.nextDouble() < 0.6 || chosenHeadline == null) { // 60% chance, or 100% if no headline
+                String chosenFlourish = validFlourishes.get(rnd.nextInt(validFlourishes.size()));
+                if (!chosenFlourish.equals(chosenHeadline)) {
+                    out.add(actionObject(chosenFlourish, targetName, rnd));
+                }
+            }
+        }
+
+        while (out.size() > Math.max(0, maxActions)) out.remove(out.size() - 1);
+        return out;
+    }
+
+    static JsonObject actionObject(String type, String targetName, Random rnd) {
+        JsonObject action = new JsonObject();
+        action.addProperty("type", type);
+        action.addProperty("target", targetName);
+        action.addProperty("reason", "Heuristic Planner");
+
+        switch (type) {
+            case "CAGE" -> { action.addProperty("material", "minecraft:glass"); action.addProperty("radius", 2); action.addProperty("height", 8); action.addProperty("duration_ticks", 200); }
+            case "SPAWN" -> { action.addProperty("entity", "random"); action.addProperty("count", 2 + rnd.nextInt(2)); action.addProperty("radius", 3); }
+            case "LAVA_TRAP" -> { action.addProperty("duration_ticks", 80); }
+            case "SLOW" -> { action.addProperty("seconds", 10 + rnd.nextInt(10)); action.addProperty("amplifier", 1); }
+            case "FATIGUE" -> { action.addProperty("seconds", 12 + rnd.nextInt(10)); action.addProperty("amplifier", 1); }
+            case "NAUSEA" -> { action.addProperty("seconds", 8 + rnd.nextInt(8)); }
+            case "SWITCH_WHILE_MINING" -> { action.addProperty("watch_seconds", 6); }
+            case "BLIND" -> { action.addProperty("seconds", 5 + rnd.nextInt(5)); }
+            case "WITHER_MAYBE" -> { action.addProperty("chance", 0.02); }
+            case "HOTBAR_SHUFFLE", "UNEQUIP_ARMOR", "DROP_INVENTORY", "WITHER_TEMPORARY", "INVENTORY_SPAM", "FORCE_RIDE" -> {} // no params
+            case "LEVITATE", "LEVITATE_LONG" -> { action.addProperty("seconds", type.equals("LEVITATE") ? 3 + rnd.nextInt(3) : 10 + rnd.nextInt(5)); }
+            case "BOUNCY_FLOOR", "HONEY_TRAP", "SAND_DRIZZLE", "FIRE_UNDER" -> { action.addProperty("duration_ticks", 120); }
+            case "ICE_RING" -> { action.addProperty("radius", 5); action.addProperty("duration_ticks", 400); }
+            case "PISTON_SHOVE" -> { action.addProperty("dx", rnd.nextInt(13) - 6); action.addProperty("dz", rnd.nextInt(13) - 6); action.addProperty("up", 0.8 + rnd.nextDouble()); }
+            case "RUBBERBAND" -> { action.addProperty("delay_ticks", 20 + rnd.nextInt(40));}
+            case "YEET_EXPLOSION" -> { action.addProperty("power", 1.5 + rnd.nextDouble() * 1.5); }
+            case "HYPER_SPEED" -> { action.addProperty("seconds", 6 + rnd.nextInt(5)); action.addProperty("amplifier", 20 + rnd.nextInt(15)); }
+            case "ITEM_MAGNET" -> { action.addProperty("radius", 10 + rnd.nextInt(10)); }
+            case "FLOOR_PULL" -> { action.addProperty("depth", 5); action.addProperty("duration_ticks", 100); }
+            case "BERSERK" -> { action.addProperty("seconds", 10); }
+            case "FLIP_VIEW" -> { action.addProperty("seconds", 8); }
+        }
+        return action;
+    }
+
+    // ===== SUBSTITUTIONS =====
+    // Same-tier swap when a type is on cooldown for the player or overused by the director.
+    static String alternate(String type, Predicate<String> usable, boolean mild, Collection<String> recent, Random rnd) {
+        List<String> pool = new ArrayList<>(ActionCatalog.HEADLINES.contains(type) ? ActionCatalog.HEADLINES : ActionCatalog.FLOURISHES);
+        pool.remove(type);
+        pool.removeIf(t -> !usable.test(t));
+        if (mild) pool.removeAll(ActionCatalog.MILD_EXCLUDED);
+        pool.removeAll(recent);
+        if (pool.isEmpty()) return null;
+        return pool.get(rnd.nextInt(pool.size()));
+    }
+
+    // Any type at or below maxSev; in a BALANCED safe window the hot tiers (4+) are left out.
+    static String alternateAtSeverity(String fromType, int maxSev, Predicate<String> usable, boolean mild, boolean safeWindow, Random rnd) {
+        List<String> pool = new ArrayList<>();
+        for (String t : ActionCatalog.ALL_TYPES) {
+            int sev = ActionCatalog.severityOf(t);
+            if (sev > maxSev || t.equals(fromType) || !usable.test(t)) continue;
+            if (mild && sev > 1) continue;
+            if (safeWindow && sev >= 4) continue;
+            pool.add(t);
+        }
+        if (pool.isEmpty()) return null;
+        return pool.get(rnd.nextInt(pool.size()));
+    }
+}
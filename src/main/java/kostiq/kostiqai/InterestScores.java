@@ -0,0 +1,36 @@
+package kostiq.kostiqai;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Per-player interest: points from gameplay events that decay exponentially with a half-life.
+ * Decay is applied lazily when a score is touched, so idle players cost nothing. Server thread only.
+ */
+final class InterestScores {
+
+    private static final class Score { double value; int tick; }
+
+    private final Map<UUID, Score> scores = new HashMap<>();
+
+    // Decays the player's score to now, adds the points and returns the new score.
+    double add(UUID player, double points, int now, int halfLifeTicks) {
+        Score s = scores.computeIfAbsent(player, k -> new Score());
+        s.value = decayed(s, now, halfLifeTicks) + points;
+        s.tick = now;
+        return s.value;
+    }
+
+    double get(UUID player, int now, int halfLifeTicks) {
+        Score s = scores.get(player);
+        return s == null ? 0.0 : decayed(s, now, halfLifeTicks);
+    }
+
+    void reset(UUID player) { scores.remove(player); }
+
+    private static double decayed(Score s, int now, int halfLifeTicks) {
+        if (s.value == 0.0 || now <= s.tick) return s.value;
+        return s.value * Math.pow(0.5, (now - s.tick) / (double) Math.max(1, halfLifeTicks));
+    }
+}
@@ -1,13 +1,26 @@
 package kostiq.kostiqai;
 
 import com.google.gson.*;
+import com.google.gson.stream.JsonWriter;
 import com.mojang.brigadier.arguments.BoolArgumentType;
 import com.mojang.brigadier.arguments.IntegerArgumentType;
 import com.mojang.brigadier.arguments.StringArgumentType;
 import com.mojang.brigadier.builder.LiteralArgumentBuilder;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import kostiq.kostiqai.DifficultyCurve.Difficulty;
+import kostiq.kostiqai.RollbackJob.Cell;
 import net.fabricmc.api.ModInitializer;
 import net.fabricmc.fabric.api.command.v2.CommandRegistrationCallback;
+import net.fabricmc.fabric.api.entity.event.v1.ServerEntityWorldChangeEvents;
+import net.fabricmc.fabric.api.entity.event.v1.ServerLivingEntityEvents;
+import net.fabricmc.fabric.api.entity.event.v1.ServerPlayerEvents;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerLifecycleEvents;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerChunkEvents;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerEntityEvents;
 import net.fabricmc.fabric.api.event.lifecycle.v1.ServerTickEvents;
+import net.fabricmc.fabric.api.event.player.AttackBlockCallback;
+import net.fabricmc.fabric.api.event.player.PlayerBlockBreakEvents;
+import net.fabricmc.fabric.api.networking.v1.ServerPlayConnectionEvents;
 import net.minecraft.block.BlockState;
 import net.minecraft.block.Blocks;
 import net.minecraft.entity.Entity;
@@ -15,12 +28,15 @@ import net.minecraft.entity.EntityType;
 import net.minecraft.entity.EquipmentSlot;
 import net.minecraft.entity.ItemEntity;
 import net.minecraft.entity.LivingEntity;
+import net.minecraft.entity.SpawnReason;
+import net.minecraft.entity.boss.WitherEntity;
 import net.minecraft.entity.effect.StatusEffectInstance;
 import net.minecraft.entity.effect.StatusEffects;
 import net.minecraft.entity.mob.HostileEntity;
 import net.minecraft.item.Item;
 import net.minecraft.item.ItemStack;
 import net.minecraft.item.Items;
+import net.minecraft.particle.ParticleTypes;
 import net.minecraft.registry.Registries;
 import net.minecraft.registry.RegistryKey;
 import net.minecraft.registry.RegistryKeys;
@@ -28,27 +44,33 @@ import net.minecraft.server.MinecraftServer;
 import net.minecraft.server.command.CommandManager;
 import net.minecraft.server.network.ServerPlayerEntity;
 import net.minecraft.server.world.ServerWorld;
+import net.minecraft.sound.SoundCategory;
+import net.minecraft.sound.SoundEvents;
 import net.minecraft.text.Text;
+import net.minecraft.util.ActionResult;
 import net.minecraft.util.Hand;
 import net.minecraft.util.Identifier;
-import net.minecraft.util.hit.BlockHitResult;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.util.math.Box;
+import net.minecraft.util.math.ChunkPos;
 import net.minecraft.util.math.Vec3d;
 import net.minecraft.world.World;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.Reader;
+import java.io.BufferedWriter;
+import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
 import java.time.Duration;
-import java.time.Instant;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.stream.Collectors;
 
 /**
@@ -66,23 +88,62 @@ public class Kostiqai implements ModInitializer {
     private boolean masterEnabled = true;
     private int planningPeriodTicks = 20 * 60;
     private int tickCounter = 0;
-    private int nextAllowedPlanTick = 0;
 
-    // ---- Planner resilience ----
-    private int aiFailCount = 0;
-    private int aiBackoffUntilTick = 0;
+    // ===== DIMENSION DIRECTORS =====
+    // One director per world: its own cadence, block budget, diversity window and planner backoff.
+    // Planning for each runs on the worker pool; only the resulting Cycle comes back to the server thread.
+    private final class Director {
+        final RegistryKey<World> world;
+        int nextAllowedPlanTick;
+        boolean planning;            // a plan is in flight; never two at once for one world
+        int aiFailCount = 0;
+        int aiBackoffUntilTick = 0;
+        final DiversityWindow diversity = new DiversityWindow();
+        int blockWrites = 0;
+        int blockBudget = 200;
+        // Seeded per world: planRng is only used by the in-flight plan on the pool, rng by the server thread.
+        final java.util.Random planRng, rng;
+
+        Director(RegistryKey<World> world) {
+            this.world = world;
+            this.nextAllowedPlanTick = tickCounter + Math.max(40, planningPeriodTicks);
+            long seed = (cfg.plannerSeed != 0 ? cfg.plannerSeed : System.nanoTime()) ^ world.getValue().toString().hashCode();
+            this.planRng = new java.util.Random(seed);
+            this.rng = new java.util.Random(~seed);
+        }
+
+        String label() { return world.getValue().getPath(); }
+
+        boolean takeBlockBudget() {
+            if (governor.worldEditsPaused() || blockWrites >= blockBudget) { metrics.budgetExhausted.increment(); return false; }
+            blockWrites++;
+            blockWritesTotal++;
+            return true;
+        }
+
+        void reschedule(int baseTicks) {
+            int j = cfg.jitterTicks > 0 ? rng.nextInt(cfg.jitterTicks + 1) : 0;
+            nextAllowedPlanTick = tickCounter + baseTicks + j;
+        }
+    }
+    private final Map<RegistryKey<World>, Director> directors = new LinkedHashMap<>();
+    private Director director(RegistryKey<World> key) { return directors.computeIfAbsent(key, Director::new); }
+
+    private final ExecutorService planners = java.util.concurrent.Executors.newFixedThreadPool(
+            Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() - 1)), r -> {
+                Thread t = new Thread(r, "kostiqai-plan"); t.setDaemon(true); return t;
+            });
 
     // ===== HTTP (AI) =====
     private final java.net.http.HttpClient http = java.net.http.HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(10)).build();
-    private final ExecutorService io = java.util.concurrent.Executors.newSingleThreadExecutor();
+    // one request per director can be in flight, so this grows with the number of busy worlds
+    private final ExecutorService io = java.util.concurrent.Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "kostiqai-http"); t.setDaemon(true); return t;
+    });
 
     // ===== RUNTIME STATE =====
     private final Gson gson = new Gson();
-    private boolean configLoaded = false;
-
-    // Allowlist for raw commands (when model returns "commands")
-    private Set<String> ALLOW = Set.of("title","playsound","tp","particle","effect","fill","setblock","summon", "kill");
-    private int MAX_CMDS = 3;
+    private volatile boolean configLoaded = false;
 
     // Delayed work queue
     private List<Pending> pending = new ArrayList<>();
@@ -91,17 +152,6 @@ public class Kostiqai implements ModInitializer {
     // Last pos cache (for effects that need it)
     private final Map<UUID, Vec3d> lastPos = new HashMap<>();
 
-    // List of all action types for the heuristic planner
-    private static final List<String> ALL_ACTION_TYPES = List.of(
-            "SLOW", "FATIGUE", "NAUSEA", "BLIND", "LEVITATE", "LEVITATE_LONG", "HOTBAR_SHUFFLE", "SWITCH_WHILE_MINING",
-            "ICE_RING", "BOUNCY_FLOOR", "HONEY_TRAP", "SAND_DRIZZLE", "FIRE_UNDER", "UNEQUIP_ARMOR", "RUBBERBAND",
-            "CAGE", "SPAWN", "PISTON_SHOVE", "DROP_INVENTORY",
-            "WITHER_MAYBE", "LAVA_TRAP",
-            "YEET_EXPLOSION", "HYPER_SPEED", "ITEM_MAGNET", "FLOOR_PULL",
-            // New in v7
-            "WITHER_TEMPORARY", "BERSERK", "FLIP_VIEW", "INVENTORY_SPAM", "FORCE_RIDE"
-    );
-
     // ===== LIMITS =====
     private static final int MAX_RADIUS = 8;
     private static final int MAX_FILL_VOLUME = 15 * 15 * 6;
@@ -109,8 +159,8 @@ public class Kostiqai implements ModInitializer {
     private static final int MAX_LAVA_TICKS = 200;
     private static final double WITHER_MIN_DIST_FROM_SPAWN = 128.0;
 
-    // Per-player cooldowns (any action)
-    private final Map<UUID, Integer> nextAllowedForPlayer = new HashMap<>();
+    // Per-player cooldowns (any action, per type) and fairness
+    private final PlayerPacing pacing = new PlayerPacing();
 
     // ===== PROFILES =====
     private enum Mode { AUTO, MILD, SPICY, OFF }
@@ -118,45 +168,23 @@ public class Kostiqai implements ModInitializer {
         Mode mode = Mode.AUTO;
         Deque<String> recent = new ArrayDeque<>(4);
         int deaths = 0;
+        // reactive-planning state (see GAMEPLAY EVENTS)
+        int breakStreak = 0, lastBreakTick = Integer.MIN_VALUE / 2;
+        int lastDirectedTick = Integer.MIN_VALUE / 2; // last action the director applied to this player
+        boolean inCave = false;
     }
     private final Map<UUID, Profile> profiles = new ConcurrentHashMap<>();
     private Profile prof(UUID uuid) { return profiles.computeIfAbsent(uuid, k -> new Profile()); }
     private Profile prof(ServerPlayerEntity p) { return prof(p.getUuid()); }
 
 
-    // ===== GLOBAL DIFFICULTY CURVES =====
-    private enum Difficulty { LINEAR, PROGRESSIVE, BALANCED }
-
-    private static int severityOf(String type) {
-        if (type == null) return 1;
-        return switch (type) {
-            // Flourishes (mild) - Severity 1
-            case "SLOW","FATIGUE","NAUSEA","BLIND","LEVITATE","HOTBAR_SHUFFLE","SWITCH_WHILE_MINING", "ITEM_MAGNET", "RUBBERBAND", "INVENTORY_SPAM" -> 1;
-            // Visible but modest - Severity 2
-            case "ICE_RING","BOUNCY_FLOOR","HONEY_TRAP","SAND_DRIZZLE","FIRE_UNDER","UNEQUIP_ARMOR", "LEVITATE_LONG", "YEET_EXPLOSION", "HYPER_SPEED", "FORCE_RIDE", "FLIP_VIEW" -> 2;
-            // Spicy mid - Severity 3
-            case "CAGE","SPAWN", "PISTON_SHOVE", "DROP_INVENTORY", "FLOOR_PULL", "BERSERK" -> 3;
-            // Hot - Severity 4
-            case "WITHER_MAYBE", "WITHER_TEMPORARY" -> 4;
-            // Legendary (rare) - Severity 5
-            case "LAVA_TRAP" -> 5;
-            default -> 2;
-        };
-    }
-
-    // Per-player, per-action cooldowns
-    private final Map<UUID, Map<String,Integer>> nextAllowedByTypeForPlayer = new ConcurrentHashMap<>();
-    // Global diversity window of recent action types
-    private final Deque<String> recentTypes = new ArrayDeque<>();
-    // NEW: fairness — last action tick per player
-    private final Map<UUID, Integer> lastActionTickByPlayer = new ConcurrentHashMap<>();
-
     // ===== CONFIG =====
-    private static class Cfg {
+    static class Cfg {
         // cadence
         int planningPeriodTicks = 1200;
         int cooldownTicks = 200;
         int jitterTicks = 0;
+        long plannerSeed = 0; // 0 = fresh seed each boot; anything else makes planning reproducible per world
 
         // execution
         boolean dryRun = true;
@@ -164,6 +192,11 @@ public class Kostiqai implements ModInitializer {
         int maxActionsPerCycle = 2;
         int playerCooldownTicks = 120;
         int pendingQueueCap = 64;
+        int actionBudgetMicros = 2000;  // estimated action-body CPU per tick, scaled down by the governor
+        int actionMaxDeferTicks = 100;  // a step held back this long runs on the next tick, alone
+        int statsRetentionMinutes = 120; // how far back /kostiqai stats can look
+        int rollbackCellsPerTick = 512;  // restore budget; a chunk's cells for one job always go together
+        int rollbackShutdownMillis = 2000;
 
         // targeting
         boolean fanoutAll = false;
@@ -178,6 +211,9 @@ public class Kostiqai implements ModInitializer {
         double randomness = 0.35;
         Set<String> bannedActions = new HashSet<>();
         boolean logging = true;
+        String logFormat = "json";      // json | binary
+        int binaryLogSegmentMb = 16;
+        int binaryLogMaxSegments = 32;
 
         // diversity & pacing
         int perActionCooldownTicks = 200;
@@ -204,112 +240,550 @@ public class Kostiqai implements ModInitializer {
             String apiKeyEnv = "OPENAI_API_KEY";
             int timeoutSec = 15;
         }
+
+        // Prometheus endpoint (off by default; keep it on a local address)
+        Prometheus prometheus = new Prometheus();
+        static class Prometheus {
+            boolean enabled = false;
+            String bindAddress = "127.0.0.1";
+            int port = 9464;
+        }
+
+        // Reactive planning: gameplay events raise a decaying per-player interest score; crossing
+        // the threshold plans for that one player right away, so the timer can run less often
+        Reactive reactive = new Reactive();
+        static class Reactive {
+            boolean enabled = true;
+            double threshold = 10.0;
+            int halfLifeSeconds = 90;
+            int timerPeriodMultiplier = 3;
+            int breakStreakLength = 8; // blocks broken less than 2s apart
+            int directedGraceSeconds = 20; // damage this soon after one of our own actions is not a signal
+            double death = 8, respawn = 2, damagePerHeart = 1, dimensionChange = 6, breakStreak = 3, enterCave = 4, join = 5;
+
+            // The timer period while reactive plans fill in between
+            int timerTicks(int period) { return enabled ? period * timerPeriodMultiplier : period; }
+
+            double weight(GameplayEvents.Kind kind) {
+                return switch (kind) {
+                    case DEATH -> death; case RESPAWN -> respawn; case DAMAGE -> damagePerHeart;
+                    case DIMENSION_CHANGE -> dimensionChange; case BREAK_STREAK -> breakStreak;
+                    case ENTER_CAVE -> enterCave; case JOIN -> join;
+                };
+            }
+        }
+
+        // Plan-all: the heuristic planner proposes actions for every targetable player each cycle
+        // (planned in parallel) instead of one fair pick; the batch is capped as a whole
+        PlanAll planAll = new PlanAll();
+        static class PlanAll {
+            boolean enabled = false;
+            int actionsPerPlayer = 1;
+            int maxActions = 24;
+        }
+
+        // Staggered planning: every player gets their own deadline, hashed into the period, instead of
+        // one deadline per world; the period is scaled by the player's profile mode
+        PlayerSchedule playerSchedule = new PlayerSchedule();
+        static class PlayerSchedule {
+            boolean enabled = false;
+            double auto = 1.0, mild = 1.5, spicy = 0.6; // period multiplier by Mode
+
+            // A player's own period, by Mode name
+            int periodTicks(String mode, int period) {
+                double scale = switch (mode) { case "MILD" -> mild; case "SPICY" -> spicy; default -> auto; };
+                return Math.max(40, (int) Math.round(period * scale));
+            }
+        }
+
+        // MSPT governor: throttle the director while the server is lagging
+        Governor governor = new Governor();
+        static class Governor {
+            boolean enabled = true;
+            double strainedMspt = 40.0;
+            double criticalMspt = 48.0;
+            double hysteresisMspt = 5.0;
+            double minScale = 0.25;
+        }
+
+        // ---- derived, never serialized ----
+        transient long bannedMask;
+        transient int[][] severityCap; // [stage][nasty ? 1 : 0] -> curve cap before the governor
+
+        boolean banned(String type) {
+            int bit = ActionCatalog.bit(type);
+            return bit >= 0 ? (bannedMask & (1L << bit)) != 0 : bannedActions.contains(type);
+        }
+
+        int severityCap(int stage, boolean nasty) {
+            return severityCap[Math.max(1, Math.min(severityCap.length - 1, stage))][nasty ? 1 : 0];
+        }
+
+        // Validates and clamps in place, precomputes the lookup tables and returns this.
+        // Published snapshots are never mutated afterwards; edits go through a copy.
+        Cfg freeze() {
+            planningPeriodTicks = Math.max(20, planningPeriodTicks);
+            cooldownTicks = Math.max(40, cooldownTicks);
+            jitterTicks = Math.max(0, jitterTicks);
+            maxCommandsPerCycle = Math.max(0, maxCommandsPerCycle);
+            actionBudgetMicros = Math.max(100, actionBudgetMicros);
+            actionMaxDeferTicks = Math.max(1, actionMaxDeferTicks);
+            statsRetentionMinutes = Math.max(1, Math.min(24 * 60, statsRetentionMinutes));
+            rollbackCellsPerTick = Math.max(16, rollbackCellsPerTick);
+            rollbackShutdownMillis = Math.max(0, rollbackShutdownMillis);
+            logFormat = "binary".equalsIgnoreCase(logFormat) ? "binary" : "json";
+            binaryLogSegmentMb = Math.max(1, Math.min(1024, binaryLogSegmentMb));
+            binaryLogMaxSegments = Math.max(1, binaryLogMaxSegments);
+            randomness = Double.isNaN(randomness) ? 0.35 : Math.max(0.0, Math.min(1.0, randomness));
+            progMaxStage = Math.max(1, progMaxStage);
+            if (difficulty == null) difficulty = Difficulty.LINEAR;
+            if (openai == null) openai = new OpenAI();
+            if (prometheus == null) prometheus = new Prometheus();
+            if (governor == null) governor = new Governor();
+            if (reactive == null) reactive = new Reactive();
+            if (playerSchedule == null) playerSchedule = new PlayerSchedule();
+            if (planAll == null) planAll = new PlanAll();
+            planAll.actionsPerPlayer = Math.max(1, Math.min(2, planAll.actionsPerPlayer));
+            planAll.maxActions = Math.max(1, Math.min(256, planAll.maxActions));
+            playerSchedule.auto = Math.max(0.1, Math.min(10.0, playerSchedule.auto));
+            playerSchedule.mild = Math.max(0.1, Math.min(10.0, playerSchedule.mild));
+            playerSchedule.spicy = Math.max(0.1, Math.min(10.0, playerSchedule.spicy));
+            reactive.threshold = Math.max(1.0, reactive.threshold);
+            reactive.halfLifeSeconds = Math.max(1, reactive.halfLifeSeconds);
+            reactive.timerPeriodMultiplier = Math.max(1, reactive.timerPeriodMultiplier);
+            reactive.breakStreakLength = Math.max(2, reactive.breakStreakLength);
+            allow = allow == null ? new Cfg().allow : Set.copyOf(allow);
+            bannedActions = bannedActions == null ? Set.of() : Set.copyOf(bannedActions);
+
+            bannedMask = 0L;
+            for (String t : bannedActions) { int bit = ActionCatalog.bit(t); if (bit >= 0) bannedMask |= 1L << bit; }
+            severityCap = new int[progMaxStage + 2][2];
+            for (int stage = 1; stage < severityCap.length; stage++) {
+                for (int nasty = 0; nasty < 2; nasty++) {
+                    severityCap[stage][nasty] = DifficultyCurve.cap(difficulty, stage, nasty == 1);
+                }
+            }
+            return this;
+        }
     }
-    private Cfg cfg = new Cfg();
+    // Current snapshot; replaced wholesale (config watcher or an in-game edit), never mutated in place.
+    private volatile Cfg cfg = new Cfg().freeze();
+    private Cfg appliedCfg; // last snapshot whose server-side effects were applied (server thread)
+    private ConfigWatcher configWatcher;
 
     // progression runtime
-    private long difficultyStartTick = 0;
-    private boolean inNastyWindow = false;
-    private int currentStage = 1;
+    private final DifficultyCurve curve = new DifficultyCurve();
 
     // ===== ROLLBACK PERSISTENCE =====
-    private static class Cell { final int x,y,z; final String blockId; Cell(int x,int y,int z,String b){this.x=x;this.y=y;this.z=z;this.blockId=b;} }
-    private static class RollbackJob { String id; String worldId; List<Cell> cells; int dueTick; }
     private final Map<String, RollbackJob> rollbackJobs = new HashMap<>();
+    // Overlapping jobs share one claim per cell; jobs are created (and replayed on load) in seq order.
+    private final RollbackOverlay overlay = new RollbackOverlay();
+    private long rollbackSeq = 0;
     private Path rollbackFilePath;
-    private boolean rollbackLoadedOnce = false;
+    // Journal parse started at SERVER_STARTING; null once installed. The journal isn't rewritten until then.
+    private CompletableFuture<List<RollbackJob>> rollbackLoad;
 
     private void initRollbackFilePath(MinecraftServer server) {
         if (rollbackFilePath == null) rollbackFilePath = server.getRunDirectory().resolve("config/kostiqai_pending.jsonl");
     }
     private void persistRollbackJobs() {
-        if (rollbackFilePath == null) return;
+        if (rollbackFilePath == null || rollbackLoad != null) return;
+        long t0 = System.nanoTime();
         try {
             Files.createDirectories(rollbackFilePath.getParent());
             if (rollbackJobs.isEmpty()) { try { Files.deleteIfExists(rollbackFilePath); } catch (Exception ignore) {} return; }
-            String out = rollbackJobs.values().stream().map(gson::toJson).collect(java.util.stream.Collectors.joining("\n"));
-            Files.writeString(rollbackFilePath, out, java.nio.charset.StandardCharsets.UTF_8,
-                    StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+            try (BufferedWriter out = Files.newBufferedWriter(rollbackFilePath, java.nio.charset.StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                for (RollbackJob j : rollbackJobs.values()) {
+                    j.remaining = j.due ? 0 : Math.max(0, j.dueTick - tickCounter);
+                    j.write(new JsonWriter(out));
+                    out.write('\n');
+                }
+            }
         } catch (Exception e) { LOG.warn("[KostiqAI] persist rollback jobs failed", e); }
+        finally { perf.record("io.rollback.persist", t0); }
     }
-    private void loadRollbackJobs(MinecraftServer server) {
-        initRollbackFilePath(server);
-        if (!Files.exists(rollbackFilePath)) return;
+    // Server thread: replays parsed jobs into the overlay, pending queue and chunk index.
+    private void installRollbackJobs(MinecraftServer server, List<RollbackJob> jobs) {
+        long t0 = System.nanoTime();
+        boolean createdMeanwhile = !rollbackJobs.isEmpty(); // nothing should get here first (actions wait for the journal); kept safe anyway
         int loaded = 0;
-        try {
-            for (String line : Files.readAllLines(rollbackFilePath, java.nio.charset.StandardCharsets.UTF_8)) {
-                if (line == null || line.isBlank()) continue;
-                try {
-                    RollbackJob j = gson.fromJson(line, RollbackJob.class);
-                    if (j != null && j.id != null && j.worldId != null && j.cells != null) {
-                        if (j.dueTick <= tickCounter) j.dueTick = tickCounter + 40;
-                        rollbackJobs.put(j.id, j);
-                        enqueuePending(new Pending("__ROLLBACK__|" + j.id, j.dueTick));
-                        loaded++;
-                    }
-                } catch (Exception ignore) {}
-            }
-            if (loaded > 0) LOG.info("[KostiqAI] loaded {} rollback jobs", loaded);
-        } catch (Exception e) { LOG.warn("[KostiqAI] load rollback jobs failed", e); }
+        for (RollbackJob j : jobs) {
+            j.dueTick = tickCounter + Math.max(0, j.remaining);
+            for (Cell c : j.cells) overlay.claim(j.worldId, c.x, c.y, c.z, c.blockId, j.dueTick);
+            rollbackSeq = Math.max(rollbackSeq, j.seq);
+            rollbackJobs.put(j.id, j);
+            // overdue jobs go straight to their chunks instead of all firing together a moment after start
+            if (j.due || j.remaining <= 0) markRollbackDue(server, j);
+            else enqueuePending(new Pending("__ROLLBACK__|" + j.id, j.dueTick));
+            loaded++;
+        }
+        if (loaded > 0) LOG.info("[KostiqAI] loaded {} rollback jobs", loaded);
+        if (createdMeanwhile) persistRollbackJobs();
+        perf.record("io.rollback.load", t0);
     }
     private void enqueueRollback(MinecraftServer server, String worldId, List<Cell> cells, int delayTicks) {
         RollbackJob job = new RollbackJob();
         job.id = UUID.randomUUID().toString();
+        job.seq = ++rollbackSeq;
         job.worldId = worldId;
-        job.cells = cells;
         job.dueTick = tickCounter + Math.max(1, delayTicks);
+        // a cell another job already holds keeps that job's original, not the prank block we just replaced
+        job.cells = new ArrayList<>(cells.size());
+        for (Cell c : cells) {
+            String original = overlay.claim(worldId, c.x, c.y, c.z, c.blockId, job.dueTick);
+            job.cells.add(original.equals(c.blockId) ? c : new Cell(c.x, c.y, c.z, original));
+        }
         rollbackJobs.put(job.id, job);
         persistRollbackJobs();
         enqueuePending(new Pending("__ROLLBACK__|" + job.id, job.dueTick));
     }
 
+    // ===== GAMEPLAY EVENTS =====
+    // Fabric callbacks post to the bus; the listener keeps Profile counters and per-player interest
+    // scores, and a score over cfg.reactive.threshold queues a targeted plan for that player.
+    private final GameplayEvents gameplay = new GameplayEvents();
+    private final InterestScores interest = new InterestScores();
+    private final LinkedHashSet<UUID> reactiveQueue = new LinkedHashSet<>();
+
+    private void onGameplayEvent(ServerPlayerEntity p, GameplayEvents.Kind kind, float magnitude) {
+        if (kind == GameplayEvents.Kind.DEATH) prof(p).deaths++;
+        Cfg.Reactive r = cfg.reactive;
+        if (!r.enabled || !masterEnabled || prof(p).mode == Mode.OFF) return;
+        double points = r.weight(kind) * magnitude;
+        if (points <= 0) return;
+        if (interest.add(p.getUuid(), points, tickCounter, r.halfLifeSeconds * 20) < r.threshold) return;
+        interest.reset(p.getUuid());
+        if (reactiveQueue.add(p.getUuid())) DirectorMetrics.inc(metrics.reactivePlans, kind.name().toLowerCase(Locale.ROOT));
+    }
+
+    // Damage from our own traps, mobs and effects would otherwise feed straight back into more planning.
+    private boolean directedRecently(ServerPlayerEntity p) {
+        if (tickCounter - prof(p).lastDirectedTick <= cfg.reactive.directedGraceSeconds * 20) return true;
+        return continuous.affects(p.getUuid());
+    }
+
+    private void onBlockBroken(ServerPlayerEntity p) {
+        Profile pr = prof(p);
+        pr.breakStreak = tickCounter - pr.lastBreakTick <= 40 ? pr.breakStreak + 1 : 1;
+        pr.lastBreakTick = tickCounter;
+        if (pr.breakStreak % cfg.reactive.breakStreakLength == 0) gameplay.post(p, GameplayEvents.Kind.BREAK_STREAK, 1f);
+    }
+
+    // Each player is checked once a second (staggered by entity id) for going underground.
+    private void watchCaves(MinecraftServer server) {
+        for (ServerPlayerEntity p : server.getPlayerManager().getPlayerList()) {
+            if ((p.getId() + tickCounter) % 20 != 0) continue;
+            boolean cave = p.getBlockY() < 48 || !p.getWorld().isSkyVisible(p.getBlockPos().up(2));
+            Profile pr = prof(p);
+            if (cave && !pr.inCave) gameplay.post(p, GameplayEvents.Kind.ENTER_CAVE, 1f);
+            pr.inCave = cave;
+        }
+    }
+
+    // Queued players are planned for as soon as their world's director is free; stale entries are dropped.
+    private void planReactive(MinecraftServer server) {
+        if (reactiveQueue.isEmpty()) return;
+        if (governor.level() != TickGovernor.Level.NORMAL) { reactiveQueue.clear(); return; }
+        for (var it = reactiveQueue.iterator(); it.hasNext(); ) {
+            ServerPlayerEntity p = server.getPlayerManager().getPlayer(it.next());
+            if (p == null || !p.isAlive() || prof(p).mode == Mode.OFF || playerOnCooldown(p)) { it.remove(); continue; }
+            Director d = director(p.getWorld().getRegistryKey());
+            if (d.planning || tickCounter < d.aiBackoffUntilTick) continue;
+            it.remove();
+            LOG.info("[KostiqAI] reactive plan for {} in {}", p.getGameProfile().getName(), d.label());
+            planWithAIAndMaybeExecute(server, d, List.of(p), false);
+            if (cfg.playerSchedule.enabled) reschedulePlayer(p, Math.max(40, planningPeriodTicks), Math.max(0, cfg.cooldownTicks));
+        }
+    }
+
+    // ===== CONTINUOUS EFFECTS =====
+    // Repeating per-player effects, ticked in place once per server tick (see ContinuousEffects),
+    // and "while X" triggers fired straight from Fabric's interaction events (see PlayerTriggers).
+    private final ContinuousEffects continuous = new ContinuousEffects();
+    private final PlayerTriggers triggers = new PlayerTriggers();
+
+    private void tickContinuous(MinecraftServer server) {
+        if (tickCounter % 20 == 0) triggers.expire(tickCounter);
+        if (continuous.size() == 0) return;
+        long t0 = System.nanoTime();
+        continuous.tick(server);
+        perf.record("effects.tick", t0);
+    }
+
+    // ===== ROLLBACK APPLY =====
+    // A due job is indexed by the chunks its cells fall in. Loaded chunks are restored over the next ticks
+    // within cfg.rollbackCellsPerTick; unloaded ones wait for CHUNK_LOAD instead of being loaded synchronously.
+    private record ChunkRef(String world, long chunk) {}
+    private final Map<String, Long2ObjectOpenHashMap<Set<String>>> dueByChunk = new HashMap<>(); // world -> chunk -> job ids
+    private final LinkedHashSet<ChunkRef> readyChunks = new LinkedHashSet<>();
+
+    private static ServerWorld worldById(MinecraftServer server, String worldId) {
+        var wid = Identifier.tryParse(worldId);
+        return wid == null ? null : server.getWorld(worldKeyOf(wid));
+    }
+
+    private void markRollbackDue(MinecraftServer server, RollbackJob job) {
+        job.due = true;
+        ServerWorld sw = worldById(server, job.worldId);
+        var byChunk = dueByChunk.computeIfAbsent(job.worldId, k -> new Long2ObjectOpenHashMap<>());
+        for (Cell c : job.cells) {
+            int cx = c.x >> 4, cz = c.z >> 4;
+            long ck = ChunkPos.toLong(cx, cz);
+            if (byChunk.computeIfAbsent(ck, k -> new HashSet<>()).add(job.id) && sw != null && sw.getChunkManager().isChunkLoaded(cx, cz))
+                readyChunks.add(new ChunkRef(job.worldId, ck));
+        }
+        if (job.cells.isEmpty()) rollbackJobs.remove(job.id);
+    }
+
+    private void onChunkLoad(ServerWorld sw, long chunk) {
+        if (dueByChunk.isEmpty()) return;
+        String worldId = sw.getRegistryKey().getValue().toString();
+        var byChunk = dueByChunk.get(worldId);
+        if (byChunk != null && byChunk.containsKey(chunk)) readyChunks.add(new ChunkRef(worldId, chunk));
+    }
+
+    // Restores ready chunks until the cell budget or the deadline is spent (the first chunk always goes); returns cells written.
+    private int drainRollbacks(MinecraftServer server, int cellBudget, long deadlineNanos) {
+        if (readyChunks.isEmpty()) return 0;
+        long t0 = System.nanoTime();
+        int written = 0;
+        boolean changed = false;
+        while (!readyChunks.isEmpty()) {
+            if (written > 0 && (written >= cellBudget || System.nanoTime() > deadlineNanos)) break;
+            ChunkRef ref = readyChunks.iterator().next();
+            readyChunks.remove(ref);
+            var byChunk = dueByChunk.get(ref.world());
+            Set<String> ids = byChunk == null ? null : byChunk.remove(ref.chunk());
+            if (ids == null) continue;
+            int cx = ChunkPos.getPackedX(ref.chunk()), cz = ChunkPos.getPackedZ(ref.chunk());
+            ServerWorld sw = worldById(server, ref.world());
+            if (sw == null || !sw.getChunkManager().isChunkLoaded(cx, cz)) { byChunk.put(ref.chunk(), ids); continue; } // unloaded again
+            for (String id : ids) {
+                RollbackJob job = rollbackJobs.get(id);
+                if (job == null) continue;
+                written += restoreChunk(sw, job, cx, cz);
+                changed = true;
+                if (job.cells.isEmpty()) { rollbackJobs.remove(id); LOG.info("[KostiqAI] rollback finished: job {} in {}", job.seq, job.worldId); }
+            }
+            if (byChunk.isEmpty()) dueByChunk.remove(ref.world());
+        }
+        if (changed) persistRollbackJobs();
+        perf.record("rollback.apply", t0);
+        return written;
+    }
+
+    // Writes back one job's cells in one chunk (only those whose last overlay claim this drops) and removes them from the job.
+    private int restoreChunk(ServerWorld sw, RollbackJob job, int cx, int cz) {
+        int written = 0;
+        List<Cell> rest = new ArrayList<>(job.cells.size());
+        for (Cell c : job.cells) {
+            if ((c.x >> 4) != cx || (c.z >> 4) != cz) { rest.add(c); continue; }
+            String original = overlay.release(job.worldId, c.x, c.y, c.z);
+            if (original == null) continue; // still claimed by a later job; it restores the cell
+            var id = Identifier.tryParse(original);
+            var block = (id == null) ? null : Registries.BLOCK.get(id);
+            sw.setBlockState(new BlockPos(c.x, c.y, c.z), (block != null ? block.getDefaultState() : Blocks.AIR.getDefaultState()));
+            written++;
+        }
+        if (written > 0) spawnSites.invalidate(sw, cx, cz);
+        job.cells = rest;
+        return written;
+    }
+
+    // Shutdown: every job with cells in a loaded chunk is restored within the time limit; the rest is persisted.
+    private void flushRollbacks(MinecraftServer server) {
+        if (rollbackJobs.isEmpty()) return;
+        for (RollbackJob job : new ArrayList<>(rollbackJobs.values())) if (!job.due) markRollbackDue(server, job);
+        int written = drainRollbacks(server, Integer.MAX_VALUE, System.nanoTime() + cfg.rollbackShutdownMillis * 1_000_000L);
+        persistRollbackJobs();
+        LOG.info("[KostiqAI] shutdown rollback: {} cells restored, {} jobs left for next start", written, rollbackJobs.size());
+    }
+
     // ===== OBSERVABILITY =====
     private Path obsLogPath; // logs/kostiqai.log
-    private final Map<String, Integer> actionCounts = new HashMap<>();
-    private final Map<String, Integer> playerCounts = new HashMap<>();
-    private final ArrayDeque<String> recent = new ArrayDeque<>(64);
-    private boolean loggingEnabled = true;
-
-    private void logActionEvent(String type, String target, boolean ok, long durationMs, JsonObject params) {
+    private final ActionEventStore events = new ActionEventStore(); // windowed history behind /kostiqai stats
+    private final DirectorMetrics metrics = new DirectorMetrics();
+
+    // AI-issued and delayed commands still go through Brigadier; repeated text skips the parse.
+    private static final int COMMAND_CACHE_CAP = 256;
+    private final ParsedCommandCache commandCache = new ParsedCommandCache(COMMAND_CACHE_CAP, metrics.commandCacheHits, metrics.commandCacheMisses);
+    private final CommandTemplates commandTemplates = new CommandTemplates(COMMAND_CACHE_CAP, commandCache);
+
+    // Log entries are buffered and written by a background writer; a full buffer drops (and counts) them.
+    // logFormat "json" appends lines to logs/kostiqai.log, "binary" writes mmap segments to logs/kostiqai-events/.
+    private static final int LOG_BUFFER_CAP = 4096;
+    private BinaryEventLog binLog; // log thread only
+    private final java.util.concurrent.BlockingQueue<ActionLogEntry> logBuffer = new java.util.concurrent.ArrayBlockingQueue<>(LOG_BUFFER_CAP);
+    private final java.util.concurrent.atomic.AtomicBoolean logDrainScheduled = new java.util.concurrent.atomic.AtomicBoolean();
+    private final ExecutorService logIo = java.util.concurrent.Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "kostiqai-log"); t.setDaemon(true); return t;
+    });
+
+    private void drainLogBuffer() {
+        logDrainScheduled.set(false);
+        List<ActionLogEntry> batch = new ArrayList<>();
+        logBuffer.drainTo(batch);
+        if (batch.isEmpty() || obsLogPath == null) return;
+        long t0 = System.nanoTime();
+        Cfg c = cfg;
         try {
-            if (!loggingEnabled || obsLogPath == null) return;
-            JsonObject entry = new JsonObject();
-            entry.addProperty("ts", Instant.now().toString());
-            entry.addProperty("tick", tickCounter);
-            entry.addProperty("type", type);
-            entry.addProperty("target", target);
-            entry.addProperty("ok", ok);
-            entry.addProperty("duration_ms", durationMs);
-            if (params != null) entry.add("params", params);
-
-            String line = gson.toJson(entry) + "\n";
+            if ("binary".equals(c.logFormat)) {
+                if (binLog == null) binLog = new BinaryEventLog(obsLogPath.resolveSibling("kostiqai-events"), c.binaryLogSegmentMb << 20, c.binaryLogMaxSegments);
+                for (ActionLogEntry e : batch) if (!binLog.append(e)) metrics.logDrops.increment();
+                return;
+            }
+            if (binLog != null) { binLog.close(); binLog = null; } // switched back to json
             Files.createDirectories(obsLogPath.getParent());
-            Files.writeString(obsLogPath, line, java.nio.charset.StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            try (BufferedWriter out = Files.newBufferedWriter(obsLogPath, java.nio.charset.StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                for (ActionLogEntry e : batch) { e.write(new JsonWriter(out)); out.write('\n'); }
+            }
+        } catch (Exception e) {
+            LOG.warn("[KostiqAI] log write failed", e);
+        } finally {
+            perf.record("io.log.flush", t0);
+        }
+    }
 
-            actionCounts.put(type, actionCounts.getOrDefault(type, 0) + 1);
-            playerCounts.put(target, playerCounts.getOrDefault(target, 0) + 1);
+    // Final drain and close on the log thread (binLog is confined to it), awaited so nothing buffered is lost
+    // when the JVM exits. The executor itself stays up: an integrated server can start another world.
+    private static final long LOG_SHUTDOWN_MILLIS = 5000;
 
-            if (recent.size() >= 64) recent.removeFirst();
-            recent.addLast(line.trim());
+    private void closeLog() {
+        Future<?> done = logIo.submit(() -> {
+            drainLogBuffer();
+            if (binLog != null) { try { binLog.close(); } catch (Exception e) { LOG.warn("[KostiqAI] event log close failed", e); } binLog = null; }
+        });
+        try {
+            done.get(LOG_SHUTDOWN_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            LOG.warn("[KostiqAI] log flush still running after {} ms, {} entries may be lost", LOG_SHUTDOWN_MILLIS, logBuffer.size());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         } catch (Exception e) {
-            LOG.warn("[KostiqAI] log write failed", e);
+            LOG.warn("[KostiqAI] log flush failed", e);
+        }
+    }
+
+    // Records one action in the event store and returns its log entry; null when logging is off.
+    // Formatting (JSON or binary) happens on the log thread.
+    private ActionLogEntry actionLogEntry(String type, String target, boolean ok, long costNanos, int blocks, int entities, JsonObject params) {
+        long t0 = System.nanoTime();
+        try {
+            events.append(tickCounter, type, target, ok, costNanos, cfg.statsRetentionMinutes * 1200);
+            if (!cfg.logging || obsLogPath == null) return null;
+            return new ActionLogEntry(System.currentTimeMillis(), tickCounter, type, target, ok, costNanos, blocks, entities, params);
+        } finally {
+            perf.record("io.log", t0);
+        }
+    }
+
+    // Hands a batch of log entries to the background writer with a single wake-up.
+    private void submitLogEntries(List<ActionLogEntry> entries) {
+        if (entries.isEmpty()) return;
+        for (ActionLogEntry e : entries) if (!logBuffer.offer(e)) metrics.logDrops.increment();
+        if (logDrainScheduled.compareAndSet(false, true)) logIo.execute(this::drainLogBuffer);
+    }
+
+    // ===== PROFILING =====
+    private final TickProfiler perf = new TickProfiler();
+
+    // Runs a body and records how long it took under the given phase.
+    private void timed(String phase, Runnable body) {
+        long t0 = System.nanoTime();
+        try { body.run(); }
+        finally {
+            long ns = System.nanoTime() - t0;
+            perf.recordNanos(phase, ns);
+            if (phase.startsWith("action.")) metrics.actionLatency(phase.substring("action.".length()), ns);
         }
     }
 
+    // Runs a body on the server thread and records how long the body itself took.
+    private void onServer(MinecraftServer server, String phase, Runnable body) {
+        server.execute(() -> timed(phase, body));
+    }
+
+    // ===== GOVERNOR =====
+    private final TickGovernor governor = new TickGovernor();
+    private long tickStartNanos = 0;
+
+    private void applyGovernorConfig() {
+        var g = cfg.governor != null ? cfg.governor : new Cfg.Governor();
+        governor.configure(g.enabled, g.strainedMspt, g.criticalMspt, g.hysteresisMspt, g.minScale);
+    }
+
+    // true if the governor lets this action run right now
+    private boolean governorAllows(String type) {
+        if (!governor.allows(type)) return false;
+        return !(governor.worldEditsPaused() && ActionCatalog.WORLD_EDIT_TYPES.contains(type));
+    }
+
     // ===== BUDGET =====
     private int blockBudgetPerTick = 200;
-    private int blockWritesThisTick = 0;
+    private boolean takeBlockBudget(ServerWorld sw) { return director(sw.getRegistryKey()).takeBlockBudget(); }
     private boolean budgetedSetBlock(ServerWorld sw, BlockPos pos, net.minecraft.block.BlockState state) {
-        if (blockWritesThisTick >= blockBudgetPerTick) return false;
+        if (!takeBlockBudget(sw)) return false;
         sw.setBlockState(pos, state);
-        blockWritesThisTick++;
         return true;
     }
 
+    // Writes a cached shape template under the shared budget and returns the cells it actually changed.
+    private ArrayList<Cell> writeTemplate(ServerWorld sw, BlockPos anchor, ShapeTemplates.Template tpl, BlockState state,
+                                          java.util.function.Predicate<BlockState> onlyIf) {
+        ArrayList<Cell> cells = new ArrayList<>(tpl.size());
+        BulkBlockWriter.apply(sw, anchor, tpl, state, onlyIf, () -> takeBlockBudget(sw),
+                (x, y, z, prev) -> cells.add(new Cell(x, y, z, Registries.BLOCK.getId(prev.getBlock()).toString())));
+        if (!cells.isEmpty()) {
+            for (int cx = (anchor.getX() + tpl.minDx()) >> 4; cx <= (anchor.getX() + tpl.maxDx()) >> 4; cx++)
+                for (int cz = (anchor.getZ() + tpl.minDz()) >> 4; cz <= (anchor.getZ() + tpl.maxDz()) >> 4; cz++)
+                    spawnSites.invalidate(sw, cx, cz);
+        }
+        return cells;
+    }
+
     // ===== INIT / COMMANDS =====
     @Override public void onInitialize() {
         LOG.info("[KostiqAI] loaded (server-only)");
+        ServerTickEvents.START_SERVER_TICK.register(server -> tickStartNanos = System.nanoTime());
         ServerTickEvents.END_SERVER_TICK.register(this::onTick);
+        ServerEntityEvents.ENTITY_LOAD.register((entity, world) -> { if (inStep) stepEntities++; });
+        AttackBlockCallback.EVENT.register((player, world, hand, pos, direction) -> {
+            if (!world.isClient && player instanceof ServerPlayerEntity sp) triggers.dispatch(PlayerTriggers.Kind.MINING_START, sp, pos, null, tickCounter);
+            return ActionResult.PASS;
+        });
+        PlayerBlockBreakEvents.BEFORE.register((world, player, pos, state, blockEntity) -> {
+            if (player instanceof ServerPlayerEntity sp) triggers.dispatch(PlayerTriggers.Kind.BLOCK_BREAK, sp, pos, state, tickCounter);
+            return true;
+        });
+        gameplay.subscribe(this::onGameplayEvent);
+        PlayerBlockBreakEvents.AFTER.register((world, player, pos, state, blockEntity) -> {
+            if (player instanceof ServerPlayerEntity sp) onBlockBroken(sp);
+        });
+        ServerLivingEntityEvents.AFTER_DEATH.register((entity, source) -> {
+            if (entity instanceof ServerPlayerEntity sp) gameplay.post(sp, GameplayEvents.Kind.DEATH, 1f);
+        });
+        ServerLivingEntityEvents.AFTER_DAMAGE.register((entity, source, baseDamageTaken, damageTaken, blocked) -> {
+            if (entity instanceof ServerPlayerEntity sp && !blocked && damageTaken > 0 && !directedRecently(sp))
+                gameplay.post(sp, GameplayEvents.Kind.DAMAGE, Math.min(5f, damageTaken / 2f));
+        });
+        ServerPlayerEvents.AFTER_RESPAWN.register((oldPlayer, newPlayer, alive) -> gameplay.post(newPlayer, GameplayEvents.Kind.RESPAWN, 1f));
+        ServerEntityWorldChangeEvents.AFTER_PLAYER_CHANGE_WORLD.register((player, origin, destination) -> gameplay.post(player, GameplayEvents.Kind.DIMENSION_CHANGE, 1f));
+        ServerPlayConnectionEvents.JOIN.register((handler, sender, server) -> gameplay.post(handler.getPlayer(), GameplayEvents.Kind.JOIN, 1f));
+        ServerPlayConnectionEvents.DISCONNECT.register((handler, server) -> {
+            interest.reset(handler.getPlayer().getUuid());
+            reactiveQueue.remove(handler.getPlayer().getUuid());
+            schedule.remove(handler.getPlayer().getUuid());
+        });
+        ServerChunkEvents.CHUNK_LOAD.register((world, chunk) -> onChunkLoad(world, chunk.getPos().toLong()));
+        ServerLifecycleEvents.SERVER_STARTING.register(this::onServerStarting);
+        ServerLifecycleEvents.SERVER_STOPPING.register(server -> {
+            runAllSteps(); // before the rollback flush, so their edits are restored with the rest
+            flushRollbacks(server);
+            metrics.stop();
+            if (configWatcher != null) { configWatcher.stop(); configWatcher = null; }
+            closeLog();
+        });
 
         CommandRegistrationCallback.EVENT.register((dispatcher, registryAccess, env) -> {
             var root = LiteralArgumentBuilder.<net.minecraft.server.command.ServerCommandSource>literal("kostiqai")
@@ -321,10 +795,15 @@ public class Kostiqai implements ModInitializer {
                     // --- Main Controls ---
                     .then(CommandManager.literal("status").executes(ctx -> {
                         int periodS   = Math.max(1, planningPeriodTicks / 20);
-                        int etaS      = Math.max(0, (nextAllowedPlanTick - tickCounter)) / 20;
+                        StringJoiner eta = new StringJoiner(", ");
+                        if (cfg.playerSchedule.enabled) {
+                            int next = schedule.nextDue();
+                            if (next >= 0) eta.add(schedule.size() + " players staggered, next ~" + Math.max(0, next - tickCounter) / 20 + "s");
+                        } else for (Director d : directors.values())
+                            eta.add(d.label() + " ~" + Math.max(0, (d.nextAllowedPlanTick - tickCounter)) / 20 + "s" + (d.planning ? " (planning)" : ""));
                         String diff = cfg.difficulty.name().toLowerCase(Locale.ROOT);
                         String stageStr = (cfg.difficulty==Difficulty.PROGRESSIVE || cfg.difficulty==Difficulty.BALANCED)
-                                ? ("stage="+currentStage+(cfg.difficulty==Difficulty.BALANCED? (inNastyWindow? " (nasty)" : " (safe)") : ""))
+                                ? ("stage="+curve.stage()+(cfg.difficulty==Difficulty.BALANCED? (curve.nasty()? " (nasty)" : " (safe)") : ""))
                                 : "(linear)";
 
                         Text status = Text.literal("").append("\n")
@@ -332,7 +811,8 @@ public class Kostiqai implements ModInitializer {
                                 .append(Text.literal(String.format("§eEnabled:§r %s\n", masterEnabled ? "§aYES" : "§cNO")))
                                 .append(Text.literal(String.format("§ePlanner:§r %s\n", cfg.aiEnabled ? "§bAI" : "§9Heuristic")))
                                 .append(Text.literal(String.format("§eDifficulty:§r %s %s\n", diff, stageStr)))
-                                .append(Text.literal(String.format("§eCadence:§r Every %ds | §eNext In:§r ~%ds\n", periodS, etaS)))
+                                .append(Text.literal(String.format("§eCadence:§r Every %ds | §eNext In:§r %s\n", periodS, eta.length() == 0 ? "-" : eta)))
+                                .append(Text.literal(String.format(Locale.ROOT, "§eServer:§r %.1f mspt | governor %s (x%.2f)\n", governor.msptMean(), governor.level().name().toLowerCase(Locale.ROOT), governor.scale())))
                                 .append(Text.literal(String.format("§eDry Run:§r %s", cfg.dryRun ? "§aON" : "§cOFF")));
 
                         ctx.getSource().sendFeedback(() -> status, false);
@@ -344,45 +824,50 @@ public class Kostiqai implements ModInitializer {
                     )
                     .then(CommandManager.literal("trigger").executes(ctx -> {
                         if (!masterEnabled) { ctx.getSource().sendFeedback(() -> Text.literal("§cKostiqAI is DISABLED"), false); return 0; }
-                        planWithAIAndMaybeExecute(ctx.getSource().getServer(), true);
+                        if (rollbackLoad != null) { ctx.getSource().sendFeedback(() -> Text.literal("§eKostiqAI is still loading pending rollbacks; try again in a moment."), false); return 0; }
                         int period = Math.max(40, planningPeriodTicks);
-                        int j = (cfg.jitterTicks > 0 ? ((ctx.getSource().getServer().getOverworld()!=null?ctx.getSource().getServer().getOverworld().getRandom():net.minecraft.util.math.random.Random.create()).nextInt(cfg.jitterTicks+1)) : 0);
-                        nextAllowedPlanTick = tickCounter + period + j;
+                        for (ServerWorld sw : ctx.getSource().getServer().getWorlds()) {
+                            if (sw.getPlayers().isEmpty()) continue;
+                            Director d = director(sw.getRegistryKey());
+                            planWithAIAndMaybeExecute(ctx.getSource().getServer(), d, sw, true);
+                            d.reschedule(period);
+                        }
                         ctx.getSource().sendFeedback(() -> Text.literal("§dKostiqAI: Forced an action plan. Next automatic plan is rescheduled."), false); return 1;
                     }))
                     // --- Configuration ---
                     .then(CommandManager.literal("config")
                             .then(CommandManager.literal("ai").then(CommandManager.argument("value", BoolArgumentType.bool()).executes(ctx -> {
-                                cfg.aiEnabled = BoolArgumentType.getBool(ctx, "value");
-                                saveConfig(ctx.getSource().getServer());
+                                boolean v = BoolArgumentType.getBool(ctx, "value");
+                                editConfig(c -> c.aiEnabled = v);
                                 ctx.getSource().sendFeedback(() -> Text.literal("§6KostiqAI planner set to " + (cfg.aiEnabled ? "§bAI" : "§9Heuristic (No AI)")), false); return 1;
                             })))
                             .then(CommandManager.literal("difficulty").then(CommandManager.argument("which", StringArgumentType.word()).executes(ctx -> {
                                 String w = StringArgumentType.getString(ctx, "which").toLowerCase(Locale.ROOT);
                                 Difficulty d = switch (w) { case "linear"->Difficulty.LINEAR; case "progressive"->Difficulty.PROGRESSIVE; case "balanced"->Difficulty.BALANCED; default -> null; };
                                 if (d == null) { ctx.getSource().sendFeedback(() -> Text.literal("§cUse: linear | progressive | balanced"), false); return 0; }
-                                cfg.difficulty = d; difficultyStartTick = tickCounter; currentStage = 1; inNastyWindow = false; saveConfig(ctx.getSource().getServer());
+                                editConfig(c -> c.difficulty = d); curve.reset(tickCounter);
                                 ctx.getSource().sendFeedback(() -> Text.literal("§6KostiqAI difficulty set to "+d.name().toLowerCase(Locale.ROOT)), false); return 1;
                             })))
                             .then(CommandManager.literal("period").then(CommandManager.argument("seconds", IntegerArgumentType.integer(1, 3600)).executes(ctx -> {
                                 int s = clampSec(IntegerArgumentType.getInteger(ctx, "seconds"), 1, 3600);
-                                planningPeriodTicks = secToTicks(s); cfg.planningPeriodTicks = planningPeriodTicks;
-                                nextAllowedPlanTick = tickCounter + planningPeriodTicks;
-                                saveConfig(ctx.getSource().getServer());
+                                planningPeriodTicks = secToTicks(s); editConfig(c -> c.planningPeriodTicks = secToTicks(s));
+                                for (Director d : directors.values()) d.nextAllowedPlanTick = tickCounter + planningPeriodTicks;
+                                schedule.clear(); // players re-take their slots in the new period
                                 ctx.getSource().sendFeedback(() -> Text.literal("§6KostiqAI period set to " + s + "s"), false); return 1;
                             })))
                             .then(CommandManager.literal("cooldown").then(CommandManager.argument("seconds", IntegerArgumentType.integer(2, 600)).executes(ctx -> {
                                 int s = clampSec(IntegerArgumentType.getInteger(ctx, "seconds"), 2, 600);
-                                cfg.cooldownTicks = secToTicks(s); saveConfig(ctx.getSource().getServer());
+                                editConfig(c -> c.cooldownTicks = secToTicks(s));
                                 ctx.getSource().sendFeedback(() -> Text.literal("§6KostiqAI cooldown set to " + s + "s"), false); return 1;
                             })))
                             .then(CommandManager.literal("randomness").then(CommandManager.argument("percent", IntegerArgumentType.integer(0, 100)).executes(ctx -> {
                                 int v = IntegerArgumentType.getInteger(ctx, "percent");
-                                cfg.randomness = Math.max(0.0, Math.min(1.0, v / 100.0)); saveConfig(ctx.getSource().getServer());
+                                editConfig(c -> c.randomness = v / 100.0);
                                 ctx.getSource().sendFeedback(() -> Text.literal("§6KostiqAI randomness set to " + v + "%"), false); return 1;
                             })))
                             .then(CommandManager.literal("dryrun").then(CommandManager.argument("value", BoolArgumentType.bool()).executes(ctx -> {
-                                cfg.dryRun = BoolArgumentType.getBool(ctx, "value"); saveConfig(ctx.getSource().getServer());
+                                boolean v = BoolArgumentType.getBool(ctx, "value");
+                                editConfig(c -> c.dryRun = v);
                                 ctx.getSource().sendFeedback(() -> Text.literal("§6KostiqAI dryRun mode set to " + (cfg.dryRun ? "§aON" : "§cOFF")), false); return 1;
                             })))
                     )
@@ -390,12 +875,12 @@ public class Kostiqai implements ModInitializer {
                     .then(CommandManager.literal("actions")
                             .then(CommandManager.literal("ban").then(CommandManager.argument("type", StringArgumentType.word()).executes(ctx -> {
                                 String t = StringArgumentType.getString(ctx, "type").toUpperCase(Locale.ROOT);
-                                cfg.bannedActions.add(t); saveConfig(ctx.getSource().getServer());
+                                editConfig(c -> c.bannedActions.add(t));
                                 ctx.getSource().sendFeedback(() -> Text.literal("§cKostiqAI: banned action " + t), false); return 1;
                             })))
                             .then(CommandManager.literal("allow").then(CommandManager.argument("type", StringArgumentType.word()).executes(ctx -> {
                                 String t = StringArgumentType.getString(ctx, "type").toUpperCase(Locale.ROOT);
-                                cfg.bannedActions.remove(t); saveConfig(ctx.getSource().getServer());
+                                editConfig(c -> c.bannedActions.remove(t));
                                 ctx.getSource().sendFeedback(() -> Text.literal("§aKostiqAI: allowed action " + t), false); return 1;
                             })))
                             .then(CommandManager.literal("list").executes(ctx -> {
@@ -431,23 +916,118 @@ public class Kostiqai implements ModInitializer {
                                                 "§e/kostiqai player <name> mode <mode>§r - Set a player's difficulty.\n" +
                                                 "  §7Modes: auto, mild, spicy, off§r\n" +
                                                 "§e/kostiqai actions <ban|allow|list> [type]§r - Manage actions.\n" +
-                                                "§e/kostiqai system reload§r - Reload the config file.";
+                                                "§e/kostiqai system reload§r - Reload the config file.\n" +
+                                                "§e/kostiqai effects [cancel <id|player|type|all>]§r - List or stop running effects.\n" +
+                                                "§e/kostiqai stats [10m] [by=type|player|outcome] [type=X] [player=X] [ok|failed]§r - Recent action stats.\n" +
+                                                "§e/kostiqai perf [costs|reset]§r - Show per-phase timings, learned action costs, or clear both.";
+                                ctx.getSource().sendFeedback(() -> Text.literal(msg), false); return 1;
+                            }))
+                            .then(CommandManager.literal("reload").executes(ctx -> {
+                                if (configWatcher == null) { ctx.getSource().sendFeedback(() -> Text.literal("§cKostiqAI: config not loaded yet"), false); return 0; }
+                                configWatcher.reloadNow();
+                                ctx.getSource().sendFeedback(() -> Text.literal("§aKostiqAI: config reload requested (applies next tick)"), false); return 1;
+                            }))
+                    )
+                    // --- Continuous effects ---
+                    .then(CommandManager.literal("effects")
+                            .executes(ctx -> {
+                                StringBuilder sb = new StringBuilder("§6--- KostiqAI Active Effects ---§r");
+                                var list = continuous.list();
+                                if (list.isEmpty()) sb.append("\n§7(none)");
+                                for (var e : list)
+                                    sb.append(String.format(Locale.ROOT, "\n§e#%d§r %s on §f%s§r, %ds left", e.id, e.type, e.playerName, (e.left + 19) / 20));
+                                String msg = sb.toString();
+                                ctx.getSource().sendFeedback(() -> Text.literal(msg), false); return 1;
+                            })
+                            .then(CommandManager.literal("cancel").then(CommandManager.argument("which", StringArgumentType.word()).executes(ctx -> {
+                                String w = StringArgumentType.getString(ctx, "which");
+                                int n;
+                                if (w.equalsIgnoreCase("all")) n = continuous.cancel(e -> true);
+                                else if (w.matches("#?\\d+")) { int id = Integer.parseInt(w.replace("#", "")); n = continuous.cancel(e -> e.id == id); }
+                                else n = continuous.cancel(e -> e.playerName.equalsIgnoreCase(w) || e.type.equalsIgnoreCase(w));
+                                ctx.getSource().sendFeedback(() -> Text.literal(n > 0 ? "§aKostiqAI: cancelled " + n + " effect(s)" : "§cKostiqAI: no matching effect"), false);
+                                return n > 0 ? 1 : 0;
+                            }))))
+                    // --- Analytics ---
+                    .then(CommandManager.literal("stats")
+                            .executes(ctx -> { String msg = statsReport(""); ctx.getSource().sendFeedback(() -> Text.literal(msg), false); return 1; })
+                            .then(CommandManager.argument("query", StringArgumentType.greedyString()).executes(ctx -> {
+                                String msg = statsReport(StringArgumentType.getString(ctx, "query"));
+                                ctx.getSource().sendFeedback(() -> Text.literal(msg), false); return 1;
+                            })))
+                    // --- Profiling ---
+                    .then(CommandManager.literal("perf")
+                            .executes(ctx -> {
+                                List<String> rows = perf.report();
+                                StringBuilder sb = new StringBuilder("§6--- KostiqAI Perf (rolling 1-2 min) ---§r");
+                                if (rows.isEmpty()) sb.append("\n§7(no samples yet)");
+                                for (String row : rows) sb.append("\n§e").append(row);
+                                String msg = sb.toString();
                                 ctx.getSource().sendFeedback(() -> Text.literal(msg), false); return 1;
+                            })
+                            .then(CommandManager.literal("costs").executes(ctx -> {
+                                List<String> rows = costs.report();
+                                StringBuilder sb = new StringBuilder("§6--- KostiqAI Action Costs (queued: " + steps.size() + ") ---§r");
+                                if (rows.isEmpty()) sb.append("\n§7(no actions run yet)");
+                                for (String row : rows) sb.append("\n§e").append(row);
+                                String msg = sb.toString();
+                                ctx.getSource().sendFeedback(() -> Text.literal(msg), false); return 1;
+                            }))
+                            .then(CommandManager.literal("reset").executes(ctx -> {
+                                perf.reset();
+                                costs.reset();
+                                ctx.getSource().sendFeedback(() -> Text.literal("§aKostiqAI: perf counters cleared"), false); return 1;
                             }))
-                            .then(CommandManager.literal("reload").executes(ctx -> { loadConfig(ctx.getSource().getServer()); ctx.getSource().sendFeedback(() -> Text.literal("§aKostiqAI: config reloaded"), false); return 1; }))
                     );
 
             dispatcher.register(root);
         });
     }
 
-    private static String topCounts(Map<String,Integer> map, int limit) {
-        if (map.isEmpty()) return "";
-        return map.entrySet().stream()
-                .sorted((a,b)->Integer.compare(b.getValue(),a.getValue()))
-                .limit(Math.max(1, limit))
-                .map(e -> e.getKey()+"="+e.getValue())
-                .reduce((a,b)->a+" "+b).orElse("");
+    // /kostiqai stats [window] [by=type|player|outcome] [type=X] [player=X] [ok|failed]; window like 30s, 10m, 2h (default 10m),
+    // capped at the retention.
+    private String statsReport(String query) {
+        long t0 = System.nanoTime();
+        int retentionTicks = cfg.statsRetentionMinutes * 1200;
+        int windowTicks = Math.min(10 * 1200, retentionTicks);
+        String window = "10m";
+        ActionEventStore.GroupBy by = ActionEventStore.GroupBy.TYPE;
+        String type = null, player = null;
+        Boolean ok = null;
+        for (String tok : query.trim().split("\\s+")) {
+            if (tok.isEmpty()) continue;
+            String t = tok.toLowerCase(Locale.ROOT);
+            if (t.matches("\\d{1,6}[smh]?")) {
+                char last = t.charAt(t.length() - 1);
+                boolean bare = Character.isDigit(last); // no unit means minutes
+                char unit = bare ? 'm' : last;
+                long n = Long.parseLong(bare ? t : t.substring(0, t.length() - 1));
+                long ticks = n * (unit == 's' ? 20 : unit == 'h' ? 72_000 : 1200);
+                windowTicks = (int) Math.max(1, Math.min(retentionTicks, ticks));
+                window = n + String.valueOf(unit) + (ticks > retentionTicks ? ", history keeps " + cfg.statsRetentionMinutes + "m" : "");
+            } else if (t.startsWith("by=")) {
+                switch (t.substring(3)) {
+                    case "type" -> by = ActionEventStore.GroupBy.TYPE;
+                    case "player" -> by = ActionEventStore.GroupBy.PLAYER;
+                    case "outcome" -> by = ActionEventStore.GroupBy.OUTCOME;
+                    default -> { return "§cUse by=type | by=player | by=outcome"; }
+                }
+            } else if (t.startsWith("type=")) type = tok.substring(5).toUpperCase(Locale.ROOT);
+            else if (t.startsWith("player=")) player = tok.substring(7);
+            else if (t.equals("ok")) ok = true;
+            else if (t.equals("failed")) ok = false;
+            else return "§cUnknown stats term: " + tok;
+        }
+        events.evict(tickCounter, retentionTicks);
+        var r = events.query(tickCounter - windowTicks, by, type, player, ok, 15);
+        StringBuilder sb = new StringBuilder(String.format(Locale.ROOT, "§6--- KostiqAI Stats (last %s, by %s) ---§r\n§e%d actions§r, %d failed, %.1f ms total",
+                window, by.name().toLowerCase(Locale.ROOT), r.events(), r.failed(), r.costMicros() / 1000.0));
+        if (r.rows().isEmpty()) sb.append("\n§7(no matching actions)");
+        for (var row : r.rows())
+            sb.append(String.format(Locale.ROOT, "\n§e%s§r %d%s, %.2f ms avg", row.key(), row.count(),
+                    row.failed() > 0 ? " §c(" + row.failed() + " failed)§r" : "", row.costMicros() / 1000.0 / row.count()));
+        perf.record("command.stats", t0);
+        return sb.toString();
     }
 
     // Pick first hotbar slot (0..8) that is empty or not a tool; -1 if none.
@@ -466,42 +1046,70 @@ public class Kostiqai implements ModInitializer {
         pending.add(p); return true;
     }
     private boolean playerOnCooldown(ServerPlayerEntity p) {
-        int now = tickCounter;
-        Integer until = nextAllowedForPlayer.get(p.getUuid());
-        return until != null && until > now;
+        return pacing.onCooldown(p.getUuid(), tickCounter);
     }
 
-    private void rememberActionType(ServerPlayerEntity p, String type) {
-        prof(p).recent.addLast(type);
-        if (prof(p).recent.size() > 4) prof(p).recent.removeFirst();
-    }
-    private boolean isRepeatFor(UUID uuid, String type) {
-        return prof(uuid).recent.contains(type);
+
+    // ===== STARTUP =====
+    // SERVER_STARTING (before worlds load): config and rollback journal are read and parsed in parallel
+    // on background threads while the world loads; onTick installs each result once it is ready.
+    private long startingNanos;
+    private volatile long configReadyNanos;
+
+    private void onServerStarting(MinecraftServer server) {
+        startingNanos = System.nanoTime();
+        configReadyNanos = 0;
+        // a previous integrated-server session persisted its jobs on stop; the journal is the source of truth now
+        rollbackJobs.clear(); overlay.clear(); dueByChunk.clear(); readyChunks.clear();
+        initRollbackFilePath(server);
+        obsLogPath = server.getRunDirectory().resolve("logs/kostiqai.log");
+        Path journal = rollbackFilePath;
+        rollbackLoad = CompletableFuture.supplyAsync(() -> {
+            long t0 = System.nanoTime();
+            try { return RollbackJob.readJournal(journal); }
+            catch (IOException e) { throw new java.io.UncheckedIOException(e); }
+            finally { perf.recordNanos("io.rollback.parse", System.nanoTime() - t0); }
+        }, io);
+        configWatcher = new ConfigWatcher(server.getRunDirectory().resolve("config/kostiqai.json"), this::onConfigText);
+        configWatcher.start();
+    }
+
+    // Tick thread: takes the parsed journal once it is in. If it could not be read, this session
+    // doesn't persist rollbacks at all, so the file is left as it was for the next start.
+    private void pollStartup(MinecraftServer server) {
+        if (rollbackLoad == null || !rollbackLoad.isDone()) return;
+        List<RollbackJob> jobs;
+        try { jobs = rollbackLoad.join(); }
+        catch (Exception e) {
+            LOG.warn("[KostiqAI] load rollback jobs failed; journal left untouched this session", e);
+            jobs = List.of();
+            rollbackFilePath = null;
+        }
+        rollbackLoad = null;
+        installRollbackJobs(server, jobs);
+        long now = System.nanoTime();
+        LOG.info("[KostiqAI] startup: config {} ms, rollback journal {} ms ({} jobs) after SERVER_STARTING",
+                configReadyNanos == 0 ? "pending" : String.valueOf((configReadyNanos - startingNanos) / 1_000_000),
+                (now - startingNanos) / 1_000_000, jobs.size());
     }
 
     // ===== TICK LOOP =====
     private void onTick(MinecraftServer server) {
-        if (!configLoaded) {
-            loadConfig(server);
-            planningPeriodTicks = Math.max(20, cfg.planningPeriodTicks);
-            configLoaded = true;
-            difficultyStartTick = tickCounter;
-            currentStage = 1;
-            inNastyWindow = false;
-        }
+        if (tickStartNanos != 0) governor.sample(System.nanoTime() - tickStartNanos);
+        if (rollbackLoad != null) pollStartup(server);
+        Cfg snap = cfg;
+        if (snap != appliedCfg) applyConfig(snap);
         updateDifficultyWindow();
 
-        initRollbackFilePath(server);
-        if (obsLogPath == null) obsLogPath = server.getRunDirectory().resolve("logs/kostiqai.log");
-        if (!rollbackLoadedOnce) { loadRollbackJobs(server); rollbackLoadedOnce = true; }
-
         if (planningPeriodTicks < 20) planningPeriodTicks = 20;
-        if (cfg.cooldownTicks < 40) cfg.cooldownTicks = 40;
-        if (cfg.jitterTicks < 0) cfg.jitterTicks = 0;
-        if (nextAllowedPlanTick == 0) nextAllowedPlanTick = tickCounter;
 
         tickCounter++;
-        blockWritesThisTick = 0;
+        int budget = governor.blockBudget(blockBudgetPerTick);
+        for (ServerWorld sw : server.getWorlds()) {
+            Director d = director(sw.getRegistryKey());
+            d.blockWrites = 0;
+            d.blockBudget = budget;
+        }
 
         for (ServerPlayerEntity p : server.getPlayerManager().getPlayerList()) {
             lastPos.put(p.getUuid(), p.getPos());
@@ -509,6 +1117,7 @@ public class Kostiqai implements ModInitializer {
 
         // flush delayed work
         if (!pending.isEmpty()) {
+            long flushT0 = System.nanoTime();
             int now = tickCounter;
             List<Pending> toRun = new ArrayList<>();
             List<Pending> waiting = new ArrayList<>();
@@ -519,21 +1128,8 @@ public class Kostiqai implements ModInitializer {
                 final String payload = pen.cmd();
 
                 if (payload.startsWith("__ROLLBACK__|")) {
-                    final String jobId = payload.substring("__ROLLBACK__|".length());
-                    RollbackJob job = rollbackJobs.get(jobId);
-                    if (job != null) {
-                        server.execute(() -> {
-                            var wid = Identifier.tryParse(job.worldId); if (wid == null) return;
-                            World w = server.getWorld(worldKeyOf(wid)); if (!(w instanceof ServerWorld sw)) return;
-                            for (Cell c : job.cells) {
-                                var id = Identifier.tryParse(c.blockId);
-                                var block = (id == null) ? null : Registries.BLOCK.get(id);
-                                sw.setBlockState(new BlockPos(c.x, c.y, c.z), (block != null ? block.getDefaultState() : Blocks.AIR.getDefaultState()));
-                            }
-                            LOG.info("[KostiqAI] rollback applied: {} cells in {}", job.cells.size(), job.worldId);
-                            rollbackJobs.remove(jobId); persistRollbackJobs();
-                        });
-                    }
+                    RollbackJob job = rollbackJobs.get(payload.substring("__ROLLBACK__|".length()));
+                    if (job != null && !job.due) markRollbackDue(server, job);
                     continue;
                 }
 
@@ -552,30 +1148,6 @@ public class Kostiqai implements ModInitializer {
                     continue;
                 }
 
-                if (payload.startsWith("__WATCH_MINING__|")) {
-                    String[] parts = payload.split("\\|", 3);
-                    String playerName = parts[1];
-                    int left = Integer.parseInt(parts[2]);
-                    server.execute(() -> {
-                        ServerPlayerEntity p = server.getPlayerManager().getPlayer(playerName);
-                        if (p != null && looksLikeMining(p)) {
-                            int slot = findNonToolHotbarSlot(p);
-                            if (slot >= 0) {
-                                var hand = p.getStackInHand(Hand.MAIN_HAND).copy();
-                                var other = p.getInventory().getStack(slot).copy();
-                                p.setStackInHand(Hand.MAIN_HAND, other);
-                                p.getInventory().setStack(slot, hand);
-                                p.currentScreenHandler.sendContentUpdates();
-                                LOG.info("[KostiqAI] SWITCH_WHILE_MINING tripped for {} (swapped with slot {})", playerName, slot);
-                                return;
-                            }
-                        }
-                        int nextLeft = left - 10;
-                        if (nextLeft > 0) enqueuePending(new Pending("__WATCH_MINING__|" + playerName + "|" + nextLeft, tickCounter + 10));
-                    });
-                    continue;
-                }
-
                 if (payload.startsWith("__RUBBERBAND_TELEPORT__|")) {
                     String[] parts = payload.split("\\|", 5);
                     String playerName = parts[1];
@@ -583,12 +1155,11 @@ public class Kostiqai implements ModInitializer {
                         final double x = Double.parseDouble(parts[2]);
                         final double y = Double.parseDouble(parts[3]);
                         final double z = Double.parseDouble(parts[4]);
-                        server.execute(() -> {
+                        onServer(server, "effect.rubberband", () -> {
                             ServerPlayerEntity p = server.getPlayerManager().getPlayer(playerName);
                             if (p != null) {
                                 p.requestTeleport(x, y, z);
-                                String soundCmd = String.format(Locale.ROOT, "playsound minecraft:entity.enderman.teleport master @a[distance=..32] %f %f %f 1.0 1.5", p.getX(), p.getY(), p.getZ());
-                                try { server.getCommandManager().getDispatcher().execute(soundCmd, server.getCommandSource()); } catch (Exception ignored) {}
+                                p.getWorld().playSound(null, p.getX(), p.getY(), p.getZ(), SoundEvents.ENTITY_ENDERMAN_TELEPORT, SoundCategory.MASTER, 1.0f, 1.5f);
                             }
                         });
                     } catch (NumberFormatException e) {
@@ -597,173 +1168,276 @@ public class Kostiqai implements ModInitializer {
                     continue;
                 }
 
-                if (payload.startsWith("__FLIP_VIEW__|")) {
+                if (payload.startsWith("__COMMAND__|")) {
                     String[] parts = payload.split("\\|", 3);
-                    String playerName = parts[1];
-                    int left = Integer.parseInt(parts[2]);
-                    server.execute(() -> {
-                        ServerPlayerEntity p = server.getPlayerManager().getPlayer(playerName);
-                        if (p != null) {
-                            p.networkHandler.requestTeleport(p.getX(), p.getY(), p.getZ(), p.getYaw(), -p.getPitch());
-                        }
+                    runTemplate(server, "command.delayed", parts[2], parts[1]);
+                    continue;
+                }
+
+                if (payload.startsWith("__DESPAWN__|")) {
+                    String[] parts = payload.split("\\|", 3);
+                    Identifier wid = Identifier.tryParse(parts[1]); if (wid == null) continue;
+                    final UUID entityId;
+                    try { entityId = UUID.fromString(parts[2]); } catch (IllegalArgumentException e) { continue; }
+                    onServer(server, "effect.despawn", () -> {
+                        World w = server.getWorld(worldKeyOf(wid)); if (!(w instanceof ServerWorld sw)) return;
+                        Entity e = sw.getEntity(entityId);
+                        if (e != null && e.isAlive()) { e.discard(); LOG.info("[KostiqAI] despawned {} {}", EntityType.getId(e.getType()), entityId); }
                     });
-                    int nextLeft = left - 5;
-                    if (nextLeft > 0) {
-                        enqueuePending(new Pending("__FLIP_VIEW__|" + playerName + "|" + nextLeft, tickCounter + 5));
-                    }
                     continue;
                 }
 
                 final String cmdText = payload;
-                server.execute(() -> {
+                onServer(server, "command.delayed", () -> {
                     try {
-                        int result = server.getCommandManager().getDispatcher().execute(cmdText, server.getCommandSource());
+                        int result = commandCache.execute(server, cmdText);
                         LOG.info(result > 0 ? "[KostiqAI] ran (delayed): {}" : "[KostiqAI] no-op (delayed): {}", cmdText);
                     } catch (Exception e) { LOG.warn("[KostiqAI] failed (delayed): {}", cmdText, e); }
                 });
             }
+            perf.record("tick.pending", flushT0);
+        }
+        drainRollbacks(server, cfg.rollbackCellsPerTick, Long.MAX_VALUE);
+        tickContinuous(server);
+        drainSteps();
+        if (tickCounter % 1200 == 0) events.evict(tickCounter, cfg.statsRetentionMinutes * 1200); // quiet servers age out too
+        metrics.pendingDepth = pending.size();
+        metrics.activeEffects = continuous.size();
+        metrics.scheduledPlayers = schedule.size();
+        metrics.stepQueueDepth = steps.size();
+        metrics.rollbackBacklog = rollbackJobs.size();
+        metrics.rollbackCells = overlay.cells();
+        int parked = 0;
+        for (var byChunk : dueByChunk.values()) parked += byChunk.size();
+        metrics.rollbackParkedChunks = parked - readyChunks.size();
+        metrics.rollbackMerged = overlay.merged();
+        metrics.governorLevel = governor.level().ordinal();
+        metrics.msptMicros = (long) (governor.msptMean() * 1000.0);
+
+        // no planning before the journal is in: new jobs must claim cells after the ones it restores
+        if (!masterEnabled || !configLoaded || rollbackLoad != null) return;
+        if (cfg.reactive.enabled) { watchCaves(server); planReactive(server); }
+        int period = Math.max(40, planningPeriodTicks);
+        int cool = Math.max(0, cfg.cooldownTicks);
+        if (cfg.playerSchedule.enabled) { planStaggered(server, period, cool); return; }
+        for (ServerWorld sw : server.getWorlds()) {
+            Director d = director(sw.getRegistryKey());
+            if (d.planning || tickCounter < d.nextAllowedPlanTick || tickCounter < d.aiBackoffUntilTick) continue;
+            if (sw.getPlayers().isEmpty()) continue;
+            planWithAIAndMaybeExecute(server, d, sw, false);
+            d.reschedule(governor.stretchTicks(cfg.reactive.timerTicks(period) + cool));
         }
+    }
+
+    // ===== STAGGERED PLANNING =====
+    // Optional replacement for the per-world timer: each player's deadline sits in a min-heap, spread
+    // over the period by a UUID hash, and a tick plans only for the players that came due (grouped by
+    // world, one plan per director). Director cost per tick stays flat instead of spiking once a period.
+    private final PlanSchedule schedule = new PlanSchedule();
+    private final List<UUID> duePlayers = new ArrayList<>();
+
+    private int playerPeriod(ServerPlayerEntity p, int period) {
+        return cfg.playerSchedule.periodTicks(prof(p).mode.name(), period);
+    }
 
-        if (!masterEnabled) return;
-        if (tickCounter >= nextAllowedPlanTick) {
-            if (tickCounter < aiBackoffUntilTick) return;
-            planWithAIAndMaybeExecute(server, false);
+    private void reschedulePlayer(ServerPlayerEntity p, int period, int cool) {
+        int base = cfg.reactive.timerTicks(playerPeriod(p, period));
+        int j = cfg.jitterTicks > 0 ? director(p.getWorld().getRegistryKey()).rng.nextInt(cfg.jitterTicks + 1) : 0;
+        schedule.schedule(p.getUuid(), tickCounter + governor.stretchTicks(base + cool) + j);
+    }
 
-            int period = Math.max(40, planningPeriodTicks);
-            int cool = Math.max(0, cfg.cooldownTicks);
-            int j = (cfg.jitterTicks > 0 ? ((server.getOverworld()!=null?server.getOverworld().getRandom():net.minecraft.util.math.random.Random.create()).nextInt(cfg.jitterTicks+1)) : 0);
-            nextAllowedPlanTick = tickCounter + period + cool + j;
+    private void planStaggered(MinecraftServer server, int period, int cool) {
+        // newcomers (or everyone, right after the mode is switched on) take their hashed slot
+        List<ServerPlayerEntity> online = server.getPlayerManager().getPlayerList();
+        if (schedule.size() != online.size()) {
+            for (ServerPlayerEntity p : online)
+                if (!schedule.contains(p.getUuid())) schedule.schedule(p.getUuid(), tickCounter + PlanSchedule.offset(p.getUuid(), playerPeriod(p, period)));
         }
+        duePlayers.clear();
+        schedule.pollDue(tickCounter, duePlayers);
+        if (duePlayers.isEmpty()) return;
+
+        Map<Director, List<ServerPlayerEntity>> byWorld = new LinkedHashMap<>();
+        for (UUID id : duePlayers) {
+            ServerPlayerEntity p = server.getPlayerManager().getPlayer(id);
+            if (p == null) continue;
+            if (prof(p).mode == Mode.OFF) { reschedulePlayer(p, period, cool); continue; }
+            Director d = director(p.getWorld().getRegistryKey());
+            if (d.planning || tickCounter < d.aiBackoffUntilTick) {
+                // retry soon, spread over a second so a busy world doesn't bunch its players up
+                schedule.schedule(id, Math.max(tickCounter + 10, d.aiBackoffUntilTick) + PlanSchedule.offset(id, 20));
+                continue;
+            }
+            byWorld.computeIfAbsent(d, k -> new ArrayList<>()).add(p);
+            reschedulePlayer(p, period, cool);
+        }
+        for (var e : byWorld.entrySet()) planWithAIAndMaybeExecute(server, e.getKey(), e.getValue(), false);
     }
 
     // === progression calculator ===
     private void updateDifficultyWindow() {
-        if (difficultyStartTick == 0) difficultyStartTick = tickCounter;
-        switch (cfg.difficulty) {
-            case LINEAR -> {
-                currentStage = 1;
-                inNastyWindow = true;
-            }
-            case PROGRESSIVE -> {
-                int sec = (tickCounter - (int)difficultyStartTick) / 20;
-                int stage = Math.max(1, Math.min(cfg.progMaxStage, (sec / Math.max(1,cfg.progStageSeconds)) + 1));
-                currentStage = stage;
-                inNastyWindow = true;
-            }
-            case BALANCED -> {
-                int cycleTicks = (cfg.balSafeSeconds + cfg.balNastySeconds) * 20;
-                if (cycleTicks <= 0) { currentStage = 2; inNastyWindow = true; break; }
-                long elapsedTicks = tickCounter - difficultyStartTick;
-                long mod = elapsedTicks % cycleTicks;
-                inNastyWindow = (mod >= cfg.balSafeSeconds * 20);
-                int baseStage = Math.max(1, Math.min(cfg.progMaxStage, (int)(elapsedTicks / (long)(Math.max(1, cfg.progStageSeconds * 2) * 20)) + 1));
-                currentStage = Math.max(1, Math.min(cfg.progMaxStage, baseStage + (inNastyWindow ? 1 : 0)));
-            }
-        }
+        curve.update(tickCounter, cfg);
     }
     private int allowedMaxSeverityNow() {
-        return switch (cfg.difficulty) {
-            case LINEAR -> 3;
-            case PROGRESSIVE -> Math.min(5, currentStage + 1);
-            case BALANCED -> Math.min(5, currentStage + (inNastyWindow ? 1 : 0));
-        };
+        return governor.severityCap(cfg.severityCap(curve.stage(), curve.nasty()));
     }
 
     // ===== SNAPSHOT =====
-    private JsonObject snapshotPlayers(MinecraftServer server) {
-        JsonArray arr = new JsonArray();
-        for (ServerPlayerEntity p : server.getPlayerManager().getPlayerList()) {
-            ServerWorld sw = (ServerWorld) p.getWorld();
-            BlockPos posB = p.getBlockPos();
-
-            JsonObject j = new JsonObject();
-            j.addProperty("uuid", p.getUuidAsString());
-            j.addProperty("name", p.getGameProfile().getName());
+    // Stage 1 (server thread): raw world reads into a pooled buffer. Stage 2 is SnapshotCapture.toJson on a worker.
+    private final java.util.concurrent.ConcurrentLinkedQueue<SnapshotCapture> snapshotPool = new java.util.concurrent.ConcurrentLinkedQueue<>();
+
+    private SnapshotCapture captureSnapshot(Director d, List<ServerPlayerEntity> players) {
+        SnapshotCapture cap = snapshotPool.poll();
+        cap = cap == null ? new SnapshotCapture() : cap.reset();
+        for (ServerPlayerEntity p : players) {
+            Profile pr = prof(p);
+            cap.add(p, pr.mode.name(), pr.deaths, pr.recent);
+        }
+        cap.dimension = d.world.getValue().toString();
+        cap.difficulty = cfg.difficulty.name().toLowerCase(Locale.ROOT);
+        cap.stage = curve.stage();
+        cap.maxSeverityNow = allowedMaxSeverityNow();
+        cap.balancedWindow = (cfg.difficulty==Difficulty.BALANCED) ? (curve.nasty()?"nasty":"safe") : "n/a";
+        return cap;
+    }
+
+    // Worker side: builds the JSON and returns the buffer to the pool.
+    private JsonObject enrichSnapshot(SnapshotCapture cap) {
+        long t0 = System.nanoTime();
+        try { return cap.toJson(); }
+        finally {
+            perf.recordNanos("snapshot.enrich", System.nanoTime() - t0);
+            if (snapshotPool.size() < 8) snapshotPool.offer(cap);
+        }
+    }
 
-            String dim = sw.getRegistryKey().getValue().toString();
-            j.addProperty("dimension", dim);
-            j.addProperty("isNether", World.NETHER.getValue().toString().equals(dim));
-            j.addProperty("isEnd", World.END.getValue().toString().equals(dim));
+    // ===== AI / HEURISTIC PLANNER =====
+    private boolean previewOnce = false;
 
-            j.addProperty("biome", biomeId(sw, posB));
-            j.addProperty("y", p.getBlockY());
-            j.addProperty("health", (int)Math.ceil(p.getHealth()));
-            j.addProperty("food", p.getHungerManager().getFoodLevel());
-            j.addProperty("isCreative", p.isCreative());
-            j.addProperty("isSpectator", p.isSpectator());
-            j.addProperty("hasElytra", hasElytra(p));
-            j.addProperty("armorTier", armorTier(p));
-            j.addProperty("mode", prof(p).mode.name());
+    private void planWithAIAndMaybeExecute(MinecraftServer server, Director d, ServerWorld sw, boolean force) {
+        planWithAIAndMaybeExecute(server, d, new ArrayList<>(sw.getPlayers()), force);
+    }
+
+    // Plans for the given players only: a whole world on the timer, a single player when reactive.
+    private void planWithAIAndMaybeExecute(MinecraftServer server, Director d, List<ServerPlayerEntity> players, boolean force) {
+        if (players.isEmpty() || d.planning) return;
+
+        // world reads stay on the server thread; everything after this is pure data
+        long snapT0 = System.nanoTime();
+        SnapshotCapture cap = captureSnapshot(d, players);
+        perf.record("snapshot", snapT0);
+        Set<String> eligible = eligibleTypes();
+        // plan-all batches skip types this world is already overusing; DiversityWindow is server-thread state
+        if (cfg.planAll.enabled) eligible.removeIf(t -> overusedGlobally(d, t));
+        d.planning = true;
+
+        String apiKey = cfg.aiEnabled ? System.getenv(cfg.openai.apiKeyEnv) : null;
+        if (!cfg.aiEnabled || apiKey == null || apiKey.isBlank()) {
+            final String why;
+            if (cfg.aiEnabled) {
+                LOG.warn("[KostiqAI] No OpenAI API key in env {}. Using heuristic planner.", cfg.openai.apiKeyEnv);
+                DirectorMetrics.inc(metrics.fallbacks, "no_api_key");
+                why = "no-API-key";
+            } else {
+                DirectorMetrics.inc(metrics.plannerRequests, "heuristic");
+                why = "no-AI";
+            }
+            CompletableFuture
+                    .supplyAsync(() -> heuristicPlan(d, enrichSnapshot(cap), eligible), planners)
+                    .whenComplete((actions, err) -> onServer(server, "plan.apply", () -> {
+                        d.planning = false;
+                        if (err != null) { LOG.warn("[KostiqAI] heuristic planning failed in {}", d.label(), err); return; }
+                        if (cfg.dryRun) LOG.info("[KostiqAI] dryRun plan (heuristic/{}) in {}: {}", why, d.label(), actions);
+                        else runActions(server, d, actions, force);
+                    }));
+            return;
+        }
 
-            boolean sky = sw.isSkyVisible(posB.up(2));
-            boolean isCave = p.getBlockY() < 48 || !sky; j.addProperty("isCave", isCave);
+        DirectorMetrics.inc(metrics.plannerRequests, "ai");
+        CompletableFuture<JsonObject> snapshot = CompletableFuture.supplyAsync(() -> enrichSnapshot(cap), planners);
+        snapshot
+                .thenApplyAsync(snap -> aiRequest(snap, apiKey), planners)
+                .thenApplyAsync(req -> {
+                    long reqT0 = System.nanoTime();
+                    try {
+                        var res = http.send(req, java.net.http.HttpResponse.BodyHandlers.ofString());
 
-            int light = lightAt(sw, posB); j.addProperty("light", light);
+                        if (res.statusCode() / 100 != 2) {
+                            LOG.warn("[KostiqAI] OpenAI HTTP {}", res.statusCode());
+                            return null;
+                        }
+                        JsonObject root = JsonParser.parseString(res.body()).getAsJsonObject();
+                        if (!root.has("choices")) return null;
+                        var choices = root.getAsJsonArray("choices");
+                        if (choices.size() == 0) return null;
+                        JsonObject choice0 = choices.get(0).getAsJsonObject();
+                        JsonObject message = choice0.getAsJsonObject("message");
+                        String content = message.get("content").getAsString();
+                        return JsonParser.parseString(content).getAsJsonObject();
 
-            JsonObject pos = new JsonObject();
-            pos.addProperty("x", p.getX()); pos.addProperty("y", p.getY()); pos.addProperty("z", p.getZ());
-            pos.addProperty("yaw", p.getYaw()); pos.addProperty("pitch", p.getPitch());
-            j.add("position", pos);
+                    } catch (Exception e) {
+                        LOG.warn("[KostiqAI] planning error", e);
+                        return null;
+                    } finally {
+                        metrics.plannerLatency("ai", System.nanoTime() - reqT0);
+                    }
+                }, io)
+                // a failed request falls back to the heuristic plan, still computed off-thread
+                .thenApplyAsync(obj -> obj != null ? new AiOutcome(obj, null) : new AiOutcome(null, heuristicPlan(d, snapshot.join(), eligible)), planners)
+                .whenComplete((out, err) -> onServer(server, "plan.ai_response", () -> {
+                    d.planning = false;
+                    JsonObject obj = (err == null && out != null) ? out.plan() : null;
+                    if (obj == null) {
+                        d.aiFailCount = Math.min(d.aiFailCount + 1, 8);
+                        int backoffSec = (int)Math.min(60, Math.pow(2, d.aiFailCount));
+                        d.aiBackoffUntilTick = tickCounter + backoffSec * 20;
+                        LOG.warn("[KostiqAI] planner backoff {}s in {} (fail#{})", backoffSec, d.label(), d.aiFailCount);
+                        metrics.backoffs.increment();
+                        DirectorMetrics.inc(metrics.fallbacks, "ai_failure");
+
+                        JsonArray fb = out != null ? out.fallback() : null;
+                        if (fb == null) return;
+                        if (cfg.dryRun) LOG.info("[KostiqAI] dryRun fallback plan in {}: {}", d.label(), fb); else runActions(server, d, fb, force);
+                        return;
+                    }
 
-            j.addProperty("block_below", blockIdAt(sw, posB.down()));
-            j.addProperty("block_above", blockIdAt(sw, posB.up()));
+                    d.aiFailCount = 0;
+                    d.aiBackoffUntilTick = 0;
 
-            var held = p.getMainHandStack();
-            j.addProperty("held_item", held.isEmpty() ? "minecraft:air" : Registries.ITEM.getId(held.getItem()).toString());
+                    JsonArray actions  = obj.has("actions")  ? obj.getAsJsonArray("actions")  : null;
+                    JsonArray commands = obj.has("commands") ? obj.getAsJsonArray("commands") : null;
 
-            JsonArray hotbar = new JsonArray();
-            for (int slot = 0; slot < 9; slot++) {
-                var s = p.getInventory().getStack(slot);
-                JsonObject it = new JsonObject();
-                it.addProperty("slot", slot);
-                it.addProperty("item", s.isEmpty() ? "minecraft:air" : Registries.ITEM.getId(s.getItem()).toString());
-                it.addProperty("count", s.getCount());
-                hotbar.add(it);
-            }
-            j.add("hotbar", hotbar);
+                    int cap = Math.max(1, Math.min(2, cfg.maxActionsPerCycle));
 
-            JsonObject nearby = nearbySummary(sw, posB, 8);
-            j.add("nearby", nearby);
+                    if (previewOnce) {
+                        previewOnce = false;
+                        LOG.info("[KostiqAI] PREVIEW plan: {}", (actions!=null?actions:commands!=null?commands:obj));
+                        return;
+                    }
 
-            int danger = dangerScore(p, sw, posB, isCave, light, nearby.get("hostiles").getAsInt());
-            j.addProperty("dangerScore", danger);
+                    if (cfg.dryRun) {
+                        if (actions  != null) LOG.info("[KostiqAI] dryRun plan (actions, cap={}) in {}: {}",  cap, d.label(), trimArray(actions, cap));
+                        else if (commands != null) LOG.info("[KostiqAI] dryRun plan (commands, cap={}) in {}: {}", cap, d.label(), trimArray(commands, cap));
+                        else LOG.info("[KostiqAI] dryRun plan in {}: {}", d.label(), obj);
+                        return;
+                    }
 
-            arr.add(j);
-        }
-        JsonObject root = new JsonObject();
-        root.add("players", arr);
-        root.addProperty("difficulty", cfg.difficulty.name().toLowerCase(Locale.ROOT));
-        root.addProperty("stage", currentStage);
-        root.addProperty("maxSeverityNow", allowedMaxSeverityNow());
-        root.addProperty("balancedWindow", (cfg.difficulty==Difficulty.BALANCED) ? (inNastyWindow?"nasty":"safe") : "n/a");
-        return root;
+                    if (actions != null) { runActions(server, d, trimArray(actions, cap), force); return; }
+                    if (commands != null) { runCommands(server, trimArray(commands, cap)); }
+                }));
     }
 
-    // ===== AI / HEURISTIC PLANNER =====
-    private boolean previewOnce = false;
-
-    private void planWithAIAndMaybeExecute(MinecraftServer server, boolean force) {
-        if (server.getPlayerManager().getPlayerList().isEmpty()) return;
-
-        JsonObject snapshot = snapshotPlayers(server);
-
-        if (!cfg.aiEnabled) {
-            JsonArray actions = heuristicPlan(snapshot);
-            if (cfg.dryRun) LOG.info("[KostiqAI] dryRun plan (heuristic/no-AI): {}", actions);
-            else runActions(server, actions, force);
-            return;
-        }
-
-        String apiKey = System.getenv(cfg.openai.apiKeyEnv);
-        if (apiKey == null || apiKey.isBlank()) {
-            LOG.warn("[KostiqAI] No OpenAI API key in env {}. Using heuristic planner.", cfg.openai.apiKeyEnv);
-            JsonArray actions = heuristicPlan(snapshot);
-            if (cfg.dryRun) LOG.info("[KostiqAI] dryRun plan (heuristic/no-API-key): {}", actions);
-            else runActions(server, actions, force);
-            return;
-        }
+    private record AiOutcome(JsonObject plan, JsonArray fallback) {}
 
+    // Server thread: action types a planner may pick right now (not banned, not held back by the governor).
+    private Set<String> eligibleTypes() {
+        Set<String> out = new HashSet<>();
+        for (String t : ActionCatalog.ALL_TYPES) if (!cfg.banned(t) && governorAllows(t)) out.add(t);
+        return out;
+    }
 
+    // Builds the chat request; runs on the planner pool (prompt assembly and snapshot serialization).
+    private java.net.http.HttpRequest aiRequest(JsonObject snapshot, String apiKey) {
         String systemPrompt =
                 "You plan SHORT Minecraft pranks. Output STRICT JSON ONLY as {\"actions\":[...]}. Return at most TWO items. Include a short 'reason' string.\n" +
                         "Diversity rules: Avoid repeating the same HEADLINE action for the same player in the last 3 cycles. Prefer alternates if a choice seems overused.\n" +
@@ -793,7 +1467,7 @@ public class Kostiqai implements ModInitializer {
 
         String userPrompt =
                 "Snapshot JSON below. You MAY include a 'target' name, but if omitted the server will pick fairly among players.\n" +
-                        "Max items per cycle: " + Math.max(1, Math.min(2, cfg.maxActionsPerCycle)) + ". Allowed commands: " + ALLOW + ".\n" +
+                        "Max items per cycle: " + Math.max(1, Math.min(2, cfg.maxActionsPerCycle)) + ". Allowed commands: " + cfg.allow + ".\n" +
                         gson.toJson(snapshot);
 
         JsonObject body = new JsonObject();
@@ -809,72 +1483,12 @@ public class Kostiqai implements ModInitializer {
         String url = (cfg.openai.baseUrl == null || cfg.openai.baseUrl.isBlank())
                 ? "https://api.openai.com/v1/chat/completions" : cfg.openai.baseUrl;
 
-        java.net.http.HttpRequest req = java.net.http.HttpRequest.newBuilder(java.net.URI.create(url))
+        return java.net.http.HttpRequest.newBuilder(java.net.URI.create(url))
                 .header("Content-Type", "application/json")
                 .header("Authorization", "Bearer " + apiKey)
                 .timeout(Duration.ofSeconds(Math.max(5, cfg.openai.timeoutSec)))
                 .POST(java.net.http.HttpRequest.BodyPublishers.ofString(gson.toJson(body)))
                 .build();
-
-        CompletableFuture
-                .supplyAsync(() -> {
-                    try {
-                        var res = http.send(req, java.net.http.HttpResponse.BodyHandlers.ofString());
-
-                        if (res.statusCode() / 100 != 2) {
-                            LOG.warn("[KostiqAI] OpenAI HTTP {}", res.statusCode());
-                            return null;
-                        }
-                        JsonObject root = JsonParser.parseString(res.body()).getAsJsonObject();
-                        if (!root.has("choices")) return null;
-                        var choices = root.getAsJsonArray("choices");
-                        if (choices.size() == 0) return null;
-                        JsonObject choice0 = choices.get(0).getAsJsonObject();
-                        JsonObject message = choice0.getAsJsonObject("message");
-                        String content = message.get("content").getAsString();
-                        return JsonParser.parseString(content).getAsJsonObject();
-
-                    } catch (Exception e) {
-                        LOG.warn("[KostiqAI] planning error", e);
-                        return null;
-                    }
-                }, io)
-                .thenAccept(obj -> server.execute(() -> {
-                    if (obj == null) {
-                        aiFailCount = Math.min(aiFailCount + 1, 8);
-                        int backoffSec = (int)Math.min(60, Math.pow(2, aiFailCount));
-                        aiBackoffUntilTick = tickCounter + backoffSec * 20;
-                        LOG.warn("[KostiqAI] planner backoff {}s (fail#{})", backoffSec, aiFailCount);
-
-                        JsonArray fb = heuristicPlan(snapshot);
-                        if (cfg.dryRun) LOG.info("[KostiqAI] dryRun fallback plan: {}", fb); else runActions(server, fb, force);
-                        return;
-                    }
-
-                    aiFailCount = 0;
-                    aiBackoffUntilTick = 0;
-
-                    JsonArray actions  = obj.has("actions")  ? obj.getAsJsonArray("actions")  : null;
-                    JsonArray commands = obj.has("commands") ? obj.getAsJsonArray("commands") : null;
-
-                    int cap = Math.max(1, Math.min(2, cfg.maxActionsPerCycle));
-
-                    if (previewOnce) {
-                        previewOnce = false;
-                        LOG.info("[KostiqAI] PREVIEW plan: {}", (actions!=null?actions:commands!=null?commands:obj));
-                        return;
-                    }
-
-                    if (cfg.dryRun) {
-                        if (actions  != null) LOG.info("[KostiqAI] dryRun plan (actions, cap={}): {}",  cap, trimArray(actions, cap));
-                        else if (commands != null) LOG.info("[KostiqAI] dryRun plan (commands, cap={}): {}", cap, trimArray(commands, cap));
-                        else LOG.info("[KostiqAI] dryRun plan: {}", obj);
-                        return;
-                    }
-
-                    if (actions != null) { runActions(server, trimArray(actions, cap), force); return; }
-                    if (commands != null) { runCommands(server, trimArray(commands, cap)); }
-                }));
     }
 
     private JsonArray trimArray(JsonArray in, int max) {
@@ -884,156 +1498,70 @@ public class Kostiqai implements ModInitializer {
         return out;
     }
 
-    // heuristic planner
-    private JsonArray heuristicPlan(JsonObject snapshot) {
-        JsonArray out = new JsonArray();
-        JsonArray players = snapshot.getAsJsonArray("players");
-        if (players == null || players.size() == 0) return out;
-
-        // 1. Select a target fairly
-        List<JsonObject> candidates = new ArrayList<>();
-        for (JsonElement playerEl : players) {
-            JsonObject p = playerEl.getAsJsonObject();
-            if (p.get("mode").getAsString().equals("OFF")) continue;
-            candidates.add(p);
-        }
-        if (candidates.isEmpty()) return out;
-
-        candidates.sort(Comparator.comparingInt(p -> {
-            UUID uuid = UUID.fromString(p.get("uuid").getAsString());
-            return lastActionTickByPlayer.getOrDefault(uuid, 0);
-        }));
-
-        var rnd = new java.util.Random();
-        int topBand = Math.max(1, candidates.size() / 2);
-        JsonObject targetPlayerSnapshot = candidates.get(rnd.nextInt(topBand));
-        String targetName = targetPlayerSnapshot.get("name").getAsString();
-        UUID targetUuid = UUID.fromString(targetPlayerSnapshot.get("uuid").getAsString());
-        Mode targetMode = Mode.valueOf(targetPlayerSnapshot.get("mode").getAsString());
-        boolean isNether = targetPlayerSnapshot.get("isNether").getAsBoolean();
-
-
-        // 2. Determine valid actions
-        int maxSev = allowedMaxSeverityNow();
-        List<String> validHeadlines = new ArrayList<>();
-        List<String> validFlourishes = new ArrayList<>();
-
-        for (String actionType : ALL_ACTION_TYPES) {
-            if (cfg.bannedActions.contains(actionType)) continue;
-            if (isRepeatFor(targetUuid, actionType)) continue;
-            if (isNether && actionType.equals("SPAWN")) continue;
-
-            int severity = severityOf(actionType);
-            if (severity > maxSev) continue;
-            if (targetMode == Mode.MILD && severity > 1) continue;
-            if (targetMode == Mode.SPICY && severity > 4) continue; // SPICY allows up to 4, not 5.
-
-            if (severity > 1) { // Headlines are severity 2+
-                validHeadlines.add(actionType);
-            } else { // Flourishes are severity 1
-                validFlourishes.add(actionType);
-            }
-        }
-
-        // 3. Select actions to perform
-        String chosenHeadline = null;
-        if (!validHeadlines.isEmpty()) {
-            chosenHeadline = validHeadlines.get(rnd.nextInt(validHeadlines.size()));
-            out.add(createActionObject(chosenHeadline, targetName, targetPlayerSnapshot));
-        }
-
-        if (!validFlourishes.isEmpty()) {
-            if (rnd.nextDouble() < 0.6 || chosenHeadline == null) { // 60% chance, or 100% if no headline
-                String chosenFlourish = validFlourishes.get(rnd.nextInt(validFlourishes.size()));
-                if (!chosenFlourish.equals(chosenHeadline)) {
-                    out.add(createActionObject(chosenFlourish, targetName, targetPlayerSnapshot));
-                }
-            }
-        }
-
-        return trimArray(out, cfg.maxActionsPerCycle);
-    }
-
-    private JsonObject createActionObject(String type, String targetName, JsonObject playerSnapshot) {
-        JsonObject action = obj("type", type, "target", targetName, "reason", "Heuristic Planner");
-        var rnd = new java.util.Random();
-
-        switch (type) {
-            case "CAGE" -> { action.addProperty("material", "minecraft:glass"); action.addProperty("radius", 2); action.addProperty("height", 8); action.addProperty("duration_ticks", 200); }
-            case "SPAWN" -> { action.addProperty("entity", "random"); action.addProperty("count", 2 + rnd.nextInt(2)); action.addProperty("radius", 3); }
-            case "LAVA_TRAP" -> { action.addProperty("duration_ticks", 80); }
-            case "SLOW" -> { action.addProperty("seconds", 10 + rnd.nextInt(10)); action.addProperty("amplifier", 1); }
-            case "FATIGUE" -> { action.addProperty("seconds", 12 + rnd.nextInt(10)); action.addProperty("amplifier", 1); }
-            case "NAUSEA" -> { action.addProperty("seconds", 8 + rnd.nextInt(8)); }
-            case "SWITCH_WHILE_MINING" -> { action.addProperty("watch_seconds", 6); }
-            case "BLIND" -> { action.addProperty("seconds", 5 + rnd.nextInt(5)); }
-            case "WITHER_MAYBE" -> { action.addProperty("chance", 0.02); }
-            case "HOTBAR_SHUFFLE", "UNEQUIP_ARMOR", "DROP_INVENTORY", "WITHER_TEMPORARY", "INVENTORY_SPAM", "FORCE_RIDE" -> {} // no params
-            case "LEVITATE", "LEVITATE_LONG" -> { action.addProperty("seconds", type.equals("LEVITATE") ? 3 + rnd.nextInt(3) : 10 + rnd.nextInt(5)); }
-            case "BOUNCY_FLOOR", "HONEY_TRAP", "SAND_DRIZZLE", "FIRE_UNDER" -> { action.addProperty("duration_ticks", 120); }
-            case "ICE_RING" -> { action.addProperty("radius", 5); action.addProperty("duration_ticks", 400); }
-            case "PISTON_SHOVE" -> { action.addProperty("dx", rnd.nextInt(13) - 6); action.addProperty("dz", rnd.nextInt(13) - 6); action.addProperty("up", 0.8 + rnd.nextDouble()); }
-            case "RUBBERBAND" -> { action.addProperty("delay_ticks", 20 + rnd.nextInt(40));}
-            case "YEET_EXPLOSION" -> { action.addProperty("power", 1.5 + rnd.nextDouble() * 1.5); }
-            case "HYPER_SPEED" -> { action.addProperty("seconds", 6 + rnd.nextInt(5)); action.addProperty("amplifier", 20 + rnd.nextInt(15)); }
-            case "ITEM_MAGNET" -> { action.addProperty("radius", 10 + rnd.nextInt(10)); }
-            case "FLOOR_PULL" -> { action.addProperty("depth", 5); action.addProperty("duration_ticks", 100); }
-            case "BERSERK" -> { action.addProperty("seconds", 10); }
-            case "FLIP_VIEW" -> { action.addProperty("seconds", 8); }
+    // heuristic planner; reads only the snapshot, the eligible set, cfg and concurrent maps, so it runs on the planner pool
+    private JsonArray heuristicPlan(Director d, JsonObject snapshot, Set<String> eligible) {
+        long t0 = System.nanoTime();
+        try {
+            if (cfg.planAll.enabled)
+                return HeuristicPlanner.planAll(snapshot, eligible, pacing::lastAction, cfg.planAll.actionsPerPlayer, cfg.planAll.maxActions, cfg.maxTypeShare, d.planRng.nextLong());
+            return HeuristicPlanner.plan(snapshot, eligible, pacing::lastAction, cfg.maxActionsPerCycle, d.planRng);
         }
-        return action;
-    }
-
-    private JsonObject obj(Object... kv) {
-        JsonObject o = new JsonObject();
-        for (int i=0;i<kv.length;i+=2) {
-            String k = String.valueOf(kv[i]);
-            Object v = kv[i+1];
-            if (v instanceof Number n) o.addProperty(k, n);
-            else if (v instanceof Boolean b) o.addProperty(k, b);
-            else o.addProperty(k, String.valueOf(v));
+        finally {
+            long ns = System.nanoTime() - t0;
+            perf.recordNanos("plan.heuristic", ns);
+            metrics.plannerLatency("heuristic", ns);
         }
-        return o;
     }
 
     // ===== COMMAND EXEC =====
     private void runCommands(MinecraftServer server, JsonArray commands) {
         int ran = 0;
         for (var el : commands) {
-            if (ran >= MAX_CMDS) break;
+            if (ran >= cfg.maxCommandsPerCycle) break;
             JsonObject obj = el.getAsJsonObject();
             String c = obj.get("command").getAsString().trim();
             if (c.isBlank()) continue;
 
-            String base = c.split("\\s+")[0].toLowerCase(Locale.ROOT);
-            if (!ALLOW.contains(base)) { LOG.info("[KostiqAI] blocked (not allowlisted): {}", c); continue; }
+            // parsed and allowlist-checked once per template shape, including execute ... run chains
+            long compileT0 = System.nanoTime();
+            CommandTemplates.Template tpl = commandTemplates.compile(server, c, cfg.allow);
+            perf.record("command.compile", compileT0);
+            if (!tpl.ok()) { LOG.info("[KostiqAI] blocked ({}): {}", tpl.reason(), c); continue; }
 
             int delay = obj.has("delay") ? Math.max(0, obj.get("delay").getAsInt()) : 0;
 
-            if (c.contains("{TARGET}")) {
+            String target = "";
+            if (tpl.targeted()) {
                 var online = server.getPlayerManager().getPlayerList();
                 if (online.isEmpty()) { LOG.info("[KostiqAI] no players for command: {}", c); continue; }
                 var rnd = server.getOverworld()!=null ? server.getOverworld().getRandom() : net.minecraft.util.math.random.Random.create();
-                String name = online.get(rnd.nextInt(online.size())).getGameProfile().getName();
-                c = c.replace("{TARGET}", name);
+                target = online.get(rnd.nextInt(online.size())).getGameProfile().getName();
             }
 
             if (delay > 0) {
-                enqueuePending(new Pending(c, tickCounter + delay));
-                LOG.info("[KostiqAI] scheduled in {}t: {}", delay, c);
+                enqueuePending(new Pending("__COMMAND__|" + target + "|" + tpl.text(), tickCounter + delay));
+                LOG.info("[KostiqAI] scheduled in {}t: {} -> {}", delay, tpl.text(), target.isEmpty() ? "-" : target);
             } else {
-                final String cmdText = c;
-                server.execute(() -> {
-                    try {
-                        int result = server.getCommandManager().getDispatcher().execute(cmdText, server.getCommandSource());
-                        LOG.info(result > 0 ? "[KostiqAI] ran: {}" : "[KostiqAI] no-op: {}", cmdText);
-                    } catch (Exception e) { LOG.warn("[KostiqAI] failed: {}", cmdText, e); }
-                });
+                runTemplate(server, "command.ai", tpl.text(), target);
             }
             ran++;
         }
     }
 
+    // Re-resolves the template (a cache hit unless /reload or the allowlist changed) and binds the target by name.
+    private void runTemplate(MinecraftServer server, String phase, String template, String target) {
+        onServer(server, phase, () -> {
+            CommandTemplates.Template tpl = commandTemplates.compile(server, template, cfg.allow);
+            if (!tpl.ok()) { LOG.info("[KostiqAI] blocked ({}): {}", tpl.reason(), template); return; }
+            ServerPlayerEntity p = tpl.targeted() ? server.getPlayerManager().getPlayer(target) : null;
+            if (tpl.targeted() && p == null) { LOG.info("[KostiqAI] target {} gone, skipped: {}", target, template); return; }
+            try {
+                int result = commandTemplates.execute(server, tpl, p);
+                LOG.info(result > 0 ? "[KostiqAI] ran: {} -> {}" : "[KostiqAI] no-op: {} -> {}", template, p != null ? target : "-");
+            } catch (Exception e) { LOG.warn("[KostiqAI] failed: {} -> {}", template, p != null ? target : "-", e); }
+        });
+    }
+
     // ===== SAFE JSON + CLAMP HELPERS =====
     private static String optString(JsonObject o, String key, String def) { if (o==null||key==null) return def; JsonElement e=o.get(key); return (e!=null && !e.isJsonNull())? e.getAsString():def; }
     private static int optInt(JsonObject o, String key, int def)       { if (o==null||key==null) return def; JsonElement e=o.get(key); return (e!=null && !e.isJsonNull())? e.getAsInt():def; }
@@ -1043,15 +1571,207 @@ public class Kostiqai implements ModInitializer {
     private static int secToTicks(int sec) { return Math.max(1, sec) * 20; }
     private static int clampSec(int sec, int min, int max) { if (sec < min) sec = min; if (sec > max) sec = max; return sec; }
 
+    // ===== CYCLE BATCH =====
+    // One planning cycle's effects. Targets are resolved once (entity handles, not names), world edits
+    // are grouped by world and chunk, and everything is applied in a single server-thread pass that
+    // shares the per-tick block budget and ends with one log flush.
+    // One action body; tag is set when it came from a plan, and the plan's action is logged once all its steps have run.
+    private static final class Step {
+        final String type;
+        final ServerPlayerEntity player;
+        final Runnable body;
+        ActionTag tag;
+        int queuedTick;
+
+        Step(String type, ServerPlayerEntity player, Runnable body) { this.type = type; this.player = player; this.body = body; }
+    }
+
+    // Shared by every step one planned action queued; costs add up and the last step to run writes the line.
+    private static final class ActionTag {
+        final String type, target;
+        final JsonObject params;
+        int left;
+        boolean ok = true;
+        long nanos;
+        int blocks, entities;
+
+        ActionTag(String type, String target, JsonObject params, int steps) { this.type = type; this.target = target; this.params = params; this.left = steps; }
+    }
+
+    private final class Cycle {
+        final MinecraftServer server;
+        private final Map<String, ServerPlayerEntity> byName = new HashMap<>();
+        private final Map<RegistryKey<World>, TreeMap<Long, List<Step>>> edits = new LinkedHashMap<>();
+        private final List<Step> effects = new ArrayList<>();
+        private final List<ActionLogEntry> logLines = new ArrayList<>();
+        private boolean direct = false;  // applying or already handed off: bodies queued now run at once
+        private final List<Step> queued = new ArrayList<>(); // queue order, for tagging
+
+        Cycle(MinecraftServer server) { this.server = server; }
+
+        ServerPlayerEntity resolve(String name) {
+            return byName.computeIfAbsent(name, n -> server.getPlayerManager().getPlayer(n));
+        }
+
+        // player-only effect, applied in plan order after the world edits
+        void effect(String type, ServerPlayerEntity p, Runnable body) {
+            Step st = new Step(type, p, body);
+            if (direct) { runStep(st); return; }
+            effects.add(st);
+            queued.add(st);
+        }
+
+        // block-writing effect, grouped with other edits in the same world and chunk
+        void edit(String type, ServerPlayerEntity p, Runnable body) {
+            Step st = new Step(type, p, body);
+            if (direct) { runStep(st); return; }
+            edits.computeIfAbsent(p.getWorld().getRegistryKey(), k -> new TreeMap<>())
+                    .computeIfAbsent(p.getChunkPos().toLong(), k -> new ArrayList<>())
+                    .add(st);
+            queued.add(st);
+        }
+
+        int queued() { return queued.size(); }
+
+        // Ties every step queued since mark to one log line carrying their summed cost; false if none was queued.
+        boolean tag(int mark, String type, String target, JsonObject params) {
+            if (queued.size() == mark) return false;
+            ActionTag tag = new ActionTag(type, target, params, queued.size() - mark);
+            for (Step st : queued.subList(mark, queued.size())) st.tag = tag;
+            return true;
+        }
+
+        void log(ActionLogEntry entry) { if (entry != null) logLines.add(entry); }
+
+        // Hands the steps to the scheduler in apply order (edits by world and chunk, then effects).
+        void flush() {
+            if (edits.isEmpty() && effects.isEmpty() && logLines.isEmpty()) return;
+            server.execute(() -> {
+                direct = true;
+                for (var byChunk : edits.values())
+                    for (List<Step> steps : byChunk.values())
+                        for (Step st : steps) scheduleStep(st);
+                for (Step st : effects) scheduleStep(st);
+                submitLogEntries(logLines);
+            });
+        }
+
+        // Runs everything now, outside the scheduler's budget (GameTest perf suite).
+        void apply() {
+            long t0 = System.nanoTime();
+            direct = true;
+            try {
+                for (var byChunk : edits.values())
+                    for (List<Step> steps : byChunk.values())
+                        for (Step st : steps) runStep(st);
+                for (Step st : effects) runStep(st);
+            } finally {
+                submitLogEntries(logLines);
+                perf.record("cycle.apply", t0);
+            }
+        }
+    }
+
+    // ===== ACTION SCHEDULER =====
+    // Bodies run from here within cfg.actionBudgetMicros of estimated cost per tick (scaled by the governor);
+    // what doesn't fit waits for a lighter tick. Cost comes from ActionCostModel, fed by the real runs below.
+    private final ActionCostModel costs = new ActionCostModel();
+    private final ArrayDeque<Step> steps = new ArrayDeque<>();
+    private long blockWritesTotal = 0;   // every write the block budget granted
+    private boolean inStep = false;
+    private int stepEntities = 0;        // entities loaded while the current step ran
+    private static final int STEP_LOOKAHEAD = 32;
+
+    private void scheduleStep(Step st) {
+        st.queuedTick = tickCounter;
+        steps.addLast(st);
+    }
+
+    private void drainSteps() {
+        if (steps.isEmpty()) return;
+        long t0 = System.nanoTime();
+        long budget = (long) (cfg.actionBudgetMicros * 1000L * governor.scale());
+        long spent = 0;
+        int scanned = 0;
+        for (var it = steps.iterator(); it.hasNext() && scanned < STEP_LOOKAHEAD; scanned++) {
+            Step st = it.next();
+            long est = costs.estimateNanos(st.type);
+            // an oversized or starved step still runs, but only as the first thing in an otherwise idle tick
+            boolean fits = spent + est <= budget;
+            boolean alone = spent == 0 && (est > budget || tickCounter - st.queuedTick >= cfg.actionMaxDeferTicks);
+            if (!fits && !alone) continue;
+            it.remove();
+            spent += runStep(st);
+            if (alone && !fits) break;
+        }
+        if (!steps.isEmpty()) metrics.stepsDeferred.add(steps.size());
+        perf.record("actions.drain", t0);
+    }
+
+    // Runs one body, measures it, feeds the cost model and writes its log line. Returns the nanos it took.
+    private long runStep(Step st) {
+        String name = st.player.getGameProfile().getName();
+        if (st.player.isRemoved()) {
+            LOG.debug("[KostiqAI] {} gone before {} applied", name, st.type);
+            if (st.tag != null) settle(st.tag, false, 0, 0, 0);
+            return 0;
+        }
+        if (inStep) {
+            // queued by the body that is running (BERSERK -> SPAWN, ...): part of that step's cost, blocks and entities
+            try { st.body.run(); }
+            catch (Exception e) { LOG.warn("[KostiqAI] action '{}' for {} failed with {}", st.type, name, e.toString()); }
+            return 0;
+        }
+        long blocks0 = blockWritesTotal;
+        stepEntities = 0;
+        inStep = true;
+        boolean ok = true;
+        long t0 = System.nanoTime();
+        try { st.body.run(); }
+        catch (Exception e) {
+            ok = false;
+            LOG.warn("[KostiqAI] action '{}' for {} failed with {}", st.type, name, e.toString());
+        } finally {
+            inStep = false;
+        }
+        long ns = System.nanoTime() - t0;
+        int blocks = (int) (blockWritesTotal - blocks0);
+        perf.recordNanos("action." + st.type, ns);
+        metrics.actionLatency(st.type, ns);
+        costs.record(st.type, ns, blocks, stepEntities);
+        if (st.tag != null) settle(st.tag, ok, ns, blocks, stepEntities);
+        return ns;
+    }
+
+    private void settle(ActionTag tag, boolean ok, long ns, int blocks, int entities) {
+        tag.ok &= ok;
+        tag.nanos += ns; tag.blocks += blocks; tag.entities += entities;
+        if (--tag.left > 0) return;
+        metrics.action(tag.type, tag.ok);
+        ActionLogEntry entry = actionLogEntry(tag.type, tag.target, tag.ok, tag.nanos, tag.blocks, tag.entities, tag.params);
+        if (entry != null) submitLogEntries(List.of(entry));
+    }
+
+    // Shutdown: whatever the budget deferred still runs, so no planned action is silently lost or left unlogged.
+    private void runAllSteps() {
+        int n = steps.size();
+        while (!steps.isEmpty()) runStep(steps.pollFirst());
+        if (n > 0) LOG.info("[KostiqAI] shutdown: ran {} deferred action steps", n);
+    }
+
     // ===== ACTIONS =====
-    private void runActions(MinecraftServer server, JsonArray actions, boolean force) {
+    private void runActions(MinecraftServer server, Director d, JsonArray actions, boolean force) {
         if (actions == null || actions.size() == 0) return;
 
-        Set<String> usedTypesThisCycle = new HashSet<>();
+        Cycle cy = new Cycle(server);
+        ActionSelector sel = new ActionSelector(cfg, pacing, d.diversity, this::governorAllows, allowedMaxSeverityNow(),
+                cfg.difficulty == Difficulty.BALANCED && !curve.nasty(), tickCounter, d.rng);
+        boolean perTarget = sel.perTarget();
+        Set<UUID> armAfter = new HashSet<>(); // plan-all: a player's own actions don't cool each other down
 
         int ran = 0;
         for (var el : actions) {
-            if (ran >= cfg.maxActionsPerCycle) break;
+            if (ran >= sel.cap()) break;
             if (el == null || !el.isJsonObject()) { LOG.info("[KostiqAI] skip: non-object action {}", el); continue; }
 
             JsonObject a = el.getAsJsonObject();
@@ -1059,53 +1779,32 @@ public class Kostiqai implements ModInitializer {
             String type = optString(a, "type", "").trim();
             if (type.isEmpty()) { LOG.info("[KostiqAI] skip: missing 'type' in {}", a); continue; }
 
-            if (cfg.bannedActions.contains(type.toUpperCase(Locale.ROOT))) {
+            if (cfg.banned(type.toUpperCase(Locale.ROOT))) {
                 LOG.info("[KostiqAI] action '{}' banned; skipping", type);
                 continue;
             }
 
-            int maxSev = allowedMaxSeverityNow();
-            int sev = severityOf(type);
-            if (sev > maxSev) {
-                String alt = pickAlternateAtSeverity(type, maxSev, null);
-                if (alt != null) {
-                    LOG.debug("[KostiqAI] downshifting {}(sev{}) -> {}(≤{})", type, sev, alt, maxSev);
-                    type = alt;
-                } else continue;
-            }
-
-            if (usedTypesThisCycle.contains(type)) {
-                String alt = pickAlternateAtSeverity(type, allowedMaxSeverityNow(), null);
-                if (alt != null) type = alt;
+            String admitted = sel.admit(type);
+            if (admitted == null) {
+                LOG.debug("[KostiqAI] {} held back (severity cap {}, governor {})", type, sel.maxSeverity(), governor.level());
+                continue;
             }
-            usedTypesThisCycle.add(type);
+            if (!admitted.equals(type)) LOG.debug("[KostiqAI] downshifting {} -> {} (≤{}, governor {})", type, admitted, sel.maxSeverity(), governor.level());
+            type = admitted;
 
             String requestedTarget = optString(a, "target", "").trim();
+            type = sel.unique(type, requestedTarget);
 
-            // ==== fair target choice ====
-            List<ServerPlayerEntity> online = server.getPlayerManager().getPlayerList();
-            if (online.isEmpty()) { LOG.info("[KostiqAI] no players online"); continue; }
+            // ==== fair target choice (within this director's world) ====
+            World dw = server.getWorld(d.world);
+            List<ServerPlayerEntity> online = dw instanceof ServerWorld dsw ? dsw.getPlayers() : List.of();
+            if (online.isEmpty()) { LOG.info("[KostiqAI] no players left in {}", d.label()); continue; }
 
-            List<ServerPlayerEntity> candidates = new ArrayList<>();
-            for (ServerPlayerEntity pl : online) {
-                Profile pr0 = prof(pl);
-                if (pr0.mode == Mode.OFF) continue;
-                if (!force && playerOnCooldown(pl)) continue;
-                candidates.add(pl);
-            }
-            if (candidates.isEmpty()) candidates.addAll(online);
-
-            candidates.sort(Comparator.comparingInt(pl -> lastActionTickByPlayer.getOrDefault(pl.getUuid(), 0)));
-            net.minecraft.util.math.random.Random rnd = (server.getOverworld()!=null?server.getOverworld().getRandom():net.minecraft.util.math.random.Random.create());
-            int topBand = Math.max(1, candidates.size() / 2);
+            List<ServerPlayerEntity> candidates = sel.candidates(online,
+                    pl -> prof(pl).mode != Mode.OFF && (force || !playerOnCooldown(pl)), ServerPlayerEntity::getUuid);
 
-            ServerPlayerEntity chosen;
-            if (!requestedTarget.isEmpty()) {
-                chosen = server.getPlayerManager().getPlayer(requestedTarget);
-                if (chosen == null) chosen = candidates.get(rnd.nextInt(topBand));
-            } else {
-                chosen = candidates.get(rnd.nextInt(topBand));
-            }
+            ServerPlayerEntity chosen = requestedTarget.isEmpty() ? null : cy.resolve(requestedTarget);
+            if (chosen == null || !chosen.getWorld().getRegistryKey().equals(d.world)) chosen = sel.pickFair(candidates);
 
             List<ServerPlayerEntity> targets = new ArrayList<>();
             if (cfg.fanoutAll) targets.addAll(candidates); else targets.add(chosen);
@@ -1115,236 +1814,268 @@ public class Kostiqai implements ModInitializer {
                 String name = p.getGameProfile().getName();
                 if (!force && playerOnCooldown(p)) { LOG.debug("[KostiqAI] {} on cooldown", name); continue; }
 
-                long t0 = System.nanoTime();
                 boolean ok = true;
                 JsonObject paramsForLog = new JsonObject();
 
                 Profile pr = prof(p);
                 if (pr.mode == Mode.OFF) { LOG.debug("[KostiqAI] {} is OFF, skipping {}", name, type); continue; }
 
-                boolean isRepeat = isRepeatFor(p.getUuid(), type);
-                if (isRepeat && !type.equals("CAGE") && !type.equals("SPAWN") && !type.equals("LAVA_TRAP")) {
+                if (ActionSelector.minorRepeat(pr.recent, type)) {
                     LOG.debug("[KostiqAI] {} recently had {}, skipping minor repeat", name, type);
                     continue;
                 }
 
-                if (playerTypeOnCooldown(p, type)) {
-                    String alt = pickAlternate(type, pr);
-                    if (alt != null) type = alt; else continue;
-                }
-                if (overusedGlobally(type)) {
-                    String alt = pickAlternate(type, pr);
-                    if (alt != null) type = alt; else continue;
-                }
+                String forPlayer = sel.forPlayer(type, p.getUuid(), pr.mode == Mode.MILD, pr.recent);
+                if (forPlayer == null) continue;
+                type = forPlayer;
 
+                int mark = cy.queued();
                 try {
                     String reason = optString(a, "reason", "");
                     if (!reason.isBlank()) paramsForLog.addProperty("reason", reason);
-                    switch (type) {
-                        case "CAGE" -> {
-                            String mat = optString(a, "material", "minecraft:glass");
-                            int radius = clampInt(a, "radius", 2, 1, 3);
-                            int height = clampInt(a, "height", 8, 5, 10);
-                            int dur = clampInt(a, "duration_ticks", 200, 20, 20*30);
-                            paramsForLog.addProperty("material", mat); paramsForLog.addProperty("radius", radius); paramsForLog.addProperty("height", height); paramsForLog.addProperty("duration_ticks", dur);
-                            doCage(server, name, mat, radius, dur, height);
-                        }
-                        case "SPAWN" -> {
-                            String ent = optString(a, "entity", "random");
-                            int count = clampInt(a, "count", 1, 1, MAX_MOBS_PER_ACTION);
-                            int radius = clampInt(a, "radius", 2, 0, MAX_RADIUS);
-                            paramsForLog.addProperty("entity", ent); paramsForLog.addProperty("count", count); paramsForLog.addProperty("radius", radius);
-                            doSpawn(server, name, ent, count, radius);
-                        }
-                        case "LAVA_TRAP" -> {
-                            int dur = clampInt(a, "duration_ticks", 100, 20, MAX_LAVA_TICKS);
-                            paramsForLog.addProperty("duration_ticks", dur);
-                            doLavaTrap(server, name, dur);
-                        }
-                        case "SLOW" -> {
-                            int secs = clampInt(a, "seconds", 8, 2, 30);
-                            int amp  = clampInt(a, "amplifier", 0, 0, 2);
-                            paramsForLog.addProperty("seconds", secs); paramsForLog.addProperty("amplifier", amp);
-                            doSlow(server, name, secs, amp);
-                        }
-                        case "FATIGUE" -> {
-                            int secs = clampInt(a, "seconds", 10, 3, 40);
-                            int amp  = clampInt(a, "amplifier", 0, 0, 2);
-                            paramsForLog.addProperty("seconds", secs); paramsForLog.addProperty("amplifier", amp);
-                            doFatigue(server, name, secs, amp);
-                        }
-                        case "NAUSEA" -> {
-                            int secs = clampInt(a, "seconds", 10, 2, 25);
-                            paramsForLog.addProperty("seconds", secs);
-                            doNausea(server, name, secs);
-                        }
-                        case "SWITCH_WHILE_MINING" -> {
-                            int watch = clampInt(a, "watch_seconds", 6, 2, 10);
-                            paramsForLog.addProperty("watch_seconds", watch);
-                            doSwitchWhileMining(server, name, watch);
-                        }
-                        case "BLIND" -> {
-                            int secs = clampInt(a, "seconds", 6, 1, 15);
-                            paramsForLog.addProperty("seconds", secs);
-                            doBlind(server, name, secs);
-                        }
-                        case "WITHER_MAYBE" -> {
-                            double chance = clampDouble(a, "chance", 0.02, 0.0, 0.05);
-                            paramsForLog.addProperty("chance", chance);
-                            doWitherMaybe(server, name, chance);
-                        }
-                        case "HOTBAR_SHUFFLE" -> doHotbarShuffle(server, name);
-                        case "LEVITATE", "LEVITATE_LONG" -> {
-                            int secs = (type.equals("LEVITATE_LONG")) ? clampInt(a, "seconds", 10, 5, 20) : clampInt(a, "seconds", 3, 1, 10);
-                            paramsForLog.addProperty("seconds", secs);
-                            doLevitate(server, name, secs);
-                        }
-                        case "BOUNCY_FLOOR" -> {
-                            int dur = clampInt(a, "duration_ticks", 120, 40, 20*10);
-                            paramsForLog.addProperty("duration_ticks", dur);
-                            doBouncyFloor(server, name, dur);
-                        }
-                        case "HONEY_TRAP" -> {
-                            int dur = clampInt(a, "duration_ticks", 120, 40, 20*10);
-                            paramsForLog.addProperty("duration_ticks", dur);
-                            doHoneyTrap(server, name, dur);
-                        }
-                        case "PISTON_SHOVE" -> {
-                            int dx = clampInt(a, "dx", 4, -8, 8);
-                            int dz = clampInt(a, "dz", 0, -8, 8);
-                            double up = clampDouble(a, "up", 1.0, 0.2, 1.5);
-                            paramsForLog.addProperty("dx", dx); paramsForLog.addProperty("dz", dz); paramsForLog.addProperty("up", up);
-                            doPistonShove(server, name, dx, dz, up);
-                        }
-                        case "ICE_RING" -> {
-                            int r = clampInt(a, "radius", 5, 2, 8);
-                            int dur = clampInt(a, "duration_ticks", 400, 100, 20*30);
-                            paramsForLog.addProperty("radius", r); paramsForLog.addProperty("duration_ticks", dur);
-                            doIceRing(server, name, r, dur);
-                        }
-                        case "SAND_DRIZZLE" -> {
-                            int dur = clampInt(a, "duration_ticks", 100, 40, 20*10);
-                            paramsForLog.addProperty("duration_ticks", dur);
-                            doSandDrizzle(server, name, dur);
-                        }
-                        case "DROP_INVENTORY" -> {
-                            doDropInventory(server, name);
-                        }
-                        case "FIRE_UNDER" -> {
-                            int dur = clampInt(a, "duration_ticks", 100, 20, 20*10);
-                            paramsForLog.addProperty("duration_ticks", dur);
-                            doFireUnder(server, name, dur);
-                        }
-                        case "UNEQUIP_ARMOR" -> {
-                            paramsForLog.addProperty("dropIfFull", true);
-                            doUnequipArmor(server, name, true);
-                        }
-                        case "RUBBERBAND" -> {
-                            int delay = clampInt(a, "delay_ticks", 40, 10, 80);
-                            paramsForLog.addProperty("delay_ticks", delay);
-                            doRubberband(server, name, delay);
-                        }
-                        case "YEET_EXPLOSION" -> {
-                            float power = (float)clampDouble(a, "power", 2.0, 1.0, 4.0);
-                            paramsForLog.addProperty("power", power);
-                            doYeetExplosion(server, name, power);
-                        }
-                        case "HYPER_SPEED" -> {
-                            int secs = clampInt(a, "seconds", 8, 4, 15);
-                            int amp = clampInt(a, "amplifier", 25, 20, 40);
-                            paramsForLog.addProperty("seconds", secs); paramsForLog.addProperty("amplifier", amp);
-                            doHyperSpeed(server, name, secs, amp);
-                        }
-                        case "ITEM_MAGNET" -> {
-                            int r = clampInt(a, "radius", 15, 5, 25);
-                            paramsForLog.addProperty("radius", r);
-                            doItemMagnet(server, name, r);
-                        }
-                        case "FLOOR_PULL" -> {
-                            int depth = clampInt(a, "depth", 5, 2, 8);
-                            int dur = clampInt(a, "duration_ticks", 100, 20, 200);
-                            paramsForLog.addProperty("depth", depth); paramsForLog.addProperty("duration_ticks", dur);
-                            doFloorPull(server, name, depth, dur);
-                        }
-                        case "WITHER_TEMPORARY" -> {
-                            doWitherTemporary(server, name);
-                        }
-                        case "BERSERK" -> {
-                            int secs = clampInt(a, "seconds", 10, 5, 20);
-                            paramsForLog.addProperty("seconds", secs);
-                            doBerserk(server, name, secs);
-                        }
-                        case "FLIP_VIEW" -> {
-                            int secs = clampInt(a, "seconds", 8, 4, 15);
-                            paramsForLog.addProperty("seconds", secs);
-                            doFlipView(server, name, secs);
-                        }
-                        case "INVENTORY_SPAM" -> {
-                            doInventorySpam(server, name);
-                        }
-                        case "FORCE_RIDE" -> {
-                            doForceRide(server, name);
-                        }
-                        default -> { LOG.info("[KostiqAI] unknown action type: {}", type); ok = false; }
-                    }
+                    ok = dispatch(cy, p, type, a, paramsForLog);
                 } catch (Exception ex) {
                     ok = false;
                     LOG.warn("[KostiqAI] action '{}' for {} failed with {}", type, name, ex.toString());
                 } finally {
                     if (ok) {
-                        rememberActionType(p, type);
-                        rememberGlobalType(type);
-                        armPlayerTypeCooldown(p, type);
-                        lastActionTickByPlayer.put(p.getUuid(), tickCounter); // fairness
+                        sel.acted(p.getUuid(), type, pr.recent);
+                        pr.lastDirectedTick = tickCounter;
+                    }
+                    // queued bodies are counted and logged once, with their summed cost, after the scheduler has run them all
+                    if (!ok || !cy.tag(mark, type, name, paramsForLog)) {
+                        metrics.action(type, ok);
+                        cy.log(actionLogEntry(type, name, ok, 0, 0, 0, paramsForLog));
                     }
-                    long ms = Math.max(0, (System.nanoTime() - t0) / 1_000_000);
-                    logActionEvent(type, name, ok, ms, paramsForLog);
                 }
 
-                nextAllowedForPlayer.put(p.getUuid(), tickCounter + Math.max(40, cfg.playerCooldownTicks));
+                if (perTarget) armAfter.add(p.getUuid());
+                else sel.arm(p.getUuid());
             }
             ran++;
         }
+        for (UUID id : armAfter) sel.arm(id);
+        cy.flush();
+    }
+
+    // Validates one action's parameters and queues its body on the cycle; false for an unknown type.
+    private boolean dispatch(Cycle cy, ServerPlayerEntity p, String type, JsonObject a, JsonObject paramsForLog) {
+        switch (type) {
+            case "CAGE" -> {
+                String mat = optString(a, "material", "minecraft:glass");
+                int radius = clampInt(a, "radius", 2, 1, 3);
+                int height = clampInt(a, "height", 8, 5, 10);
+                int dur = clampInt(a, "duration_ticks", 200, 20, 20*30);
+                paramsForLog.addProperty("material", mat); paramsForLog.addProperty("radius", radius); paramsForLog.addProperty("height", height); paramsForLog.addProperty("duration_ticks", dur);
+                doCage(cy, p, mat, radius, dur, height);
+            }
+            case "SPAWN" -> {
+                String ent = optString(a, "entity", "random");
+                int count = clampInt(a, "count", 1, 1, MAX_MOBS_PER_ACTION);
+                int radius = clampInt(a, "radius", 2, 0, MAX_RADIUS);
+                paramsForLog.addProperty("entity", ent); paramsForLog.addProperty("count", count); paramsForLog.addProperty("radius", radius);
+                doSpawn(cy, p, ent, count, radius);
+            }
+            case "LAVA_TRAP" -> {
+                int dur = clampInt(a, "duration_ticks", 100, 20, MAX_LAVA_TICKS);
+                paramsForLog.addProperty("duration_ticks", dur);
+                doLavaTrap(cy, p, dur);
+            }
+            case "SLOW" -> {
+                int secs = clampInt(a, "seconds", 8, 2, 30);
+                int amp  = clampInt(a, "amplifier", 0, 0, 2);
+                paramsForLog.addProperty("seconds", secs); paramsForLog.addProperty("amplifier", amp);
+                doSlow(cy, p, secs, amp);
+            }
+            case "FATIGUE" -> {
+                int secs = clampInt(a, "seconds", 10, 3, 40);
+                int amp  = clampInt(a, "amplifier", 0, 0, 2);
+                paramsForLog.addProperty("seconds", secs); paramsForLog.addProperty("amplifier", amp);
+                doFatigue(cy, p, secs, amp);
+            }
+            case "NAUSEA" -> {
+                int secs = clampInt(a, "seconds", 10, 2, 25);
+                paramsForLog.addProperty("seconds", secs);
+                doNausea(cy, p, secs);
+            }
+            case "SWITCH_WHILE_MINING" -> {
+                int watch = clampInt(a, "watch_seconds", 6, 2, 10);
+                paramsForLog.addProperty("watch_seconds", watch);
+                doSwitchWhileMining(cy, p, watch);
+            }
+            case "BLIND" -> {
+                int secs = clampInt(a, "seconds", 6, 1, 15);
+                paramsForLog.addProperty("seconds", secs);
+                doBlind(cy, p, secs);
+            }
+            case "WITHER_MAYBE" -> {
+                double chance = clampDouble(a, "chance", 0.02, 0.0, 0.05);
+                paramsForLog.addProperty("chance", chance);
+                doWitherMaybe(cy, p, chance);
+            }
+            case "HOTBAR_SHUFFLE" -> doHotbarShuffle(cy, p);
+            case "LEVITATE", "LEVITATE_LONG" -> {
+                int secs = (type.equals("LEVITATE_LONG")) ? clampInt(a, "seconds", 10, 5, 20) : clampInt(a, "seconds", 3, 1, 10);
+                paramsForLog.addProperty("seconds", secs);
+                doLevitate(cy, p, secs);
+            }
+            case "BOUNCY_FLOOR" -> {
+                int dur = clampInt(a, "duration_ticks", 120, 40, 20*10);
+                paramsForLog.addProperty("duration_ticks", dur);
+                doBouncyFloor(cy, p, dur);
+            }
+            case "HONEY_TRAP" -> {
+                int dur = clampInt(a, "duration_ticks", 120, 40, 20*10);
+                paramsForLog.addProperty("duration_ticks", dur);
+                doHoneyTrap(cy, p, dur);
+            }
+            case "PISTON_SHOVE" -> {
+                int dx = clampInt(a, "dx", 4, -8, 8);
+                int dz = clampInt(a, "dz", 0, -8, 8);
+                double up = clampDouble(a, "up", 1.0, 0.2, 1.5);
+                paramsForLog.addProperty("dx", dx); paramsForLog.addProperty("dz", dz); paramsForLog.addProperty("up", up);
+                doPistonShove(cy, p, dx, dz, up);
+            }
+            case "ICE_RING" -> {
+                int r = clampInt(a, "radius", 5, 2, 8);
+                int dur = clampInt(a, "duration_ticks", 400, 100, 20*30);
+                paramsForLog.addProperty("radius", r); paramsForLog.addProperty("duration_ticks", dur);
+                doIceRing(cy, p, r, dur);
+            }
+            case "SAND_DRIZZLE" -> {
+                int dur = clampInt(a, "duration_ticks", 100, 40, 20*10);
+                paramsForLog.addProperty("duration_ticks", dur);
+                doSandDrizzle(cy, p, dur);
+            }
+            case "DROP_INVENTORY" -> {
+                doDropInventory(cy, p);
+            }
+            case "FIRE_UNDER" -> {
+                int dur = clampInt(a, "duration_ticks", 100, 20, 20*10);
+                paramsForLog.addProperty("duration_ticks", dur);
+                doFireUnder(cy, p, dur);
+            }
+            case "UNEQUIP_ARMOR" -> {
+                paramsForLog.addProperty("dropIfFull", true);
+                doUnequipArmor(cy, p, true);
+            }
+            case "RUBBERBAND" -> {
+                int delay = clampInt(a, "delay_ticks", 40, 10, 80);
+                paramsForLog.addProperty("delay_ticks", delay);
+                doRubberband(cy, p, delay);
+            }
+            case "YEET_EXPLOSION" -> {
+                float power = (float)clampDouble(a, "power", 2.0, 1.0, 4.0);
+                paramsForLog.addProperty("power", power);
+                doYeetExplosion(cy, p, power);
+            }
+            case "HYPER_SPEED" -> {
+                int secs = clampInt(a, "seconds", 8, 4, 15);
+                int amp = clampInt(a, "amplifier", 25, 20, 40);
+                paramsForLog.addProperty("seconds", secs); paramsForLog.addProperty("amplifier", amp);
+                doHyperSpeed(cy, p, secs, amp);
+            }
+            case "ITEM_MAGNET" -> {
+                int r = clampInt(a, "radius", 15, 5, 25);
+                paramsForLog.addProperty("radius", r);
+                doItemMagnet(cy, p, r);
+            }
+            case "FLOOR_PULL" -> {
+                int depth = clampInt(a, "depth", 5, 2, 8);
+                int dur = clampInt(a, "duration_ticks", 100, 20, 200);
+                paramsForLog.addProperty("depth", depth); paramsForLog.addProperty("duration_ticks", dur);
+                doFloorPull(cy, p, depth, dur);
+            }
+            case "WITHER_TEMPORARY" -> {
+                doWitherTemporary(cy, p);
+            }
+            case "BERSERK" -> {
+                int secs = clampInt(a, "seconds", 10, 5, 20);
+                paramsForLog.addProperty("seconds", secs);
+                doBerserk(cy, p, secs);
+            }
+            case "FLIP_VIEW" -> {
+                int secs = clampInt(a, "seconds", 8, 4, 15);
+                paramsForLog.addProperty("seconds", secs);
+                doFlipView(cy, p, secs);
+            }
+            case "INVENTORY_SPAM" -> {
+                doInventorySpam(cy, p);
+            }
+            case "FORCE_RIDE" -> {
+                doForceRide(cy, p);
+            }
+            default -> { LOG.info("[KostiqAI] unknown action type: {}", type); return false; }
+        }
+        return true;
+    }
+
+    // Runs one action now against a player, skipping planning, pacing, severity and the governor (GameTest perf suite).
+    // Returns the clamped parameters it ran with, or null for an unknown type. Server thread only.
+    JsonObject runActionNow(MinecraftServer server, ServerPlayerEntity p, JsonObject action) {
+        if (rollbackLoad != null) throw new IllegalStateException("rollback journal still loading");
+        Cycle cy = new Cycle(server);
+        JsonObject params = new JsonObject();
+        String type = optString(action, "type", "").trim().toUpperCase(Locale.ROOT);
+        if (!dispatch(cy, p, type, action, params)) return null;
+        prof(p).lastDirectedTick = tickCounter;
+        cy.apply();
+        return params;
     }
 
     // ---- Mild effects
-    private void doSlow(MinecraftServer server, String name, int seconds, int amp) {
+    private void doSlow(Cycle cy, ServerPlayerEntity p, int seconds, int amp) {
         final int secs = seconds, a = Math.max(0, Math.min(2, amp));
-        server.execute(() -> {
-            var p = server.getPlayerManager().getPlayer(name); if (p == null) return;
+        cy.effect("SLOW", p, () -> {
             p.addStatusEffect(new StatusEffectInstance(StatusEffects.SLOWNESS, secs * 20, a, true, true));
             LOG.info("[KostiqAI] slowness {}s amp{}", secs, a);
         });
     }
-    private void doFatigue(MinecraftServer server, String name, int seconds, int amp) {
+    private void doFatigue(Cycle cy, ServerPlayerEntity p, int seconds, int amp) {
         final int secs = seconds, a = Math.max(0, Math.min(2, amp));
-        server.execute(() -> {
-            var p = server.getPlayerManager().getPlayer(name); if (p == null) return;
+        cy.effect("FATIGUE", p, () -> {
             p.addStatusEffect(new StatusEffectInstance(StatusEffects.MINING_FATIGUE, secs * 20, a, true, true));
             LOG.info("[KostiqAI] mining fatigue {}s amp{}", secs, a);
         });
     }
-    private void doNausea(MinecraftServer server, String name, int seconds) {
+    private void doNausea(Cycle cy, ServerPlayerEntity p, int seconds) {
         final int secs = seconds;
-        server.execute(() -> {
-            var p = server.getPlayerManager().getPlayer(name); if (p == null) return;
+        cy.effect("NAUSEA", p, () -> {
             p.addStatusEffect(new StatusEffectInstance(StatusEffects.NAUSEA, secs * 20, 0, true, true));
             LOG.info("[KostiqAI] nausea {}s", secs);
         });
     }
 
     // ---- Watch & switch while mining
-    private void doSwitchWhileMining(MinecraftServer server, String name, int watchSeconds) {
+    private void doSwitchWhileMining(Cycle cy, ServerPlayerEntity p, int watchSeconds) {
+        final String name = p.getGameProfile().getName();
         final int ticks = Math.max(20, Math.min(20*10, watchSeconds * 20));
-        enqueuePending(new Pending("__WATCH_MINING__|" + name + "|" + ticks, tickCounter + 1));
-        LOG.info("[KostiqAI] watching {} for mining ({}s)", name, watchSeconds);
+        cy.effect("SWITCH_WHILE_MINING", p, () -> {
+            // the effect entry only carries the watch window (for listing and cancel); the swap fires on the event
+            var watch = continuous.start("SWITCH_WHILE_MINING", p, ticks, ticks, ticks, pl -> true);
+            triggers.arm(PlayerTriggers.Kind.MINING_START, p.getUuid(), tickCounter + ticks, (pl, pos, st) -> {
+                if (!continuous.isActive(watch)) return true; // cancelled
+                if (!startedMining(pl, pos, st)) return false;
+                int slot = findNonToolHotbarSlot(pl);
+                if (slot < 0) return false;
+                var hand = pl.getStackInHand(Hand.MAIN_HAND).copy();
+                var other = pl.getInventory().getStack(slot).copy();
+                pl.setStackInHand(Hand.MAIN_HAND, other);
+                pl.getInventory().setStack(slot, hand);
+                pl.currentScreenHandler.sendContentUpdates();
+                continuous.cancel(e -> e == watch);
+                LOG.info("[KostiqAI] SWITCH_WHILE_MINING tripped for {} (swapped with slot {})", name, slot);
+                return true; // one swap per watch
+            });
+            LOG.info("[KostiqAI] watching {} for mining ({}s)", name, watchSeconds);
+        });
     }
 
     // ---- Physics shove
-    private void doPistonShove(MinecraftServer server, String name, int dx, int dz, double up) {
+    private void doPistonShove(Cycle cy, ServerPlayerEntity p, int dx, int dz, double up) {
+        final String name = p.getGameProfile().getName();
         final int dx0 = dx, dz0 = dz; final double up0 = up;
-        server.execute(() -> {
-            ServerPlayerEntity p = server.getPlayerManager().getPlayer(name); if (p == null) return;
+        cy.effect("PISTON_SHOVE", p, () -> {
             double mag = Math.sqrt(dx0*dx0 + dz0*dz0); if (mag < 0.1) return;
             double scale = 2.5;
             double vx = (dx0 / mag) * scale;
@@ -1356,121 +2087,49 @@ public class Kostiqai implements ModInitializer {
     }
 
     // ---- ICE ring (rollback)
-    private void doIceRing(MinecraftServer server, String name, int radius, int duration) {
+    private void doIceRing(Cycle cy, ServerPlayerEntity pl, int radius, int duration) {
+        final String name = pl.getGameProfile().getName();
         final int r = radius, dur = duration;
-        server.execute(() -> {
-            ServerPlayerEntity pl = server.getPlayerManager().getPlayer(name); if (pl == null) return;
+        cy.edit("ICE_RING", pl, () -> {
             ServerWorld sw = (ServerWorld) pl.getWorld();
-            BlockPos c = pl.getBlockPos().down();
-            ArrayList<Cell> cells = new ArrayList<>();
-            for (int dx=-r; dx<=r; dx++) for (int dz=-r; dz<=r; dz++) {
-                if (Math.sqrt(dx*dx + dz*dz) > r) continue;
-                BlockPos p = c.add(dx, 0, dz);
-                String prev = Registries.BLOCK.getId(sw.getBlockState(p).getBlock()).toString();
-                cells.add(new Cell(p.getX(), p.getY(), p.getZ(), prev));
-                budgetedSetBlock(sw, p, Blocks.ICE.getDefaultState());
-            }
-            enqueueRollback(server, sw.getRegistryKey().getValue().toString(), cells, dur);
+            ArrayList<Cell> cells = writeTemplate(sw, pl.getBlockPos().down(), ShapeTemplates.disk(r), Blocks.ICE.getDefaultState(), null);
+            if (!cells.isEmpty()) enqueueRollback(cy.server, sw.getRegistryKey().getValue().toString(), cells, dur);
             LOG.info("[KostiqAI] ice ring for {} r={} dur={}t", name, r, dur);
         });
     }
 
-    // remember/overuse/cooldowns
-    private void rememberGlobalType(String type) {
-        if (type == null || type.isBlank()) return;
-        recentTypes.addLast(type);
-        while (recentTypes.size() > Math.max(10, cfg.globalDiversityWindow)) recentTypes.removeFirst();
-    }
-    private boolean overusedGlobally(String type) {
-        if (recentTypes.isEmpty()) return false;
-        int count = 0; for (String t : recentTypes) if (t.equals(type)) count++;
-        double share = (double) count / (double) recentTypes.size();
-        return share > Math.max(0.10, Math.min(0.90, cfg.maxTypeShare));
-    }
-    private boolean playerTypeOnCooldown(ServerPlayerEntity p, String type) {
-        Map<String,Integer> m = nextAllowedByTypeForPlayer.get(p.getUuid());
-        if (m == null) return false;
-        Integer until = m.get(type);
-        return until != null && until > tickCounter;
-    }
-    private void armPlayerTypeCooldown(ServerPlayerEntity p, String type) {
-        nextAllowedByTypeForPlayer.computeIfAbsent(p.getUuid(), k -> new ConcurrentHashMap<>())
-                .put(type, tickCounter + Math.max(40, cfg.perActionCooldownTicks));
-    }
-
-    private String pickAlternate(String type, Profile pr) {
-        final String[] HEADLINES = {"CAGE","SPAWN","LAVA_TRAP","ICE_RING","SAND_DRIZZLE","BOUNCY_FLOOR","HONEY_TRAP","PISTON_SHOVE","DROP_INVENTORY","FIRE_UNDER","UNEQUIP_ARMOR"};
-        final String[] FLOURISH  = {"SLOW","FATIGUE","NAUSEA","BLIND","LEVITATE","LEVITATE_LONG","HOTBAR_SHUFFLE","SWITCH_WHILE_MINING","RUBBERBAND"};
-        java.util.List<String> pool = new java.util.ArrayList<>();
-        boolean headline = java.util.Arrays.asList(HEADLINES).contains(type);
-        if (headline) java.util.Collections.addAll(pool, HEADLINES); else java.util.Collections.addAll(pool, FLOURISH);
-        pool.remove(type);
-        pool.removeIf(t -> cfg.bannedActions.contains(t));
-        if (pr.mode == Mode.MILD) {
-            pool.removeAll(java.util.Arrays.asList("LAVA_TRAP","SAND_DRIZZLE","PISTON_SHOVE","SPAWN","CAGE","DROP_INVENTORY","FIRE_UNDER","UNEQUIP_ARMOR"));
-        }
-        if (pool.isEmpty()) return null;
-        for (String t : pr.recent) pool.remove(t);
-        java.util.Random r = new java.util.Random();
-        return pool.get(r.nextInt(pool.size()));
-    }
-    private String pickAlternateAtSeverity(String fromType, int maxSev, Profile pr) {
-        java.util.List<String> pool = new java.util.ArrayList<>();
-        for (String t : ALL_ACTION_TYPES) if (severityOf(t) <= maxSev && !t.equals(fromType)) pool.add(t);
-        pool.removeIf(t -> cfg.bannedActions.contains(t));
-        if (pr != null && pr.mode == Mode.MILD) {
-            pool.removeIf(t -> severityOf(t) > 1);
-        }
-        if (cfg.difficulty == Difficulty.BALANCED && !inNastyWindow) {
-            pool.removeIf(t -> severityOf(t) >= 4);
-        }
-        if (pool.isEmpty()) return null;
-        java.util.Random r = new java.util.Random();
-        return pool.get(r.nextInt(pool.size()));
+    // overuse (selection rules live in ActionSelector)
+    private boolean overusedGlobally(Director d, String type) {
+        return d.diversity.overused(type, cfg.maxTypeShare);
     }
 
     // ---- SAND drizzle (rollback)
-    private void doSandDrizzle(MinecraftServer server, String name, int duration) {
+    private void doSandDrizzle(Cycle cy, ServerPlayerEntity pl, int duration) {
+        final String name = pl.getGameProfile().getName();
         final int dur = duration;
-        server.execute(() -> {
-            ServerPlayerEntity pl = server.getPlayerManager().getPlayer(name); if (pl == null) return;
+        cy.edit("SAND_DRIZZLE", pl, () -> {
             ServerWorld sw = (ServerWorld) pl.getWorld();
-            BlockPos feet = pl.getBlockPos();
-            ArrayList<Cell> cells = new ArrayList<>();
 
-            // Create 3 layers of sand above the player
-            for (int yOff = 3; yOff <= 5; yOff++) { // Layers at Y+3, Y+4, Y+5 relative to player feet
-                for (int dx = -1; dx <= 1; dx++) {
-                    for (int dz = -1; dz <= 1; dz++) {
-                        BlockPos currentPos = feet.add(dx, yOff, dz);
-                        if (sw.getBlockState(currentPos).isAir()) {
-                            cells.add(new Cell(currentPos.getX(), currentPos.getY(), currentPos.getZ(), "minecraft:air"));
-                            budgetedSetBlock(sw, currentPos, Blocks.SAND.getDefaultState());
-                        }
-                    }
-                }
-            }
+            // 3 layers of sand at Y+3..Y+5 relative to player feet, only into air
+            ArrayList<Cell> cells = writeTemplate(sw, pl.getBlockPos(), ShapeTemplates.box(1, 3, 5), Blocks.SAND.getDefaultState(), BlockState::isAir);
             if (cells.isEmpty()){
                 LOG.info("[KostiqAI] sand drizzle for {} aborted (no space above player)", name);
                 return;
             }
 
-            enqueueRollback(server, sw.getRegistryKey().getValue().toString(), cells, dur);
+            enqueueRollback(cy.server, sw.getRegistryKey().getValue().toString(), cells, dur);
             LOG.info("[KostiqAI] sand drizzle for {} dur={}t", name, dur);
         });
     }
 
     // ---- Cage (rollback), height
-    private void doCage(MinecraftServer server, String name, String materialId, int r, int duration, int height) {
+    private void doCage(Cycle cy, ServerPlayerEntity p, String materialId, int r, int duration, int height) {
+        final String name = p.getGameProfile().getName();
         final int r0 = r;
         final String mat0 = materialId;
         final int h0 = height;
-        server.execute(() -> {
-            ServerPlayerEntity p = server.getPlayerManager().getPlayer(name);
-            if (p == null) return;
+        cy.edit("CAGE", p, () -> {
             ServerWorld sw = (ServerWorld) p.getWorld();
-            BlockPos base = p.getBlockPos();
-            ArrayList<Cell> cells = new ArrayList<>();
 
             Identifier blockId = Identifier.tryParse(mat0);
             if (blockId == null) return;
@@ -1479,26 +2138,12 @@ public class Kostiqai implements ModInitializer {
             var blockState = block.getDefaultState();
 
             // Record and build walls, floor, and ceiling
-            for (int yOff = -2; yOff <= h0; yOff++) {
-                for (int dx = -r0; dx <= r0; dx++) {
-                    for (int dz = -r0; dz <= r0; dz++) {
-                        boolean isWall = yOff > -2 && yOff < h0 && (Math.abs(dx) == r0 || Math.abs(dz) == r0);
-                        boolean isFloor = yOff == -2;
-                        boolean isCeiling = yOff == h0;
-
-                        if (isWall || isFloor || isCeiling) {
-                            BlockPos currentPos = base.add(dx, yOff, dz);
-                            cells.add(new Cell(currentPos.getX(), currentPos.getY(), currentPos.getZ(), Registries.BLOCK.getId(sw.getBlockState(currentPos).getBlock()).toString()));
-                            budgetedSetBlock(sw, currentPos, blockState);
-                        }
-                    }
-                }
-            }
+            ArrayList<Cell> cells = writeTemplate(sw, p.getBlockPos(), ShapeTemplates.cage(r0, h0), blockState, null);
 
-            LOG.info("[KostiqAI] cage built r={} h={} material={} for {}", r0, h0, mat0, name);
+            LOG.info("[KostiqAI] cage built r={} h={} material={} for {} ({} blocks)", r0, h0, mat0, name, cells.size());
 
-            if (duration > 0) {
-                enqueueRollback(server, sw.getRegistryKey().getValue().toString(), cells, duration);
+            if (duration > 0 && !cells.isEmpty()) {
+                enqueueRollback(cy.server, sw.getRegistryKey().getValue().toString(), cells, duration);
             }
         });
     }
@@ -1510,10 +2155,10 @@ public class Kostiqai implements ModInitializer {
         }
     }
 
-    private void doSwapHandWithSlot(MinecraftServer server, String name, int slot) {
+    private void doSwapHandWithSlot(Cycle cy, ServerPlayerEntity p, int slot) {
+        final String name = p.getGameProfile().getName();
         final int slot0 = Math.max(0, Math.min(35, slot));
-        server.execute(() -> {
-            ServerPlayerEntity p = server.getPlayerManager().getPlayer(name); if (p == null) return;
+        cy.effect("SWAP_HAND", p, () -> {
             var inv = p.getInventory();
             var hand = p.getStackInHand(Hand.MAIN_HAND).copy();
             var other = inv.getStack(slot0).copy();
@@ -1527,15 +2172,15 @@ public class Kostiqai implements ModInitializer {
     private static final List<String> RANDOM_HOSTILES = List.of("minecraft:zombie", "minecraft:skeleton", "minecraft:spider", "minecraft:creeper");
     private static final List<String> RANDOM_NETHER_HOSTILES = List.of("minecraft:zombified_piglin", "minecraft:piglin", "minecraft:magma_cube", "minecraft:blaze");
 
-    private void doSpawn(MinecraftServer server, String name, String entityId, int count, int radius) {
-        server.execute(() -> {
-            ServerPlayerEntity p = server.getPlayerManager().getPlayer(name); if (p == null) return;
+    private void doSpawn(Cycle cy, ServerPlayerEntity p, String entityId, int count, int radius) {
+        final String name = p.getGameProfile().getName();
+        cy.effect("SPAWN", p, () -> {
             ServerWorld sw = (ServerWorld) p.getWorld();
             boolean isNether = sw.getRegistryKey().equals(World.NETHER);
 
             if (isNether) {
                 LOG.info("[KostiqAI] SPAWN triggered in Nether, substituting with FIRE_UNDER for reliability.");
-                doFireUnder(server, name, 120); // Substitute with a 6-second fire trap.
+                doFireUnder(cy, p, 120); // Substitute with a 6-second fire trap.
                 return;
             }
 
@@ -1546,86 +2191,54 @@ public class Kostiqai implements ModInitializer {
                 entStr = entityId;
             }
 
-            if (EntityType.get(entStr).isEmpty()) {
+            var entType = EntityType.get(entStr);
+            if (entType.isEmpty()) {
                 LOG.warn("[KostiqAI] invalid entity for SPAWN: {}", entStr);
                 return;
             }
 
             int spawnedCount = 0;
-            for (int i = 0; i < count; i++) {
-                for (int attempt = 0; attempt < 15; attempt++) { // try 15 times to find a spot for each mob
-                    int dx = sw.getRandom().nextInt(radius * 2 + 1) - radius;
-                    int dz = sw.getRandom().nextInt(radius * 2 + 1) - radius;
-                    BlockPos basePos = p.getBlockPos().add(dx, 0, dz);
-
-                    Optional<BlockPos> safePos = findSafeSpawnLocation(sw, basePos);
-
-                    if (safePos.isPresent()) {
-                        BlockPos finalPos = safePos.get();
-                        String cmd = String.format(Locale.ROOT,"summon %s %d %d %d", entStr, finalPos.getX(), finalPos.getY(), finalPos.getZ());
-                        try {
-                            server.getCommandManager().getDispatcher().execute(cmd, server.getCommandSource());
-                            spawnedCount++;
-                        }
-                        catch (Exception e) { LOG.warn("[KostiqAI] summon failed: {}", cmd, e); }
-                        break; // Move to the next mob
-                    }
+            var found = spawnSites.find(sw, p.getBlockPos(), radius, count, sw.getRandom(), tickCounter);
+            metrics.spawnLookups.add(found.lookups());
+            for (BlockPos finalPos : found.sites()) {
+                try {
+                    if (entType.get().spawn(sw, finalPos, SpawnReason.COMMAND) != null) spawnedCount++;
                 }
+                catch (Exception e) { LOG.warn("[KostiqAI] spawn failed: {} at {}", entStr, finalPos, e); }
             }
             if (spawnedCount > 0) {
-                LOG.info("[KostiqAI] spawned {} x {} around {}", spawnedCount, entStr, name);
+                LOG.info("[KostiqAI] spawned {} x {} around {} ({} lookups, bound {})", spawnedCount, entStr, name, found.lookups(), found.bound());
             } else {
-                LOG.info("[KostiqAI] failed to find safe spawn locations for {} around {}", entStr, name);
+                LOG.info("[KostiqAI] failed to find safe spawn locations for {} around {} ({} lookups)", entStr, name, found.lookups());
             }
         });
     }
 
-    private Optional<BlockPos> findSafeSpawnLocation(ServerWorld world, BlockPos center) {
-        for (int yOff = 5; yOff >= -5; yOff--) {
-            BlockPos currentPos = center.up(yOff);
-            if (world.getBlockState(currentPos).isOf(Blocks.NETHER_PORTAL)) continue;
-
-            BlockPos below = currentPos.down();
-            BlockState belowState = world.getBlockState(below);
-            if (belowState.isOf(Blocks.NETHER_PORTAL)) continue;
-
-            boolean isSolidBelow = belowState.isSolidBlock(world, below);
-            boolean isPassableCurrent = !world.getBlockState(currentPos).blocksMovement();
-            boolean isPassableAbove = !world.getBlockState(currentPos.up()).blocksMovement();
-
-            if (isSolidBelow && isPassableCurrent && isPassableAbove) {
-                return Optional.of(currentPos);
-            }
-        }
-        return Optional.empty();
-    }
-
 
-    private void doLavaTrap(MinecraftServer server, String name, int duration) {
+    private void doLavaTrap(Cycle cy, ServerPlayerEntity p, int duration) {
+        final String name = p.getGameProfile().getName();
         final int dur = Math.min(duration, MAX_LAVA_TICKS);
-        server.execute(() -> {
-            ServerPlayerEntity p = server.getPlayerManager().getPlayer(name); if (p == null) return;
+        cy.edit("LAVA_TRAP", p, () -> {
             ServerWorld sw = (ServerWorld) p.getWorld(); BlockPos pos = p.getBlockPos().down();
             String prevId = Registries.BLOCK.getId(sw.getBlockState(pos).getBlock()).toString();
             List<Cell> cells = List.of(new Cell(pos.getX(), pos.getY(), pos.getZ(), prevId));
             budgetedSetBlock(sw, pos, Blocks.LAVA.getDefaultState());
             LOG.info("[KostiqAI] lava under {} for {}t", name, dur);
-            enqueueRollback(server, sw.getRegistryKey().getValue().toString(), cells, dur);
+            enqueueRollback(cy.server, sw.getRegistryKey().getValue().toString(), cells, dur);
         });
     }
 
-    private void doBlind(MinecraftServer server, String name, int seconds) {
+    private void doBlind(Cycle cy, ServerPlayerEntity p, int seconds) {
         final int secs = seconds;
-        server.execute(() -> {
-            ServerPlayerEntity p = server.getPlayerManager().getPlayer(name); if (p == null) return;
+        cy.effect("BLIND", p, () -> {
             p.addStatusEffect(new StatusEffectInstance(StatusEffects.BLINDNESS, secs * 20, 0, true, true));
             LOG.info("[KostiqAI] blind {}s", secs);
         });
     }
 
-    private void doHotbarShuffle(MinecraftServer server, String name) {
-        server.execute(() -> {
-            ServerPlayerEntity p = server.getPlayerManager().getPlayer(name); if (p == null) return;
+    private void doHotbarShuffle(Cycle cy, ServerPlayerEntity p) {
+        final String name = p.getGameProfile().getName();
+        cy.effect("HOTBAR_SHUFFLE", p, () -> {
             var inv = p.getInventory();
             for (int i = 0; i < 9; i++) {
                 int j = ((ServerWorld) p.getWorld()).getRandom().nextInt(9);
@@ -1639,52 +2252,43 @@ public class Kostiqai implements ModInitializer {
         });
     }
 
-    private void doLevitate(MinecraftServer server, String name, int seconds) {
+    private void doLevitate(Cycle cy, ServerPlayerEntity p, int seconds) {
         final int secs = seconds;
-        server.execute(() -> {
-            ServerPlayerEntity p = server.getPlayerManager().getPlayer(name); if (p == null) return;
+        cy.effect("LEVITATE", p, () -> {
             p.addStatusEffect(new StatusEffectInstance(StatusEffects.LEVITATION, secs * 20, 0, true, true));
             LOG.info("[KostiqAI] levitate {}s", secs);
         });
     }
 
-    private void doBouncyFloor(MinecraftServer server, String name, int duration) {
+    private void doBouncyFloor(Cycle cy, ServerPlayerEntity p, int duration) {
+        final String name = p.getGameProfile().getName();
         final int dur = duration;
-        server.execute(() -> {
-            ServerPlayerEntity p = server.getPlayerManager().getPlayer(name); if (p == null) return;
+        cy.edit("BOUNCY_FLOOR", p, () -> {
             ServerWorld sw = (ServerWorld) p.getWorld();
             BlockPos feet = p.getBlockPos().down();
             String prev = Registries.BLOCK.getId(sw.getBlockState(feet).getBlock()).toString();
             ArrayList<Cell> cells = new ArrayList<>();
             cells.add(new Cell(feet.getX(), feet.getY(), feet.getZ(), prev));
             budgetedSetBlock(sw, feet, Blocks.SLIME_BLOCK.getDefaultState());
-            enqueueRollback(server, sw.getRegistryKey().getValue().toString(), cells, dur);
+            enqueueRollback(cy.server, sw.getRegistryKey().getValue().toString(), cells, dur);
             LOG.info("[KostiqAI] bouncy floor {}t for {}", dur, name);
         });
     }
 
-    private void doHoneyTrap(MinecraftServer server, String name, int duration) {
+    private void doHoneyTrap(Cycle cy, ServerPlayerEntity p, int duration) {
+        final String name = p.getGameProfile().getName();
         final int dur = duration;
-        server.execute(() -> {
-            ServerPlayerEntity p = server.getPlayerManager().getPlayer(name); if (p == null) return;
+        cy.edit("HONEY_TRAP", p, () -> {
             ServerWorld sw = (ServerWorld) p.getWorld();
-            BlockPos feet = p.getBlockPos();
-            ArrayList<Cell> cells = new ArrayList<>();
-            for (int dx=-1; dx<=1; dx++) for (int dz=-1; dz<=1; dz++) {
-                BlockPos pos = feet.add(dx, -1, dz);
-                String prev = Registries.BLOCK.getId(sw.getBlockState(pos).getBlock()).toString();
-                cells.add(new Cell(pos.getX(), pos.getY(), pos.getZ(), prev));
-                budgetedSetBlock(sw, pos, Blocks.HONEY_BLOCK.getDefaultState());
-            }
-            enqueueRollback(server, sw.getRegistryKey().getValue().toString(), cells, dur);
+            ArrayList<Cell> cells = writeTemplate(sw, p.getBlockPos(), ShapeTemplates.box(1, -1, -1), Blocks.HONEY_BLOCK.getDefaultState(), null);
+            if (!cells.isEmpty()) enqueueRollback(cy.server, sw.getRegistryKey().getValue().toString(), cells, dur);
             LOG.info("[KostiqAI] honey trap {}t for {}", dur, name);
         });
     }
 
-    private void doWitherMaybe(MinecraftServer server, String name, double chance) {
-        server.execute(() -> {
-            ServerPlayerEntity p = server.getPlayerManager().getPlayer(name);
-            if (p == null) return;
+    private void doWitherMaybe(Cycle cy, ServerPlayerEntity p, double chance) {
+        final String name = p.getGameProfile().getName();
+        cy.effect("WITHER_MAYBE", p, () -> {
             if (p.getWorld().getRandom().nextDouble() >= chance) return;
 
             Vec3d spawnPoint = p.getWorld().getSpawnPos().toCenterPos();
@@ -1693,16 +2297,15 @@ public class Kostiqai implements ModInitializer {
                 return;
             }
 
-            Optional<BlockPos> safePos = findSafeWitherSpawnLocation((ServerWorld) p.getWorld(), p.getBlockPos().add(4, 1, 4));
+            Optional<BlockPos> safePos = findWitherSite((ServerWorld) p.getWorld(), p.getBlockPos().add(4, 1, 4));
 
             if (safePos.isPresent()) {
                 BlockPos finalPos = safePos.get();
-                String cmd = String.format(Locale.ROOT, "summon minecraft:wither %d %d %d", finalPos.getX(), finalPos.getY(), finalPos.getZ());
                 try {
-                    server.getCommandManager().getDispatcher().execute(cmd, server.getCommandSource());
-                    LOG.warn("[KostiqAI] WITHER spawned near {}", name);
+                    if (EntityType.WITHER.spawn((ServerWorld) p.getWorld(), finalPos, SpawnReason.COMMAND) != null)
+                        LOG.warn("[KostiqAI] WITHER spawned near {}", name);
                 } catch (Exception e) {
-                    LOG.warn("[KostiqAI] wither summon failed: {}", cmd, e);
+                    LOG.warn("[KostiqAI] wither summon failed at {}", finalPos, e);
                 }
             } else {
                 LOG.info("[KostiqAI] wither failed for {}: could not find a safe spawn location.", name);
@@ -1710,9 +2313,9 @@ public class Kostiqai implements ModInitializer {
         });
     }
 
-    private void doDropInventory(MinecraftServer server, String name) {
-        server.execute(() -> {
-            ServerPlayerEntity p = server.getPlayerManager().getPlayer(name); if (p == null) return;
+    private void doDropInventory(Cycle cy, ServerPlayerEntity p) {
+        final String name = p.getGameProfile().getName();
+        cy.effect("DROP_INVENTORY", p, () -> {
             var inv = p.getInventory();
             for (int i = 0; i < inv.size(); i++) {
                 ItemStack s = inv.getStack(i);
@@ -1726,10 +2329,10 @@ public class Kostiqai implements ModInitializer {
         });
     }
 
-    private void doFireUnder(MinecraftServer server, String name, int duration) {
+    private void doFireUnder(Cycle cy, ServerPlayerEntity p, int duration) {
+        final String name = p.getGameProfile().getName();
         final int dur = duration;
-        server.execute(() -> {
-            ServerPlayerEntity p = server.getPlayerManager().getPlayer(name); if (p == null) return;
+        cy.edit("FIRE_UNDER", p, () -> {
             ServerWorld sw = (ServerWorld) p.getWorld();
             BlockPos pos = p.getBlockPos();
 
@@ -1742,14 +2345,14 @@ public class Kostiqai implements ModInitializer {
                 return;
             }
             budgetedSetBlock(sw, pos, Blocks.FIRE.getDefaultState());
-            enqueueRollback(server, sw.getRegistryKey().getValue().toString(), cells, dur);
+            enqueueRollback(cy.server, sw.getRegistryKey().getValue().toString(), cells, dur);
             LOG.info("[KostiqAI] fire under {} for {}t", name, dur);
         });
     }
 
-    private void doUnequipArmor(MinecraftServer server, String name, boolean dropIfFull) {
-        server.execute(() -> {
-            ServerPlayerEntity p = server.getPlayerManager().getPlayer(name); if (p == null) return;
+    private void doUnequipArmor(Cycle cy, ServerPlayerEntity p, boolean dropIfFull) {
+        final String name = p.getGameProfile().getName();
+        cy.effect("UNEQUIP_ARMOR", p, () -> {
             var inv = p.getInventory();
             boolean any = false;
 
@@ -1771,9 +2374,9 @@ public class Kostiqai implements ModInitializer {
         });
     }
 
-    private void doRubberband(MinecraftServer server, String name, int delayTicks) {
-        server.execute(() -> {
-            ServerPlayerEntity p = server.getPlayerManager().getPlayer(name); if (p == null) return;
+    private void doRubberband(Cycle cy, ServerPlayerEntity p, int delayTicks) {
+        final String name = p.getGameProfile().getName();
+        cy.effect("RUBBERBAND", p, () -> {
             Vec3d pos = p.getPos();
             String payload = String.format(Locale.ROOT, "__RUBBERBAND_TELEPORT__|%s|%f|%f|%f", name, pos.x, pos.y, pos.z);
             enqueuePending(new Pending(payload, tickCounter + delayTicks));
@@ -1782,19 +2385,13 @@ public class Kostiqai implements ModInitializer {
         });
     }
 
-    private void doYeetExplosion(MinecraftServer server, String name, float power) {
-        server.execute(() -> {
-            ServerPlayerEntity p = server.getPlayerManager().getPlayer(name); if (p == null) return;
-
-            String particleCmd = String.format(Locale.ROOT, "particle minecraft:explosion_emitter %f %f %f 0 0 0 0.5 1 force", p.getX(), p.getY() + 0.5, p.getZ());
-            String soundCmd = String.format(Locale.ROOT, "playsound minecraft:entity.generic.explode master @a[distance=..32] %f %f %f 2.0 1.0", p.getX(), p.getY(), p.getZ());
-
-            try {
-                server.getCommandManager().getDispatcher().execute(particleCmd, server.getCommandSource());
-                server.getCommandManager().getDispatcher().execute(soundCmd, server.getCommandSource());
-            } catch (Exception e) {
-                LOG.warn("[KostiqAI] failed to create explosion effects via command", e);
-            }
+    private void doYeetExplosion(Cycle cy, ServerPlayerEntity p, float power) {
+        final String name = p.getGameProfile().getName();
+        cy.effect("YEET_EXPLOSION", p, () -> {
+            ServerWorld sw = (ServerWorld) p.getWorld();
+            sw.spawnParticles(ParticleTypes.EXPLOSION_EMITTER, p.getX(), p.getY() + 0.5, p.getZ(), 1, 0, 0, 0, 0.5);
+            // volume 2.0 carries 32 blocks, same reach as the old @a[distance=..32]
+            sw.playSound(null, p.getX(), p.getY(), p.getZ(), SoundEvents.ENTITY_GENERIC_EXPLODE.value(), SoundCategory.MASTER, 2.0f, 1.0f);
 
             Vec3d vel = p.getVelocity();
             Vec3d look = p.getRotationVector();
@@ -1808,17 +2405,17 @@ public class Kostiqai implements ModInitializer {
         });
     }
 
-    private void doHyperSpeed(MinecraftServer server, String name, int seconds, int amplifier) {
-        server.execute(() -> {
-            ServerPlayerEntity p = server.getPlayerManager().getPlayer(name); if (p == null) return;
+    private void doHyperSpeed(Cycle cy, ServerPlayerEntity p, int seconds, int amplifier) {
+        final String name = p.getGameProfile().getName();
+        cy.effect("HYPER_SPEED", p, () -> {
             p.addStatusEffect(new StatusEffectInstance(StatusEffects.SPEED, seconds * 20, amplifier, true, false));
             LOG.info("[KostiqAI] hyper speed for {} ({}s, amp {})", name, seconds, amplifier);
         });
     }
 
-    private void doItemMagnet(MinecraftServer server, String name, int radius) {
-        server.execute(() -> {
-            ServerPlayerEntity p = server.getPlayerManager().getPlayer(name); if (p == null) return;
+    private void doItemMagnet(Cycle cy, ServerPlayerEntity p, int radius) {
+        final String name = p.getGameProfile().getName();
+        cy.effect("ITEM_MAGNET", p, () -> {
             ServerWorld sw = (ServerWorld) p.getWorld();
             Box box = new Box(p.getBlockPos()).expand(radius);
             List<ItemEntity> items = sw.getEntitiesByClass(ItemEntity.class, box, item -> true);
@@ -1829,45 +2426,37 @@ public class Kostiqai implements ModInitializer {
         });
     }
 
-    private void doFloorPull(MinecraftServer server, String name, int depth, int duration) {
-        server.execute(() -> {
-            ServerPlayerEntity p = server.getPlayerManager().getPlayer(name); if (p == null) return;
+    private void doFloorPull(Cycle cy, ServerPlayerEntity p, int depth, int duration) {
+        final String name = p.getGameProfile().getName();
+        cy.edit("FLOOR_PULL", p, () -> {
             ServerWorld sw = (ServerWorld) p.getWorld();
-            BlockPos base = p.getBlockPos();
-            ArrayList<Cell> cells = new ArrayList<>();
-
-            for (int i = 1; i <= depth; i++) {
-                BlockPos currentPos = base.down(i);
-                cells.add(new Cell(currentPos.getX(), currentPos.getY(), currentPos.getZ(), Registries.BLOCK.getId(sw.getBlockState(currentPos).getBlock()).toString()));
-                budgetedSetBlock(sw, currentPos, Blocks.AIR.getDefaultState());
-            }
-
-            enqueueRollback(server, sw.getRegistryKey().getValue().toString(), cells, duration);
+            ArrayList<Cell> cells = writeTemplate(sw, p.getBlockPos(), ShapeTemplates.box(0, -depth, -1), Blocks.AIR.getDefaultState(), null);
+            if (!cells.isEmpty()) enqueueRollback(cy.server, sw.getRegistryKey().getValue().toString(), cells, duration);
             LOG.info("[KostiqAI] floor pull for {} ({} deep)", name, depth);
         });
     }
 
     // ===== NEW ACTIONS (v7) =====
 
-    private void doWitherTemporary(MinecraftServer server, String name) {
-        server.execute(() -> {
-            ServerPlayerEntity p = server.getPlayerManager().getPlayer(name);
-            if (p == null) return;
-            Optional<BlockPos> safePos = findSafeWitherSpawnLocation((ServerWorld) p.getWorld(), p.getBlockPos().add(3, 1, 3));
+    private void doWitherTemporary(Cycle cy, ServerPlayerEntity p) {
+        final String name = p.getGameProfile().getName();
+        cy.effect("WITHER_TEMPORARY", p, () -> {
+            Optional<BlockPos> safePos = findWitherSite((ServerWorld) p.getWorld(), p.getBlockPos().add(3, 1, 3));
 
             if (safePos.isPresent()) {
                 BlockPos finalPos = safePos.get();
-                String tag = "temp_wither_" + tickCounter;
-                String summonCmd = String.format(Locale.ROOT, "summon minecraft:wither %d %d %d {Tags:[\"%s\"], Invul:100}",
-                        finalPos.getX(), finalPos.getY(), finalPos.getZ(), tag);
-                String killCmd = String.format("kill @e[type=minecraft:wither,tag=%s,limit=1,sort=nearest]", tag);
-
+                ServerWorld sw = (ServerWorld) p.getWorld();
                 try {
-                    server.getCommandManager().getDispatcher().execute(summonCmd, server.getCommandSource());
-                    enqueuePending(new Pending(killCmd, tickCounter + 300)); // 15 seconds
-                    LOG.info("[KostiqAI] temporary wither spawned near {}", name);
+                    WitherEntity wither = EntityType.WITHER.spawn(sw, finalPos, SpawnReason.COMMAND);
+                    if (wither != null) {
+                        wither.addCommandTag("temp_wither_" + tickCounter);
+                        wither.setInvulTimer(100);
+                        // despawned by uuid lookup instead of a world-wide @e selector
+                        enqueuePending(new Pending("__DESPAWN__|" + sw.getRegistryKey().getValue() + "|" + wither.getUuid(), tickCounter + 300)); // 15 seconds
+                        LOG.info("[KostiqAI] temporary wither spawned near {}", name);
+                    }
                 } catch (Exception e) {
-                    LOG.warn("[KostiqAI] temporary wither summon failed: {}", summonCmd, e);
+                    LOG.warn("[KostiqAI] temporary wither summon failed at {}", finalPos, e);
                 }
             } else {
                 LOG.info("[KostiqAI] temporary wither failed for {}: could not find a safe spawn location.", name);
@@ -1875,20 +2464,25 @@ public class Kostiqai implements ModInitializer {
         });
     }
 
-    private void doBerserk(MinecraftServer server, String name, int seconds) {
-        server.execute(() -> {
-            ServerPlayerEntity p = server.getPlayerManager().getPlayer(name);
-            if (p == null) return;
+    private void doBerserk(Cycle cy, ServerPlayerEntity p, int seconds) {
+        final String name = p.getGameProfile().getName();
+        cy.effect("BERSERK", p, () -> {
             p.addStatusEffect(new StatusEffectInstance(StatusEffects.STRENGTH, seconds * 20, 1, true, true));
-            doSpawn(server, name, "minecraft:silverfish", 3, 1);
+            doSpawn(cy, p, "minecraft:silverfish", 3, 1);
             LOG.info("[KostiqAI] berserk triggered for {}", name);
         });
     }
 
-    private void doFlipView(MinecraftServer server, String name, int seconds) {
-        int durationTicks = seconds * 20;
-        enqueuePending(new Pending("__FLIP_VIEW__|" + name + "|" + durationTicks, tickCounter + 5));
-        LOG.info("[KostiqAI] flip view started for {} ({}s)", name, seconds);
+    private void doFlipView(Cycle cy, ServerPlayerEntity p, int seconds) {
+        final String name = p.getGameProfile().getName();
+        final int durationTicks = seconds * 20;
+        cy.effect("FLIP_VIEW", p, () -> {
+            continuous.start("FLIP_VIEW", p, durationTicks, 5, 5, pl -> {
+                pl.networkHandler.requestTeleport(pl.getX(), pl.getY(), pl.getZ(), pl.getYaw(), -pl.getPitch());
+                return true;
+            });
+            LOG.info("[KostiqAI] flip view started for {} ({}s)", name, seconds);
+        });
     }
 
     private static final List<Item> TRASH_ITEMS = List.of(
@@ -1896,10 +2490,9 @@ public class Kostiqai implements ModInitializer {
             Items.ROTTEN_FLESH, Items.STRING, Items.BONE, Items.GUNPOWDER
     );
 
-    private void doInventorySpam(MinecraftServer server, String name) {
-        server.execute(() -> {
-            ServerPlayerEntity p = server.getPlayerManager().getPlayer(name);
-            if (p == null) return;
+    private void doInventorySpam(Cycle cy, ServerPlayerEntity p) {
+        final String name = p.getGameProfile().getName();
+        cy.effect("INVENTORY_SPAM", p, () -> {
             var inv = p.getInventory();
             var rnd = new Random();
             int filled = 0;
@@ -1917,10 +2510,9 @@ public class Kostiqai implements ModInitializer {
         });
     }
 
-    private void doForceRide(MinecraftServer server, String name) {
-        server.execute(() -> {
-            ServerPlayerEntity p = server.getPlayerManager().getPlayer(name);
-            if (p == null) return;
+    private void doForceRide(Cycle cy, ServerPlayerEntity p) {
+        final String name = p.getGameProfile().getName();
+        cy.effect("FORCE_RIDE", p, () -> {
             ServerWorld sw = (ServerWorld) p.getWorld();
             Box box = new Box(p.getBlockPos()).expand(10);
             List<Entity> entities = sw.getOtherEntities(p, box, e -> e instanceof LivingEntity && !(e instanceof HostileEntity && ((HostileEntity)e).isAttacking()));
@@ -1936,43 +2528,13 @@ public class Kostiqai implements ModInitializer {
     }
 
     // ===== WORLD / CONTEXT HELPERS =====
-    private Optional<BlockPos> findSafeWitherSpawnLocation(ServerWorld world, BlockPos center) {
-        for (int yOff = 5; yOff >= -5; yOff--) {
-            BlockPos currentPos = center.up(yOff);
-            // Check 3x3 base
-            boolean baseSolid = true;
-            for (int dx = -1; dx <= 1; dx++) {
-                for (int dz = -1; dz <= 1; dz++) {
-                    if (!world.getBlockState(currentPos.add(dx, -1, dz)).isSolidBlock(world, currentPos.add(dx, -1, dz))) {
-                        baseSolid = false;
-                        break;
-                    }
-                }
-                if (!baseSolid) break;
-            }
-            if (!baseSolid) continue;
-
-            // Check 3x4x3 volume for air/passable blocks
-            boolean volumeClear = true;
-            for (int dx = -1; dx <= 1; dx++) {
-                for (int dz = -1; dz <= 1; dz++) {
-                    for (int dy = 0; dy < 4; dy++) {
-                        BlockState state = world.getBlockState(currentPos.add(dx, dy, dz));
-                        if (state.blocksMovement() || state.isOf(Blocks.NETHER_PORTAL)) {
-                            volumeClear = false;
-                            break;
-                        }
-                    }
-                    if (!volumeClear) break;
-                }
-                if (!volumeClear) break;
-            }
+    private final SpawnSiteFinder spawnSites = new SpawnSiteFinder();
 
-            if (volumeClear) {
-                return Optional.of(currentPos);
-            }
-        }
-        return Optional.empty();
+    private Optional<BlockPos> findWitherSite(ServerWorld world, BlockPos center) {
+        var found = spawnSites.findWither(world, center);
+        metrics.spawnLookups.add(found.lookups());
+        LOG.debug("[KostiqAI] wither site search: {} lookups (bound {})", found.lookups(), found.bound());
+        return spawnSites.first(found);
     }
 
     private static RegistryKey<World> worldKeyOf(Identifier worldId) {
@@ -1981,32 +2543,6 @@ public class Kostiqai implements ModInitializer {
         if (worldId.equals(World.END.getValue()))       return World.END;
         return RegistryKey.of(RegistryKeys.WORLD, worldId);
     }
-    private static String biomeId(ServerWorld sw, BlockPos pos) {
-        try { return sw.getBiome(pos).getKey().map(k -> k.getValue().toString()).orElse("unknown"); }
-        catch (Exception ignore) { return "unknown"; }
-    }
-    private static int lightAt(ServerWorld sw, BlockPos pos) {
-        try { return Math.max(sw.getLightLevel(pos), sw.getLightLevel(pos.up())); }
-        catch (Exception ignore) { return 0; }
-    }
-    private static String blockIdAt(ServerWorld sw, BlockPos pos) {
-        try { return Registries.BLOCK.getId(sw.getBlockState(pos).getBlock()).toString(); }
-        catch (Exception ignore) { return "minecraft:air"; }
-    }
-    private static boolean hasElytra(ServerPlayerEntity p) {
-        ItemStack c = p.getEquippedStack(EquipmentSlot.CHEST);
-        return !c.isEmpty() && Registries.ITEM.getId(c.getItem()).toString().contains("elytra");
-    }
-    private static int armorTier(ServerPlayerEntity p) {
-        int t = 0;
-        for (EquipmentSlot s : List.of(EquipmentSlot.HEAD, EquipmentSlot.CHEST, EquipmentSlot.LEGS, EquipmentSlot.FEET)) {
-            ItemStack it = p.getEquippedStack(s); if (it.isEmpty()) continue;
-            String id = Registries.ITEM.getId(it.getItem()).toString();
-            if (id.contains("leather")) t += 1; else if (id.contains("chain")) t += 2; else if (id.contains("iron")) t += 3;
-            else if (id.contains("gold")) t += 2; else if (id.contains("diamond")) t += 4; else if (id.contains("netherite")) t += 5;
-        }
-        return t;
-    }
     private static boolean isPickaxe(Item i) { return idHas(i,"_pickaxe"); }
     private static boolean isTool(Item i) {
         return isPickaxe(i) || idHas(i,"_axe") || idHas(i,"_shovel") || idHas(i,"_hoe") || i == Items.SHEARS;
@@ -2015,95 +2551,94 @@ public class Kostiqai implements ModInitializer {
         String id = Registries.ITEM.getId(i).toString();
         return id.contains(needle);
     }
-    private static net.minecraft.util.hit.HitResult ray(ServerPlayerEntity p, double dist) {
-        return p.raycast(dist, 0f, false);
-    }
-    private static boolean looksLikeMining(ServerPlayerEntity p) {
+    // A survival player started breaking a breakable block with a pickaxe (block-attack event, no raycast).
+    private static boolean startedMining(ServerPlayerEntity p, BlockPos pos, BlockState st) {
         if (p.isCreative() || p.isSpectator()) return false;
         var held = p.getMainHandStack();
         if (held.isEmpty() || !isPickaxe(held.getItem())) return false;
-        var hr = ray(p, 5.0);
-        if (hr == null || hr.getType() != net.minecraft.util.hit.HitResult.Type.BLOCK) return false;
-        var bhr = (BlockHitResult) hr;
-        var sw = (ServerWorld) p.getWorld();
-        var st = sw.getBlockState(bhr.getBlockPos());
-        return !st.isAir() && st.getHardness(sw, bhr.getBlockPos()) >= 0;
-    }
-
-    private JsonObject nearbySummary(ServerWorld sw, BlockPos center, int radius) {
-        int hostiles = 0, passives = 0;
-        Box box = new Box(center).expand(radius);
-        for (LivingEntity e : sw.getEntitiesByClass(LivingEntity.class, box, ent -> true)) {
-            if (e instanceof ServerPlayerEntity) continue;
-            if (e instanceof HostileEntity) hostiles++; else passives++;
-        }
-        JsonObject o = new JsonObject();
-        o.addProperty("radius", radius);
-        o.addProperty("hostiles", hostiles);
-        o.addProperty("passives", passives);
-        return o;
-    }
-    private int dangerScore(ServerPlayerEntity p, ServerWorld sw, BlockPos pos, boolean isCave, int light, int hostiles) {
-        int score = 0;
-        score += Math.max(0, 10 - (int)Math.ceil(p.getHealth()));
-        if (isCave) score += 3;
-        if (light < 7) score += 5;
-        score += Math.min(10, hostiles * 2);
-        if (!p.isCreative() && !p.isSpectator() && p.fallDistance > 2.5f) score += 2;
-        return Math.min(20, score);
+        return !st.isAir() && st.getHardness(p.getWorld(), pos) >= 0;
     }
 
     // ===== CONFIG =====
-    private void loadConfig(MinecraftServer server) {
-        Path p = server.getRunDirectory().resolve("config/kostiqai.json");
+    // Called on the config worker thread with the file's text (null if it does not exist yet).
+    private void onConfigText(String raw) {
+        long t0 = System.nanoTime();
         try {
-            Files.createDirectories(p.getParent());
-            if (Files.notExists(p)) {
-                Files.writeString(p, gson.toJson(cfg), java.nio.charset.StandardCharsets.UTF_8);
-                LOG.info("[KostiqAI] wrote default config at {}", p);
+            if (raw == null) {
+                configWatcher.write(gson.toJson(cfg));
+                LOG.info("[KostiqAI] wrote default config");
+                publishConfig(cfg);
+                return;
             }
-            String raw = Files.readString(p, java.nio.charset.StandardCharsets.UTF_8).trim();
+            raw = raw.trim();
             Cfg loaded = null;
 
             if (raw.startsWith("{")) {
-                try (Reader r = Files.newBufferedReader(p)) { loaded = gson.fromJson(r, Cfg.class); } catch (Exception ignored) {}
+                try { loaded = gson.fromJson(raw, Cfg.class); } catch (Exception ignored) {}
             }
             if (loaded == null && raw.length() >= 2 && raw.startsWith("\"") && raw.endsWith("\"")) {
                 String unquoted = raw.substring(1, raw.length() - 1).replace("\\\"", "\"").replace("\\n", "\n").replace("\\t", "\t");
-                try { loaded = gson.fromJson(unquoted, Cfg.class); Files.writeString(p, unquoted); LOG.warn("[KostiqAI] config was a quoted string; auto-fixed."); } catch (Exception ignored) {}
+                try { loaded = gson.fromJson(unquoted, Cfg.class); configWatcher.write(unquoted); LOG.warn("[KostiqAI] config was a quoted string; auto-fixed."); } catch (Exception ignored) {}
             }
             if (loaded == null) {
-                try (Reader r = Files.newBufferedReader(p)) {
-                    var jr = new com.google.gson.stream.JsonReader(r); jr.setLenient(true);
+                try {
+                    var jr = new com.google.gson.stream.JsonReader(new java.io.StringReader(raw)); jr.setLenient(true);
                     loaded = gson.fromJson(jr, Cfg.class);
-                    LOG.warn("[KostiqAI] parsed config in lenient mode (check for comments/trailing commas).");
+                    if (loaded != null) LOG.warn("[KostiqAI] parsed config in lenient mode (check for comments/trailing commas).");
                 } catch (Exception ignored) {}
             }
             if (loaded == null) throw new IllegalStateException("Could not parse config");
 
-            cfg = loaded;
-            if (cfg.bannedActions == null) cfg.bannedActions = new HashSet<>();
-            ALLOW = cfg.allow != null ? cfg.allow : ALLOW;
-            MAX_CMDS = cfg.maxCommandsPerCycle;
-            loggingEnabled = cfg.logging;
-
+            publishConfig(loaded.freeze());
             LOG.info("[KostiqAI] Config loaded: aiEnabled={}, dryRun={}, difficulty={}",
-                    cfg.aiEnabled, cfg.dryRun, cfg.difficulty);
-
+                    loaded.aiEnabled, loaded.dryRun, loaded.difficulty);
         } catch (Exception e) {
-            LOG.error("[KostiqAI] config load failed", e);
+            LOG.error("[KostiqAI] config load failed, keeping the current snapshot", e);
+        } finally {
+            perf.record("io.config.load", t0);
         }
     }
 
-    private void saveConfig(MinecraftServer server) {
-        try {
-            Path p = server.getRunDirectory().resolve("config/kostiqai.json");
-            Files.createDirectories(p.getParent());
-            Files.writeString(p, gson.toJson(cfg), java.nio.charset.StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
-            LOG.info("[KostiqAI] config saved to {}", p);
-        } catch (Exception e) {
-            LOG.warn("[KostiqAI] config save failed", e);
+    // The one write: readers see either the old snapshot or the new one, never a mix.
+    private void publishConfig(Cfg next) {
+        cfg = next;
+        configLoaded = true;
+        if (configReadyNanos == 0) configReadyNanos = System.nanoTime();
+    }
+
+    // Server thread: pushes a newly published snapshot into the parts that keep their own state.
+    private void applyConfig(Cfg c) {
+        boolean first = appliedCfg == null && configLoaded;
+        if (appliedCfg == null && !configLoaded) return;
+        planningPeriodTicks = c.planningPeriodTicks;
+        applyMetricsConfig();
+        applyGovernorConfig();
+        if (first) {
+            curve.reset(tickCounter);
         }
+        appliedCfg = c;
+    }
+
+    // In-game edits: copy the snapshot, change the copy, publish it and save in the background.
+    private void editConfig(java.util.function.Consumer<Cfg> edit) {
+        Cfg next = gson.fromJson(gson.toJsonTree(cfg), Cfg.class);
+        edit.accept(next);
+        publishConfig(next.freeze());
+        saveConfig();
+    }
+
+    private void applyMetricsConfig() {
+        var pc = cfg.prometheus;
+        if (pc != null && pc.enabled) {
+            String host = (pc.bindAddress == null || pc.bindAddress.isBlank()) ? "127.0.0.1" : pc.bindAddress;
+            metrics.start(host, Math.max(1, Math.min(65535, pc.port)));
+        } else {
+            metrics.stop();
+        }
+    }
+
+    private void saveConfig() {
+        if (configWatcher != null) configWatcher.write(gson.toJson(cfg));
     }
 }
 
@@ -0,0 +1,56 @@
+package kostiq.kostiqai;
+
+import com.mojang.brigadier.CommandDispatcher;
+import com.mojang.brigadier.ParseResults;
+import com.mojang.brigadier.exceptions.CommandSyntaxException;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.command.ServerCommandSource;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * LRU of Brigadier parse results for commands the director dispatches as text.
+ * Selectors and coordinates are resolved at execution time, so a cached parse can be executed
+ * again once its source is swapped for the current server source (world, spawn position and any
+ * result consumer of the first parse would otherwise stick). The cache is bound to one dispatcher
+ * and dropped when /reload swaps it.
+ * Server thread only.
+ */
+final class ParsedCommandCache {
+
+    private final LinkedHashMap<String, ParseResults<ServerCommandSource>> lru;
+    private CommandDispatcher<ServerCommandSource> boundTo;
+
+    private final LongAdder hits, misses;
+
+    ParsedCommandCache(int capacity, LongAdder hits, LongAdder misses) {
+        this.hits = hits;
+        this.misses = misses;
+        final int cap = Math.max(16, capacity);
+        this.lru = new LinkedHashMap<>(cap * 4 / 3 + 1, 0.75f, true) {
+            @Override protected boolean removeEldestEntry(Map.Entry<String, ParseResults<ServerCommandSource>> e) { return size() > cap; }
+        };
+    }
+
+    int execute(MinecraftServer server, String command) throws CommandSyntaxException {
+        CommandDispatcher<ServerCommandSource> d = server.getCommandManager().getDispatcher();
+        if (d != boundTo) { lru.clear(); boundTo = d; }
+        ParseResults<ServerCommandSource> parse = lru.get(command);
+        if (parse != null) {
+            hits.increment();
+        } else {
+            misses.increment();
+            parse = d.parse(command, server.getCommandSource());
+            // only complete, error-free parses are worth keeping; the rest throw below as before
+            if (parse.getExceptions().isEmpty() && !parse.getReader().canRead()) lru.put(command, parse);
+        }
+        parse.getContext().withSource(server.getCommandSource());
+        return d.execute(parse);
+    }
+
+    int size() { return lru.size(); }
+
+    void clear() { lru.clear(); boundTo = null; }
+}
@@ -0,0 +1,71 @@
+package kostiq.kostiqai;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.UUID;
+
+/**
+ * Per-player planning deadlines in a min-heap ordered by due tick. Rescheduling a player pushes a
+ * new entry and leaves the old one to be skipped when it surfaces, so every operation is O(log n)
+ * and a tick with nobody due costs one peek. Server thread only.
+ */
+final class PlanSchedule {
+
+    private record Entry(int due, UUID player, long seq) {}
+
+    private final PriorityQueue<Entry> heap = new PriorityQueue<>((a, b) -> a.due != b.due ? Integer.compare(a.due, b.due) : Long.compare(a.seq, b.seq));
+    private final Map<UUID, Entry> live = new HashMap<>();
+    private long seq;
+
+    // Fixed per-player slot in [0, period): spreads players evenly over the period, stable across restarts.
+    static int offset(UUID player, int period) {
+        long h = player.getMostSignificantBits() ^ Long.rotateLeft(player.getLeastSignificantBits(), 32);
+        h *= 0x9E3779B97F4A7C15L;
+        return (int) Math.floorMod(h >>> 16, (long) Math.max(1, period));
+    }
+
+    void schedule(UUID player, int dueTick) {
+        Entry e = new Entry(dueTick, player, seq++);
+        live.put(player, e);
+        heap.add(e);
+        if (heap.size() > 2 * live.size() + 64) compact();
+    }
+
+    boolean contains(UUID player) { return live.containsKey(player); }
+
+    // Due tick of a scheduled player, or -1.
+    int due(UUID player) {
+        Entry e = live.get(player);
+        return e == null ? -1 : e.due;
+    }
+
+    void remove(UUID player) { live.remove(player); }
+
+    // Moves every player due at or before now into out (earliest first) and unschedules them.
+    void pollDue(int now, List<UUID> out) {
+        while (!heap.isEmpty() && heap.peek().due <= now) {
+            Entry e = heap.poll();
+            if (live.get(e.player) != e) continue; // rescheduled or removed since
+            live.remove(e.player);
+            out.add(e.player);
+        }
+    }
+
+    // Earliest live deadline, or -1 when nobody is scheduled (linear; for status output).
+    int nextDue() {
+        int min = -1;
+        for (Entry e : live.values()) if (min < 0 || e.due < min) min = e.due;
+        return min;
+    }
+
+    int size() { return live.size(); }
+
+    void clear() { heap.clear(); live.clear(); }
+
+    private void compact() {
+        heap.clear();
+        heap.addAll(live.values());
+    }
+}
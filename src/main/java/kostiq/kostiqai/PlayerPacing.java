@@ -0,0 +1,48 @@
+package kostiq.kostiqai;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per-player pacing keyed by UUID: the any-action cooldown, per-type cooldowns and the
+ * last tick a player was hit (fairness). Written on the server thread; planners read
+ * {@link #lastAction} from the pool, hence the concurrent maps.
+ */
+final class PlayerPacing {
+
+    private final Map<UUID, Integer> nextAllowed = new ConcurrentHashMap<>();
+    private final Map<UUID, Map<String, Integer>> nextAllowedByType = new ConcurrentHashMap<>();
+    private final Map<UUID, Integer> lastAction = new ConcurrentHashMap<>();
+
+    boolean onCooldown(UUID uuid, int now) {
+        Integer until = nextAllowed.get(uuid);
+        return until != null && until > now;
+    }
+
+    void arm(UUID uuid, int until) { nextAllowed.put(uuid, until); }
+
+    boolean typeOnCooldown(UUID uuid, String type, int now) {
+        Map<String, Integer> m = nextAllowedByType.get(uuid);
+        if (m == null) return false;
+        Integer until = m.get(type);
+        return until != null && until > now;
+    }
+
+    void armType(UUID uuid, String type, int until) {
+        nextAllowedByType.computeIfAbsent(uuid, k -> new ConcurrentHashMap<>()).put(type, until);
+    }
+
+    /** Tick of the player's last successful action, 0 if never. */
+    int lastAction(UUID uuid) { return lastAction.getOrDefault(uuid, 0); }
+
+    void acted(UUID uuid, int tick) { lastAction.put(uuid, tick); }
+
+    void forget(UUID uuid) {
+        nextAllowed.remove(uuid);
+        nextAllowedByType.remove(uuid);
+        lastAction.remove(uuid);
+    }
+
+    int tracked() { return lastAction.size(); }
+}
@@ -0,0 +1,59 @@
+package kostiq.kostiqai;
+
+import net.minecraft.block.BlockState;
+import net.minecraft.server.network.ServerPlayerEntity;
+import net.minecraft.util.math.BlockPos;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Armed "while X" triggers keyed by event kind and player. Fabric interaction callbacks feed
+ * events in through {@link #dispatch}; a player with nothing armed costs one map miss, so an
+ * idle trigger is free and an armed one fires on the event itself instead of being polled.
+ * Server thread only.
+ */
+final class PlayerTriggers {
+
+    enum Kind {
+        MINING_START,   // AttackBlockCallback: started breaking a block
+        BLOCK_BREAK     // PlayerBlockBreakEvents.BEFORE: about to finish breaking one
+    }
+
+    // Returns true when the trigger is used up and should be disarmed.
+    interface Handler { boolean fire(ServerPlayerEntity p, BlockPos pos, BlockState state); }
+
+    private record Armed(Handler handler, int expiryTick) {}
+
+    private final EnumMap<Kind, Map<UUID, Armed>> armed = new EnumMap<>(Kind.class);
+
+    PlayerTriggers() { for (Kind k : Kind.values()) armed.put(k, new HashMap<>()); }
+
+    // One trigger per kind and player; arming again replaces it.
+    void arm(Kind kind, UUID player, int expiryTick, Handler handler) { armed.get(kind).put(player, new Armed(handler, expiryTick)); }
+
+    void disarm(Kind kind, UUID player) { armed.get(kind).remove(player); }
+
+    // state may be null; it is then read from the player's world, and only if a trigger is armed.
+    void dispatch(Kind kind, ServerPlayerEntity p, BlockPos pos, BlockState state, int nowTick) {
+        Map<UUID, Armed> byPlayer = armed.get(kind);
+        if (byPlayer.isEmpty()) return;
+        Armed a = byPlayer.get(p.getUuid());
+        if (a == null) return;
+        if (nowTick >= a.expiryTick()) { byPlayer.remove(p.getUuid(), a); return; }
+        if (a.handler().fire(p, pos, state != null ? state : p.getWorld().getBlockState(pos))) byPlayer.remove(p.getUuid(), a);
+    }
+
+    // Drops triggers whose window passed without the event happening.
+    void expire(int nowTick) {
+        for (Map<UUID, Armed> byPlayer : armed.values()) byPlayer.values().removeIf(a -> nowTick >= a.expiryTick());
+    }
+
+    int size() {
+        int n = 0;
+        for (Map<UUID, Armed> byPlayer : armed.values()) n += byPlayer.size();
+        return n;
+    }
+}
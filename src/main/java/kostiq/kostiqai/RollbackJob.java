@@ -0,0 +1,107 @@
+package kostiq.kostiqai;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * One pending rollback: the original block of every cell a prank replaced, written back once the job
+ * is due. Jobs are journaled one JSON object per line; the codec is streamed by hand but keeps the
+ * field names of the reflective Gson form, so older journals still load. No game types in here, so
+ * the codec benchmark runs it outside the game.
+ */
+final class RollbackJob {
+
+    static final class Cell {
+        final int x, y, z;
+        final String blockId;
+
+        Cell(int x, int y, int z, String blockId) { this.x = x; this.y = y; this.z = z; this.blockId = blockId; }
+    }
+
+    // cells shrinks as chunks are restored; remaining is written at persist time since dueTick is per session
+    String id;
+    long seq;
+    String worldId;
+    List<Cell> cells;
+    transient int dueTick;
+    int remaining;
+    boolean due;
+
+    void write(JsonWriter w) throws IOException {
+        w.beginObject();
+        w.name("id").value(id);
+        w.name("seq").value(seq);
+        w.name("worldId").value(worldId);
+        w.name("cells").beginArray();
+        for (Cell c : cells)
+            w.beginObject().name("x").value(c.x).name("y").value(c.y).name("z").value(c.z).name("blockId").value(c.blockId).endObject();
+        w.endArray();
+        w.name("remaining").value(remaining);
+        w.name("due").value(due);
+        w.endObject();
+    }
+
+    static RollbackJob read(JsonReader r) throws IOException {
+        RollbackJob j = new RollbackJob();
+        r.beginObject();
+        while (r.hasNext()) {
+            switch (r.nextName()) {
+                case "id" -> j.id = r.nextString();
+                case "seq" -> j.seq = r.nextLong();
+                case "worldId" -> j.worldId = r.nextString();
+                case "remaining" -> j.remaining = r.nextInt();
+                case "due" -> j.due = r.nextBoolean();
+                case "cells" -> {
+                    j.cells = new ArrayList<>();
+                    r.beginArray();
+                    while (r.hasNext()) {
+                        int x = 0, y = 0, z = 0; String block = "minecraft:air";
+                        r.beginObject();
+                        while (r.hasNext()) {
+                            switch (r.nextName()) {
+                                case "x" -> x = r.nextInt();
+                                case "y" -> y = r.nextInt();
+                                case "z" -> z = r.nextInt();
+                                case "blockId" -> block = r.nextString();
+                                default -> r.skipValue();
+                            }
+                        }
+                        r.endObject();
+                        j.cells.add(new Cell(x, y, z, block));
+                    }
+                    r.endArray();
+                }
+                default -> r.skipValue();
+            }
+        }
+        r.endObject();
+        return j;
+    }
+
+    // Parses a whole journal, oldest job first. A torn or hand-edited line drops only that job.
+    static List<RollbackJob> readJournal(Path file) throws IOException {
+        List<RollbackJob> jobs = new ArrayList<>();
+        if (!Files.exists(file)) return jobs;
+        try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            for (String line; (line = in.readLine()) != null; ) {
+                if (line.isBlank()) continue;
+                try {
+                    RollbackJob j = read(new JsonReader(new StringReader(line)));
+                    if (j.id != null && j.worldId != null && j.cells != null) jobs.add(j);
+                } catch (Exception ignore) {}
+            }
+        }
+        jobs.sort(Comparator.comparingLong(j -> j.seq));
+        return jobs;
+    }
+}
@@ -0,0 +1,77 @@
+package kostiq.kostiqai;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Per-world index of every cell an active rollback job will restore.
+ * The first job to touch a cell records its true original block; later overlapping jobs only add a
+ * claim and push the expiry out. A cell is written back once, when its last claim is released, so
+ * a prank landing on another prank's blocks neither restores the wrong "original" nor writes twice.
+ * Server thread only.
+ */
+final class RollbackOverlay {
+
+    static final class Claim {
+        final String original;
+        int refs;
+        int expiry;
+        Claim(String original, int expiry) { this.original = original; this.refs = 1; this.expiry = expiry; }
+    }
+
+    private final Map<String, Long2ObjectOpenHashMap<Claim>> worlds = new HashMap<>();
+    private int merged;
+
+    // Same bit layout as BlockPos.asLong (x:26, z:26, y:12).
+    static long pack(int x, int y, int z) {
+        return ((long) x & 0x3FFFFFFL) << 38 | ((long) z & 0x3FFFFFFL) << 12 | ((long) y & 0xFFFL);
+    }
+
+    /**
+     * Adds a claim on a cell and returns the block to restore it to: {@code seen} for a new cell,
+     * or the original recorded by the earlier claim when the cell is already held by another job.
+     */
+    String claim(String world, int x, int y, int z, String seen, int expiry) {
+        var cells = worlds.computeIfAbsent(world, k -> new Long2ObjectOpenHashMap<>());
+        long key = pack(x, y, z);
+        Claim c = cells.get(key);
+        if (c == null) { cells.put(key, new Claim(seen, expiry)); return seen; }
+        c.refs++;
+        c.expiry = Math.max(c.expiry, expiry);
+        merged++;
+        return c.original;
+    }
+
+    // Drops one claim; returns the original block if this was the last one (the caller restores it), else null.
+    String release(String world, int x, int y, int z) {
+        var cells = worlds.get(world);
+        if (cells == null) return null;
+        long key = pack(x, y, z);
+        Claim c = cells.get(key);
+        if (c == null) return null;
+        if (--c.refs > 0) return null;
+        cells.remove(key);
+        if (cells.isEmpty()) worlds.remove(world);
+        return c.original;
+    }
+
+    // Latest expiry among the claims on a cell, or -1 if nothing holds it.
+    int expiry(String world, int x, int y, int z) {
+        var cells = worlds.get(world);
+        Claim c = cells == null ? null : cells.get(pack(x, y, z));
+        return c == null ? -1 : c.expiry;
+    }
+
+    int cells() {
+        int n = 0;
+        for (var m : worlds.values()) n += m.size();
+        return n;
+    }
+
+    // Claims that landed on a cell another job already held (each one is a write saved).
+    int merged() { return merged; }
+
+    void clear() { worlds.clear(); merged = 0; }
+}
@@ -0,0 +1,84 @@
+package kostiq.kostiqai;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Precomputed cell offsets for the structural actions.
+ * Each (shape, radius, a, b) is built once and cached as a packed int[]:
+ * 10 bits per axis (offset + 512) plus a SURFACE bit for cells that have at least one
+ * neighbour outside the shape (interior cells can skip neighbour updates).
+ */
+final class ShapeTemplates {
+
+    enum Shape { CAGE, DISK, BOX }
+
+    static final int SURFACE = 1 << 30;
+    private static final int BIAS = 512, MASK = 0x3FF;
+
+    record Template(int[] cells, int minDx, int minDy, int minDz, int maxDx, int maxDy, int maxDz) {
+        int size() { return cells.length; }
+    }
+
+    private record Key(Shape shape, int r, int a, int b) {}
+
+    private static final Map<Key, Template> CACHE = new ConcurrentHashMap<>();
+
+    private ShapeTemplates() {}
+
+    /** Hollow box: floor at dy=-2, walls of radius r, ceiling at dy=height. */
+    static Template cage(int r, int height) { return CACHE.computeIfAbsent(new Key(Shape.CAGE, r, height, 0), ShapeTemplates::build); }
+
+    /** Flat disk at dy=0 with dx*dx+dz*dz <= r*r. */
+    static Template disk(int r) { return CACHE.computeIfAbsent(new Key(Shape.DISK, r, 0, 0), ShapeTemplates::build); }
+
+    /** Solid box dx,dz in [-r,r], dy in [yFrom,yTo]. */
+    static Template box(int r, int yFrom, int yTo) { return CACHE.computeIfAbsent(new Key(Shape.BOX, r, yFrom, yTo), ShapeTemplates::build); }
+
+    static int pack(int dx, int dy, int dz) { return ((dx + BIAS) << 20) | ((dy + BIAS) << 10) | (dz + BIAS); }
+    static int dx(int cell) { return ((cell >>> 20) & MASK) - BIAS; }
+    static int dy(int cell) { return ((cell >>> 10) & MASK) - BIAS; }
+    static int dz(int cell) { return (cell & MASK) - BIAS; }
+    static boolean surface(int cell) { return (cell & SURFACE) != 0; }
+
+    private static boolean contains(Key k, int dx, int dy, int dz) {
+        return switch (k.shape()) {
+            case CAGE -> {
+                int r = k.r(), h = k.a();
+                if (Math.abs(dx) > r || Math.abs(dz) > r || dy < -2 || dy > h) yield false;
+                boolean floor = dy == -2, ceiling = dy == h;
+                boolean wall = dy > -2 && dy < h && (Math.abs(dx) == r || Math.abs(dz) == r);
+                yield floor || ceiling || wall;
+            }
+            case DISK -> dy == 0 && dx * dx + dz * dz <= k.r() * k.r();
+            case BOX -> Math.abs(dx) <= k.r() && Math.abs(dz) <= k.r() && dy >= k.a() && dy <= k.b();
+        };
+    }
+
+    private static Template build(Key k) {
+        int r = Math.max(0, k.r());
+        int yLo = switch (k.shape()) { case CAGE -> -2; case DISK -> 0; case BOX -> k.a(); };
+        int yHi = switch (k.shape()) { case CAGE -> k.a(); case DISK -> 0; case BOX -> k.b(); };
+        int[] tmp = new int[(2 * r + 1) * (2 * r + 1) * Math.max(1, yHi - yLo + 1)];
+        int n = 0;
+        int minDx = 0, minDy = 0, minDz = 0, maxDx = 0, maxDy = 0, maxDz = 0;
+        // y-major so consecutive cells stay within one chunk section
+        for (int dy = yLo; dy <= yHi; dy++) {
+            for (int dx = -r; dx <= r; dx++) {
+                for (int dz = -r; dz <= r; dz++) {
+                    if (!contains(k, dx, dy, dz)) continue;
+                    boolean surface = !contains(k, dx + 1, dy, dz) || !contains(k, dx - 1, dy, dz)
+                            || !contains(k, dx, dy + 1, dz) || !contains(k, dx, dy - 1, dz)
+                            || !contains(k, dx, dy, dz + 1) || !contains(k, dx, dy, dz - 1);
+                    tmp[n++] = pack(dx, dy, dz) | (surface ? SURFACE : 0);
+                    if (n == 1) { minDx = maxDx = dx; minDy = maxDy = dy; minDz = maxDz = dz; }
+                    minDx = Math.min(minDx, dx); maxDx = Math.max(maxDx, dx);
+                    minDy = Math.min(minDy, dy); maxDy = Math.max(maxDy, dy);
+                    minDz = Math.min(minDz, dz); maxDz = Math.max(maxDz, dz);
+                }
+            }
+        }
+        return new Template(Arrays.copyOf(tmp, n), minDx, minDy, minDz, maxDx, maxDy, maxDz);
+    }
+}
@@ -0,0 +1,212 @@
+package kostiq.kostiqai;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import net.minecraft.block.Block;
+import net.minecraft.entity.EquipmentSlot;
+import net.minecraft.entity.LivingEntity;
+import net.minecraft.entity.mob.HostileEntity;
+import net.minecraft.item.Item;
+import net.minecraft.item.ItemStack;
+import net.minecraft.registry.Registries;
+import net.minecraft.registry.entry.RegistryEntry;
+import net.minecraft.server.network.ServerPlayerEntity;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.util.Identifier;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.Box;
+import net.minecraft.world.World;
+import net.minecraft.world.biome.Biome;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Two-stage player snapshot. {@link #add} runs on the server thread and copies only what has to be
+ * read from the world (positions, raw block-state and item ids, health, light, entity counts) into
+ * reusable rows; {@link #toJson} runs on a worker and does the id-to-string lookups, derived features
+ * (cave, armor tier, danger score) and JSON building. Buffers are pooled by the caller: one buffer is
+ * owned by one thread at a time, filled on the server thread and then handed off whole.
+ */
+final class SnapshotCapture {
+
+    private static final EquipmentSlot[] ARMOR = { EquipmentSlot.HEAD, EquipmentSlot.CHEST, EquipmentSlot.LEGS, EquipmentSlot.FEET };
+    static final int NEARBY_RADIUS = 8;
+
+    // Raw per-player values; reused across snapshots, so nothing here may outlive toJson().
+    private static final class Row {
+        UUID uuid;
+        String name, mode;
+        int deaths;
+        final List<String> recent = new ArrayList<>(4);
+        Identifier dimension;
+        RegistryEntry<Biome> biome;
+        double x, y, z;
+        float yaw, pitch, health, fallDistance;
+        int blockY, food, light, hostiles, passives;
+        boolean creative, spectator, skyVisible;
+        int stateBelow, stateAbove, heldItem;   // raw ids
+        final int[] armor = new int[4];         // raw item ids, -1 = empty
+        final int[] hotbarItem = new int[9], hotbarCount = new int[9];
+    }
+
+    private final List<Row> rows = new ArrayList<>();
+    private int size;
+
+    // cycle-wide header, set by the capturing thread
+    String dimension, difficulty, balancedWindow;
+    int stage, maxSeverityNow;
+
+    SnapshotCapture reset() { size = 0; return this; }
+
+    int size() { return size; }
+
+    // ===== STAGE 1: server thread =====
+
+    void add(ServerPlayerEntity p, String mode, int deaths, Collection<String> recent) {
+        if (size == rows.size()) rows.add(new Row());
+        Row r = rows.get(size++);
+        ServerWorld sw = (ServerWorld) p.getWorld();
+        BlockPos pos = p.getBlockPos();
+
+        r.uuid = p.getUuid();
+        r.name = p.getGameProfile().getName();
+        r.mode = mode;
+        r.deaths = deaths;
+        r.recent.clear();
+        r.recent.addAll(recent);
+        r.dimension = sw.getRegistryKey().getValue();
+        r.biome = sw.getBiome(pos);
+        r.x = p.getX(); r.y = p.getY(); r.z = p.getZ();
+        r.yaw = p.getYaw(); r.pitch = p.getPitch();
+        r.blockY = p.getBlockY();
+        r.health = p.getHealth();
+        r.fallDistance = (float) p.fallDistance;
+        r.food = p.getHungerManager().getFoodLevel();
+        r.creative = p.isCreative();
+        r.spectator = p.isSpectator();
+        r.skyVisible = sw.isSkyVisible(pos.up(2));
+        r.light = Math.max(sw.getLightLevel(pos), sw.getLightLevel(pos.up()));
+        r.stateBelow = Block.getRawIdFromState(sw.getBlockState(pos.down()));
+        r.stateAbove = Block.getRawIdFromState(sw.getBlockState(pos.up()));
+        r.heldItem = rawItem(p.getMainHandStack());
+        for (int i = 0; i < ARMOR.length; i++) r.armor[i] = rawItem(p.getEquippedStack(ARMOR[i]));
+        for (int slot = 0; slot < 9; slot++) {
+            ItemStack s = p.getInventory().getStack(slot);
+            r.hotbarItem[slot] = rawItem(s);
+            r.hotbarCount[slot] = s.getCount();
+        }
+
+        int hostiles = 0, passives = 0;
+        for (LivingEntity e : sw.getEntitiesByClass(LivingEntity.class, new Box(pos).expand(NEARBY_RADIUS), ent -> !(ent instanceof ServerPlayerEntity))) {
+            if (e instanceof HostileEntity) hostiles++; else passives++;
+        }
+        r.hostiles = hostiles;
+        r.passives = passives;
+    }
+
+    private static int rawItem(ItemStack s) { return s.isEmpty() ? -1 : Item.getRawId(s.getItem()); }
+
+    // ===== STAGE 2: worker thread =====
+
+    JsonObject toJson() {
+        JsonArray arr = new JsonArray();
+        for (int i = 0; i < size; i++) arr.add(playerJson(rows.get(i)));
+        JsonObject root = new JsonObject();
+        root.add("players", arr);
+        root.addProperty("difficulty", difficulty);
+        root.addProperty("stage", stage);
+        root.addProperty("maxSeverityNow", maxSeverityNow);
+        root.addProperty("balancedWindow", balancedWindow);
+        root.addProperty("dimension", dimension);
+        return root;
+    }
+
+    private static JsonObject playerJson(Row r) {
+        JsonObject j = new JsonObject();
+        j.addProperty("uuid", r.uuid.toString());
+        j.addProperty("name", r.name);
+
+        String dim = r.dimension.toString();
+        j.addProperty("dimension", dim);
+        j.addProperty("isNether", World.NETHER.getValue().equals(r.dimension));
+        j.addProperty("isEnd", World.END.getValue().equals(r.dimension));
+
+        j.addProperty("biome", r.biome.getKey().map(k -> k.getValue().toString()).orElse("unknown"));
+        j.addProperty("y", r.blockY);
+        j.addProperty("health", (int) Math.ceil(r.health));
+        j.addProperty("food", r.food);
+        j.addProperty("isCreative", r.creative);
+        j.addProperty("isSpectator", r.spectator);
+        j.addProperty("hasElytra", itemId(r.armor[1]).contains("elytra"));
+        j.addProperty("armorTier", armorTier(r.armor));
+        j.addProperty("mode", r.mode);
+        j.addProperty("deaths", r.deaths);
+        JsonArray rec = new JsonArray();
+        for (String t : r.recent) rec.add(t);
+        j.add("recent", rec);
+
+        boolean isCave = r.blockY < 48 || !r.skyVisible;
+        j.addProperty("isCave", isCave);
+        j.addProperty("light", r.light);
+
+        JsonObject pos = new JsonObject();
+        pos.addProperty("x", r.x); pos.addProperty("y", r.y); pos.addProperty("z", r.z);
+        pos.addProperty("yaw", r.yaw); pos.addProperty("pitch", r.pitch);
+        j.add("position", pos);
+
+        j.addProperty("block_below", blockId(r.stateBelow));
+        j.addProperty("block_above", blockId(r.stateAbove));
+        j.addProperty("held_item", itemId(r.heldItem));
+
+        JsonArray hotbar = new JsonArray();
+        for (int slot = 0; slot < 9; slot++) {
+            JsonObject it = new JsonObject();
+            it.addProperty("slot", slot);
+            it.addProperty("item", itemId(r.hotbarItem[slot]));
+            it.addProperty("count", r.hotbarItem[slot] < 0 ? 0 : r.hotbarCount[slot]);
+            hotbar.add(it);
+        }
+        j.add("hotbar", hotbar);
+
+        JsonObject nearby = new JsonObject();
+        nearby.addProperty("radius", NEARBY_RADIUS);
+        nearby.addProperty("hostiles", r.hostiles);
+        nearby.addProperty("passives", r.passives);
+        j.add("nearby", nearby);
+
+        j.addProperty("dangerScore", dangerScore(r, isCave));
+        return j;
+    }
+
+    private static String itemId(int raw) {
+        return raw < 0 ? "minecraft:air" : Registries.ITEM.getId(Item.byRawId(raw)).toString();
+    }
+
+    private static String blockId(int raw) {
+        return Registries.BLOCK.getId(Block.getStateFromRawId(raw).getBlock()).toString();
+    }
+
+    private static int armorTier(int[] armor) {
+        int t = 0;
+        for (int raw : armor) {
+            if (raw < 0) continue;
+            String id = itemId(raw);
+            if (id.contains("leather")) t += 1; else if (id.contains("chain")) t += 2; else if (id.contains("iron")) t += 3;
+            else if (id.contains("gold")) t += 2; else if (id.contains("diamond")) t += 4; else if (id.contains("netherite")) t += 5;
+        }
+        return t;
+    }
+
+    private static int dangerScore(Row r, boolean isCave) {
+        int score = 0;
+        score += Math.max(0, 10 - (int) Math.ceil(r.health));
+        if (isCave) score += 3;
+        if (r.light < 7) score += 5;
+        score += Math.min(10, r.hostiles * 2);
+        if (!r.creative && !r.spectator && r.fallDistance > 2.5f) score += 2;
+        return Math.min(20, score);
+    }
+}
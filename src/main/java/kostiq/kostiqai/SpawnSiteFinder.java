@@ -0,0 +1,194 @@
+package kostiq.kostiqai;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import net.minecraft.block.BlockState;
+import net.minecraft.block.Blocks;
+import net.minecraft.registry.RegistryKey;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.util.math.random.Random;
+import net.minecraft.world.Heightmap;
+import net.minecraft.world.World;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Finds mob and wither spawn sites around a player.
+ * Columns are resolved from the MOTION_BLOCKING heightmap first (3 block reads to confirm a
+ * standing cell); only columns under a roof fall back to a sliding scan of the +-5 window.
+ * Surface results are cached per chunk column and revalidated against the heightmap on reuse.
+ * Every call reports how many block lookups it did and the worst case it was bounded by.
+ */
+final class SpawnSiteFinder {
+
+    static final int WINDOW = 5;
+    private static final int TTL_TICKS = 600;
+    private static final int SCAN_READS = 2 * WINDOW + 3;
+    private static final int UNKNOWN = Integer.MIN_VALUE, NONE = Integer.MIN_VALUE + 1;
+
+    record Result(List<BlockPos> sites, int lookups, int bound) {}
+
+    private static final class ChunkColumns {
+        final int[] top = new int[256];   // heightmap value the entry was resolved against
+        final int[] stand = new int[256]; // standing y on that column's surface, or NONE
+        final long builtTick;
+        ChunkColumns(long tick) { Arrays.fill(top, UNKNOWN); this.builtTick = tick; }
+    }
+
+    private final Map<RegistryKey<World>, Long2ObjectOpenHashMap<ChunkColumns>> cache = new HashMap<>();
+    private final BlockPos.Mutable m = new BlockPos.Mutable();
+    private int lookups;
+
+    void invalidate(ServerWorld sw, int chunkX, int chunkZ) {
+        var byChunk = cache.get(sw.getRegistryKey());
+        if (byChunk != null) byChunk.remove(ChunkPos.toLong(chunkX, chunkZ));
+    }
+
+    void clear() { cache.clear(); }
+
+    // ===== MOBS =====
+    Result find(ServerWorld sw, BlockPos center, int radius, int count, Random rnd, long tick) {
+        lookups = 0;
+        int r = Math.max(0, radius), side = 2 * r + 1, n = side * side;
+        long[] bits = new long[(n + 63) >> 6];
+        int[] ys = new int[n];
+        int valid = 0;
+        for (int i = 0; i < n; i++) {
+            int x = center.getX() + (i % side) - r, z = center.getZ() + (i / side) - r;
+            int y = columnStand(sw, x, z, center.getY(), tick);
+            if (y == NONE) continue;
+            bits[i >> 6] |= 1L << (i & 63);
+            ys[i] = y;
+            valid++;
+        }
+        List<BlockPos> sites = new ArrayList<>(Math.max(0, count));
+        if (valid > 0) {
+            for (int k = 0; k < count; k++) {
+                int i = select(bits, rnd.nextInt(valid));
+                sites.add(new BlockPos(center.getX() + (i % side) - r, ys[i], center.getZ() + (i / side) - r));
+            }
+        }
+        return new Result(sites, lookups, n * (3 + SCAN_READS));
+    }
+
+    // index of the rank-th set bit
+    private static int select(long[] bits, int rank) {
+        for (int w = 0; w < bits.length; w++) {
+            int c = Long.bitCount(bits[w]);
+            if (rank < c) {
+                long v = bits[w];
+                for (int j = 0; j < rank; j++) v &= v - 1;
+                return (w << 6) + Long.numberOfTrailingZeros(v);
+            }
+            rank -= c;
+        }
+        return -1;
+    }
+
+    private int columnStand(ServerWorld sw, int x, int z, int centerY, long tick) {
+        if (!sw.isChunkLoaded(x >> 4, z >> 4)) return NONE;
+        int top = sw.getTopY(Heightmap.Type.MOTION_BLOCKING, x, z);
+        if (Math.abs(top - centerY) <= WINDOW) {
+            ChunkColumns cc = columns(sw, x >> 4, z >> 4, tick);
+            int i = ((z & 15) << 4) | (x & 15);
+            if (cc.top[i] != top) {
+                cc.top[i] = top;
+                cc.stand[i] = standable(sw, x, top, z) ? top : NONE;
+            }
+            if (cc.stand[i] != NONE) return cc.stand[i];
+        }
+        // under a roof (caves, overhangs): one read per level, top-down like the old scan
+        int hi = centerY + WINDOW, lo = centerY - WINDOW;
+        BlockState above = read(sw, x, hi + 1, z), at = read(sw, x, hi, z);
+        for (int y = hi; y >= lo; y--) {
+            BlockState below = read(sw, x, y - 1, z);
+            m.set(x, y - 1, z);
+            if (!below.isOf(Blocks.NETHER_PORTAL) && below.isSolidBlock(sw, m)
+                    && !at.isOf(Blocks.NETHER_PORTAL) && !at.blocksMovement() && !above.blocksMovement()) return y;
+            above = at; at = below;
+        }
+        return NONE;
+    }
+
+    private boolean standable(ServerWorld sw, int x, int y, int z) {
+        BlockState below = read(sw, x, y - 1, z);
+        m.set(x, y - 1, z);
+        if (below.isOf(Blocks.NETHER_PORTAL) || !below.isSolidBlock(sw, m)) return false;
+        BlockState at = read(sw, x, y, z);
+        if (at.isOf(Blocks.NETHER_PORTAL) || at.blocksMovement()) return false;
+        return !read(sw, x, y + 1, z).blocksMovement();
+    }
+
+    private ChunkColumns columns(ServerWorld sw, int cx, int cz, long tick) {
+        var byChunk = cache.computeIfAbsent(sw.getRegistryKey(), k -> new Long2ObjectOpenHashMap<>());
+        if (byChunk.size() > 4096) byChunk.values().removeIf(c -> tick - c.builtTick > TTL_TICKS);
+        long key = ChunkPos.toLong(cx, cz);
+        ChunkColumns cc = byChunk.get(key);
+        if (cc == null || tick - cc.builtTick > TTL_TICKS) {
+            cc = new ChunkColumns(tick);
+            byChunk.put(key, cc);
+        }
+        return cc;
+    }
+
+    private BlockState read(ServerWorld sw, int x, int y, int z) {
+        lookups++;
+        m.set(x, y, z);
+        return sw.getBlockState(m);
+    }
+
+    // ===== WITHER =====
+    // Flat, solid 3x3 base with a clear 3x4x3 volume above it.
+    private static final int[][] WITHER_CENTERS = {{0,0},{2,0},{-2,0},{0,2},{0,-2},{2,2},{-2,2},{2,-2},{-2,-2}};
+
+    Result findWither(ServerWorld sw, BlockPos center) {
+        lookups = 0;
+        int bound = WITHER_CENTERS.length * 9 + 9 * (2 * WINDOW + 5);
+        // surface: everything above MOTION_BLOCKING is already clear, so only the 9 base blocks need a read
+        for (int[] off : WITHER_CENTERS) {
+            int cx = center.getX() + off[0], cz = center.getZ() + off[1];
+            if (!sw.isChunkLoaded((cx - 1) >> 4, (cz - 1) >> 4) || !sw.isChunkLoaded((cx + 1) >> 4, (cz + 1) >> 4)) continue;
+            int top = sw.getTopY(Heightmap.Type.MOTION_BLOCKING, cx, cz);
+            if (Math.abs(top - center.getY()) > WINDOW) continue;
+            boolean ok = true;
+            for (int dx = -1; dx <= 1 && ok; dx++) for (int dz = -1; dz <= 1 && ok; dz++) {
+                if (sw.getTopY(Heightmap.Type.MOTION_BLOCKING, cx + dx, cz + dz) != top) { ok = false; break; }
+                BlockState base = read(sw, cx + dx, top - 1, cz + dz);
+                m.set(cx + dx, top - 1, cz + dz);
+                if (!base.isSolidBlock(sw, m)) ok = false;
+            }
+            if (ok) return new Result(List.of(new BlockPos(cx, top, cz)), lookups, bound);
+        }
+        // under a roof: read each of the 9 columns once over the window and test every level from those
+        if (!sw.isChunkLoaded(center.getX() >> 4, center.getZ() >> 4)) return new Result(List.of(), lookups, bound);
+        int lo = center.getY() - WINDOW - 1, levels = 2 * WINDOW + 5;
+        boolean[][] solid = new boolean[9][levels], clear = new boolean[9][levels];
+        for (int c = 0; c < 9; c++) {
+            int x = center.getX() + (c % 3) - 1, z = center.getZ() + (c / 3) - 1;
+            for (int k = 0; k < levels; k++) {
+                BlockState st = read(sw, x, lo + k, z);
+                m.set(x, lo + k, z);
+                solid[c][k] = st.isSolidBlock(sw, m);
+                clear[c][k] = !st.blocksMovement() && !st.isOf(Blocks.NETHER_PORTAL);
+            }
+        }
+        for (int y = center.getY() + WINDOW; y >= center.getY() - WINDOW; y--) {
+            int k = y - lo;
+            boolean ok = true;
+            for (int c = 0; c < 9 && ok; c++) {
+                if (!solid[c][k - 1]) ok = false;
+                for (int dy = 0; dy < 4 && ok; dy++) if (!clear[c][k + dy]) ok = false;
+            }
+            if (ok) return new Result(List.of(new BlockPos(center.getX(), y, center.getZ())), lookups, bound);
+        }
+        return new Result(List.of(), lookups, bound);
+    }
+
+    Optional<BlockPos> first(Result r) { return r.sites().isEmpty() ? Optional.empty() : Optional.of(r.sites().get(0)); }
+}
@@ -0,0 +1,106 @@
+package kostiq.kostiqai;
+
+import java.util.Set;
+
+/**
+ * MSPT-aware throttle for the director.
+ * Fed one sample per server tick; keeps a 100-tick rolling mean and derives a level
+ * (NORMAL / STRAINED / CRITICAL) with hysteresis plus a smoothly eased scale factor.
+ * The scale drops quickly when the server lags and recovers slowly once it is healthy again.
+ */
+final class TickGovernor {
+
+    enum Level { NORMAL, STRAINED, CRITICAL }
+
+    // Actions that add entities or big fights on top of an already lagging server.
+    static final Set<String> HEAVY_TYPES = Set.of("SPAWN", "BERSERK", "WITHER_MAYBE", "WITHER_TEMPORARY");
+
+    private static final int WINDOW = 100;
+    private static final int MIN_DWELL_TICKS = 100;
+    private static final double EASE_DOWN = 0.20;
+    private static final double EASE_UP = 0.02;
+
+    private final long[] samples = new long[WINDOW];
+    private int idx = 0, count = 0;
+    private long sum = 0;
+
+    private boolean enabled = true;
+    private double strainedMs = 40.0, criticalMs = 48.0, hysteresisMs = 5.0, minScale = 0.25;
+
+    private Level level = Level.NORMAL;
+    private int ticksInLevel = 0;
+    private double scale = 1.0;
+
+    void configure(boolean enabled, double strainedMs, double criticalMs, double hysteresisMs, double minScale) {
+        this.enabled = enabled;
+        this.strainedMs = Math.max(1.0, strainedMs);
+        this.criticalMs = Math.max(this.strainedMs + 1.0, criticalMs);
+        this.hysteresisMs = Math.max(0.0, hysteresisMs);
+        this.minScale = Math.max(0.05, Math.min(1.0, minScale));
+        if (!enabled) { level = Level.NORMAL; scale = 1.0; }
+    }
+
+    void sample(long tickNanos) {
+        long v = Math.max(0L, tickNanos);
+        sum += v - samples[idx];
+        samples[idx] = v;
+        idx = (idx + 1) % WINDOW;
+        if (count < WINDOW) count++;
+        if (!enabled) return;
+
+        double ms = msptMean();
+        ticksInLevel++;
+        Level next = level;
+        switch (level) {
+            case NORMAL -> { if (ms >= criticalMs) next = Level.CRITICAL; else if (ms >= strainedMs) next = Level.STRAINED; }
+            case STRAINED -> {
+                if (ms >= criticalMs) next = Level.CRITICAL;
+                else if (ms < strainedMs - hysteresisMs && ticksInLevel >= MIN_DWELL_TICKS) next = Level.NORMAL;
+            }
+            case CRITICAL -> {
+                if (ms < criticalMs - hysteresisMs && ticksInLevel >= MIN_DWELL_TICKS) next = Level.STRAINED;
+            }
+        }
+        if (next != level) { level = next; ticksInLevel = 0; }
+
+        // target falls linearly from 1.0 at strainedMs to minScale at criticalMs
+        double target;
+        if (ms <= strainedMs - hysteresisMs) target = 1.0;
+        else if (ms >= criticalMs) target = minScale;
+        else {
+            double lo = strainedMs - hysteresisMs;
+            double f = (ms - lo) / Math.max(0.001, criticalMs - lo);
+            target = 1.0 - f * (1.0 - minScale);
+        }
+        scale += (target - scale) * (target < scale ? EASE_DOWN : EASE_UP);
+        scale = Math.max(minScale, Math.min(1.0, scale));
+    }
+
+    double msptMean() { return count == 0 ? 0.0 : (sum / (double) count) / 1_000_000.0; }
+
+    Level level() { return level; }
+
+    double scale() { return scale; }
+
+    int blockBudget(int base) {
+        return Math.max(1, (int) Math.round(base * scale));
+    }
+
+    int stretchTicks(int ticks) {
+        return (int) Math.min(Integer.MAX_VALUE / 2, Math.round(ticks / scale));
+    }
+
+    int severityCap(int maxSev) {
+        return switch (level) {
+            case NORMAL -> maxSev;
+            case STRAINED -> Math.min(maxSev, 2);
+            case CRITICAL -> Math.min(maxSev, 1);
+        };
+    }
+
+    boolean allows(String type) {
+        return level == Level.NORMAL || !HEAVY_TYPES.contains(type);
+    }
+
+    boolean worldEditsPaused() { return level == Level.CRITICAL; }
+}
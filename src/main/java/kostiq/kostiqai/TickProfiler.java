@@ -0,0 +1,142 @@
+package kostiq.kostiqai;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Per-phase nanosecond timings for the director.
+ * Each phase keeps a log-linear histogram (4 sub-buckets per power of two, ~12% error),
+ * so recording is a few shifts plus one atomic add. Two windows rotate every minute,
+ * which gives rolling p50/p99/max over the last 1-2 minutes.
+ */
+final class TickProfiler {
+
+    private static final long DEFAULT_WINDOW_NS = 60_000_000_000L;
+    private static final int SUB_BITS = 2;
+    private static final int SUB = 1 << SUB_BITS;
+    private static final int BUCKETS = (64 - SUB_BITS) * SUB;
+
+    private final Map<String, Histogram> phases = new ConcurrentHashMap<>();
+    private final long windowNs;
+
+    TickProfiler() { this(DEFAULT_WINDOW_NS); }
+
+    // Long.MAX_VALUE never rotates: one window covering the whole run (offline simulator)
+    TickProfiler(long windowNs) { this.windowNs = Math.max(1L, windowNs); }
+
+    void record(String phase, long startNanos) {
+        recordNanos(phase, System.nanoTime() - startNanos);
+    }
+
+    void recordNanos(String phase, long nanos) {
+        phases.computeIfAbsent(phase, k -> new Histogram(windowNs)).record(Math.max(0L, nanos));
+    }
+
+    void reset() { phases.clear(); }
+
+    /** Rolling summary per phase, sorted by name. */
+    Map<String, Summary> summaries() {
+        Map<String, Summary> out = new TreeMap<>();
+        for (var e : phases.entrySet()) {
+            Summary s = e.getValue().summary();
+            if (s.count() > 0) out.put(e.getKey(), s);
+        }
+        return out;
+    }
+
+    /** One human readable line per phase, slowest p99 first. */
+    List<String> report() {
+        List<Map.Entry<String, Summary>> rows = new ArrayList<>(summaries().entrySet());
+        rows.sort((a, b) -> Long.compare(b.getValue().p99(), a.getValue().p99()));
+        List<String> out = new ArrayList<>(rows.size());
+        for (var r : rows) {
+            Summary s = r.getValue();
+            out.add(String.format(Locale.ROOT, "%s n=%d p50=%s p99=%s max=%s",
+                    r.getKey(), s.count(), fmt(s.p50()), fmt(s.p99()), fmt(s.max())));
+        }
+        return out;
+    }
+
+    static String fmt(long nanos) {
+        if (nanos < 1_000L) return nanos + "ns";
+        if (nanos < 1_000_000L) return String.format(Locale.ROOT, "%.1fus", nanos / 1_000.0);
+        return String.format(Locale.ROOT, "%.2fms", nanos / 1_000_000.0);
+    }
+
+    record Summary(long count, long p50, long p99, long max) {}
+
+    // ===== HISTOGRAM =====
+    static int bucketOf(long v) {
+        if (v < SUB) return (int) v;
+        int exp = 63 - Long.numberOfLeadingZeros(v);
+        return (exp - SUB_BITS + 1) * SUB + (int) ((v >>> (exp - SUB_BITS)) & (SUB - 1));
+    }
+
+    static long upperBoundOf(int bucket) {
+        if (bucket < SUB) return bucket;
+        int exp = bucket / SUB + SUB_BITS - 1;
+        long lower = (long) (SUB + bucket % SUB) << (exp - SUB_BITS);
+        return lower + (1L << (exp - SUB_BITS)) - 1;
+    }
+
+    private static final class Window {
+        final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+        final AtomicLong total = new AtomicLong();
+        final AtomicLong max = new AtomicLong();
+        final long startNanos;
+        Window(long startNanos) { this.startNanos = startNanos; }
+    }
+
+    static final class Histogram {
+        private final long windowNs;
+        private volatile Window current = new Window(System.nanoTime());
+        private volatile Window previous = null;
+
+        Histogram(long windowNs) { this.windowNs = windowNs; }
+
+        void record(long nanos) {
+            Window w = current;
+            if (System.nanoTime() - w.startNanos > windowNs) w = rotate(w);
+            w.counts.incrementAndGet(bucketOf(nanos));
+            w.total.incrementAndGet();
+            if (nanos > w.max.get()) w.max.accumulateAndGet(nanos, Math::max);
+        }
+
+        private synchronized Window rotate(Window seen) {
+            if (current != seen) return current;
+            previous = seen;
+            current = new Window(System.nanoTime());
+            return current;
+        }
+
+        Summary summary() {
+            Window cur = current, prev = previous;
+            long[] merged = new long[BUCKETS];
+            long n = 0, max = 0;
+            for (Window w : new Window[]{cur, prev}) {
+                if (w == null) continue;
+                for (int i = 0; i < BUCKETS; i++) merged[i] += w.counts.get(i);
+                n += w.total.get();
+                max = Math.max(max, w.max.get());
+            }
+            if (n == 0) return new Summary(0, 0, 0, 0);
+            return new Summary(n, Math.min(max, quantile(merged, n, 0.50)), Math.min(max, quantile(merged, n, 0.99)), max);
+        }
+
+        private static long quantile(long[] counts, long n, double q) {
+            long rank = Math.max(1L, (long) Math.ceil(q * n));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) return upperBoundOf(i);
+            }
+            return upperBoundOf(counts.length - 1);
+        }
+    }
+}
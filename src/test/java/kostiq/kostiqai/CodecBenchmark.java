@@ -0,0 +1,170 @@
+package kostiq.kostiqai;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.BufferedWriter;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * Old reflective/tree Gson path against the hand-written streaming codecs, for the rollback journal
+ * (persist and load) and the JSON action log. Each case runs a few discarded warm-up rounds, then
+ * reports mean time and bytes allocated per operation on the benchmark thread. Before timing, the
+ * streamed output is checked to parse to the same JSON as the Gson output, so a faster codec that
+ * writes something else fails instead of winning.
+ * <p>
+ * {@code ./gradlew runCodecBench --args="--jobs=200 --cells=250 --entries=4096 --iters=20"}
+ */
+public final class CodecBenchmark {
+
+    private static final Gson GSON = new Gson();
+    private static final int WARMUP_ROUNDS = 5;
+
+    interface Op { void run() throws Exception; }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> opt = new HashMap<>();
+        for (String a : args) {
+            if (!a.startsWith("--")) continue;
+            int eq = a.indexOf('=');
+            opt.put(eq < 0 ? a.substring(2) : a.substring(2, eq), eq < 0 ? "true" : a.substring(eq + 1));
+        }
+        int jobCount = Integer.parseInt(opt.getOrDefault("jobs", "200"));
+        int cellsPerJob = Integer.parseInt(opt.getOrDefault("cells", "250"));
+        int entryCount = Integer.parseInt(opt.getOrDefault("entries", "4096"));
+        int iters = Integer.parseInt(opt.getOrDefault("iters", "20"));
+
+        List<RollbackJob> jobs = jobs(jobCount, cellsPerJob, new Random(1));
+        List<ActionLogEntry> entries = entries(entryCount);
+        int totalCells = jobCount * cellsPerJob;
+        checkSame(jobs.get(0), entries.get(0));
+
+        Path journal = Files.createTempFile("kostiqai-bench", ".jsonl");
+        Path log = Files.createTempFile("kostiqai-bench", ".log");
+        try {
+            System.out.printf(Locale.ROOT, "%d jobs x %d cells, %d log entries, %d iterations%n", jobCount, cellsPerJob, entryCount, iters);
+            bench("rollback persist (gson)", iters, () -> {
+                String out = jobs.stream().map(GSON::toJson).collect(Collectors.joining("\n"));
+                Files.writeString(journal, out, StandardCharsets.UTF_8);
+            });
+            bench("rollback persist (stream)", iters, () -> {
+                try (BufferedWriter out = Files.newBufferedWriter(journal, StandardCharsets.UTF_8)) {
+                    for (RollbackJob j : jobs) { j.write(new JsonWriter(out)); out.write('\n'); }
+                }
+            });
+            // both loaders read the same file; the streamed writer produced it last
+            bench("rollback load (gson)", iters, () -> {
+                int n = 0;
+                for (String line : Files.readAllLines(journal, StandardCharsets.UTF_8)) n += GSON.fromJson(line, RollbackJob.class).cells.size();
+                if (n != totalCells) throw new IllegalStateException("gson loaded " + n + " cells");
+            });
+            bench("rollback load (stream)", iters, () -> {
+                int n = 0;
+                for (RollbackJob j : RollbackJob.readJournal(journal)) n += j.cells.size();
+                if (n != totalCells) throw new IllegalStateException("stream loaded " + n + " cells");
+            });
+            bench("log batch (gson tree)", iters, () -> {
+                StringBuilder sb = new StringBuilder(entries.size() * 192);
+                for (ActionLogEntry e : entries) sb.append(GSON.toJson(tree(e))).append('\n');
+                Files.writeString(log, sb, StandardCharsets.UTF_8);
+            });
+            bench("log batch (stream)", iters, () -> {
+                try (BufferedWriter out = Files.newBufferedWriter(log, StandardCharsets.UTF_8)) {
+                    for (ActionLogEntry e : entries) { e.write(new JsonWriter(out)); out.write('\n'); }
+                }
+            });
+        } finally {
+            Files.deleteIfExists(journal);
+            Files.deleteIfExists(log);
+        }
+    }
+
+    // ===== FIXTURES =====
+    private static List<RollbackJob> jobs(int count, int cells, Random rnd) {
+        List<RollbackJob> out = new ArrayList<>(count);
+        for (int k = 0; k < count; k++) {
+            RollbackJob j = new RollbackJob();
+            j.id = new UUID(rnd.nextLong(), rnd.nextLong()).toString();
+            j.seq = k;
+            j.worldId = "minecraft:overworld";
+            j.cells = new ArrayList<>(cells);
+            for (int c = 0; c < cells; c++)
+                j.cells.add(new RollbackJob.Cell(rnd.nextInt(20_000) - 10_000, rnd.nextInt(384) - 64, rnd.nextInt(20_000) - 10_000, "minecraft:stone"));
+            j.remaining = 100;
+            out.add(j);
+        }
+        return out;
+    }
+
+    private static List<ActionLogEntry> entries(int count) {
+        List<ActionLogEntry> out = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            JsonObject p = new JsonObject();
+            p.addProperty("material", "minecraft:glass");
+            p.addProperty("radius", 2);
+            p.addProperty("reason", "Heuristic Planner");
+            out.add(new ActionLogEntry(1_700_000_000_000L + i * 50L, i, "CAGE", "Steve", true, 123_456, 40, 0, p));
+        }
+        return out;
+    }
+
+    // The log line as the old path built it: a JsonObject tree serialised by Gson.
+    private static JsonObject tree(ActionLogEntry e) {
+        JsonObject o = new JsonObject();
+        o.addProperty("ts", Instant.ofEpochMilli(e.epochMillis()).toString());
+        o.addProperty("tick", e.tick());
+        o.addProperty("type", e.type());
+        o.addProperty("target", e.target());
+        o.addProperty("ok", e.ok());
+        o.addProperty("duration_ms", Math.round(e.costNanos() / 1_000.0) / 1_000.0);
+        o.addProperty("blocks", e.blocks());
+        o.addProperty("entities", e.entities());
+        if (e.params() != null) o.add("params", e.params());
+        return o;
+    }
+
+    private static void checkSame(RollbackJob job, ActionLogEntry entry) throws Exception {
+        StringWriter jw = new StringWriter();
+        job.write(new JsonWriter(jw));
+        if (!JsonParser.parseString(jw.toString()).equals(JsonParser.parseString(GSON.toJson(job))))
+            throw new IllegalStateException("streamed rollback job differs from Gson: " + jw);
+        RollbackJob back = RollbackJob.read(new JsonReader(new StringReader(GSON.toJson(job))));
+        if (back.cells.size() != job.cells.size() || back.seq != job.seq || !back.id.equals(job.id))
+            throw new IllegalStateException("streamed reader lost data from a Gson-written job");
+        StringWriter lw = new StringWriter();
+        entry.write(new JsonWriter(lw));
+        if (!JsonParser.parseString(lw.toString()).equals(tree(entry)))
+            throw new IllegalStateException("streamed log line differs from the Gson tree: " + lw);
+    }
+
+    // ===== MEASUREMENT =====
+    private static void bench(String name, int iters, Op op) throws Exception {
+        for (int i = 0; i < WARMUP_ROUNDS; i++) op.run();
+        long a0 = allocated(), t0 = System.nanoTime();
+        for (int i = 0; i < iters; i++) op.run();
+        long ns = System.nanoTime() - t0, bytes = allocated() - a0;
+        System.out.printf(Locale.ROOT, "%-28s %9.2f ms/op %9.1f MB/op%n", name, ns / 1e6 / iters, bytes / 1e6 / iters);
+    }
+
+    private static long allocated() {
+        var mx = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        return mx.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
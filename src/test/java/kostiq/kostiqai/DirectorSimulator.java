@@ -0,0 +1,453 @@
+package kostiq.kostiqai;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+
+/**
+ * Headless load test for the director: synthetic players, a fake tick clock and seeded RNG.
+ * Drives the same timer cadence, per-player schedule, plan-all path, difficulty curve, governor,
+ * pacing, diversity and heuristic planner code the mod runs, with the action bodies replaced by
+ * bookkeeping, so thousands of players over millions of ticks finish in seconds. Not simulated:
+ * reactive plans (there are no gameplay events; with {@code reactive.enabled} the timer still runs
+ * at its stretched period, so the report is the timer-only share) and queued action steps with their
+ * per-tick budget (bodies are bookkeeping). Same seed and options give the same action sequence
+ * (printed as a digest) as long as the governor, which reacts to measured tick time, stays NORMAL.
+ * <p>
+ * {@code ./gradlew runDirectorSim --args="--players=5000 --ticks=1728000 --worlds=3 --seed=42"}
+ * <p>
+ * Options: players, ticks, worlds, seed, config (a kostiqai.json), difficulty, period (ticks),
+ * mspt (baseline server tick time the director's own cost is added to), mild/spicy/off/nether
+ * (player fractions), json (write the report there as well).
+ */
+public final class DirectorSimulator {
+
+    // ===== SYNTHETIC STATE =====
+    private static final class SimPlayer {
+        final UUID uuid;
+        final String name;
+        final String mode;
+        final int world;
+        final boolean nether;
+        final Deque<String> recent = new ArrayDeque<>(4);
+        int actions = 0;
+        int lastHit = 0;
+        int maxGap = 0;
+
+        SimPlayer(UUID uuid, String name, String mode, int world, boolean nether) {
+            this.uuid = uuid; this.name = name; this.mode = mode; this.world = world; this.nether = nether;
+        }
+    }
+
+    private static final class SimDirector {
+        final String label;
+        final List<SimPlayer> players = new ArrayList<>();
+        final Map<String, SimPlayer> byName = new HashMap<>();
+        final DiversityWindow diversity = new DiversityWindow();
+        final Random planRng, rng;
+        int nextAllowedPlanTick;
+        int plans = 0;
+
+        SimDirector(String label, long seed) {
+            this.label = label;
+            this.planRng = new Random(seed);
+            this.rng = new Random(~seed);
+        }
+    }
+
+    private final Kostiqai.Cfg cfg;
+    private final int ticks;
+    private final long baseMsptNanos;
+    private final List<SimDirector> directors = new ArrayList<>();
+    private final List<SimPlayer> players = new ArrayList<>();
+    private final Map<UUID, SimPlayer> byUuid = new HashMap<>();
+
+    private final DifficultyCurve curve = new DifficultyCurve();
+    private final TickGovernor governor = new TickGovernor();
+    private final PlayerPacing pacing = new PlayerPacing();
+    private final TickProfiler perf = new TickProfiler(Long.MAX_VALUE);
+    private final PlanSchedule schedule = new PlanSchedule();
+    private final List<UUID> duePlayers = new ArrayList<>();
+
+    private int tick = 0;
+    private final Map<String, Integer> mix = new TreeMap<>();
+    private final int[] bySeverity = new int[6];
+    private final long[] ticksAtLevel = new long[TickGovernor.Level.values().length];
+    private int substitutions = 0, skippedCooldown = 0, skippedRepeat = 0;
+    private long digest = 1125899906842597L;
+
+    DirectorSimulator(Kostiqai.Cfg cfg, Map<String, String> opt) {
+        this.cfg = cfg;
+        this.ticks = Integer.parseInt(opt.getOrDefault("ticks", "1728000"));
+        this.baseMsptNanos = (long) (Double.parseDouble(opt.getOrDefault("mspt", "25")) * 1_000_000.0);
+        long seed = Long.parseLong(opt.getOrDefault("seed", "42"));
+        int worlds = Math.max(1, Integer.parseInt(opt.getOrDefault("worlds", "3")));
+        int count = Math.max(0, Integer.parseInt(opt.getOrDefault("players", "2000")));
+        double mild = Double.parseDouble(opt.getOrDefault("mild", "0.15"));
+        double spicy = Double.parseDouble(opt.getOrDefault("spicy", "0.10"));
+        double off = Double.parseDouble(opt.getOrDefault("off", "0.05"));
+        double nether = Double.parseDouble(opt.getOrDefault("nether", "0.15"));
+
+        governor.configure(cfg.governor.enabled, cfg.governor.strainedMspt, cfg.governor.criticalMspt,
+                cfg.governor.hysteresisMspt, cfg.governor.minScale);
+
+        int period = Math.max(40, cfg.planningPeriodTicks);
+        for (int w = 0; w < worlds; w++) {
+            String label = w == 0 ? "overworld" : w == 1 ? "the_nether" : "world_" + w;
+            SimDirector d = new SimDirector(label, seed ^ label.hashCode());
+            d.nextAllowedPlanTick = period;
+            directors.add(d);
+        }
+
+        // player population; world 1 is the nether when there is more than one world
+        Random pop = new Random(seed);
+        for (int i = 0; i < count; i++) {
+            double r = pop.nextDouble();
+            String mode = r < off ? "OFF" : r < off + mild ? "MILD" : r < off + mild + spicy ? "SPICY" : "AUTO";
+            boolean inNether = worlds > 1 && pop.nextDouble() < nether;
+            int world = inNether ? 1 : (worlds > 2 ? (pop.nextBoolean() ? 0 : 2 + pop.nextInt(worlds - 2)) : 0);
+            SimPlayer p = new SimPlayer(new UUID(pop.nextLong(), pop.nextLong()), String.format(Locale.ROOT, "sim%05d", i), mode, world, inNether);
+            players.add(p);
+            byUuid.put(p.uuid, p);
+            directors.get(world).players.add(p);
+            directors.get(world).byName.put(p.name, p);
+        }
+    }
+
+    // ===== TICK LOOP (the planning half of Kostiqai.onTick; plans here finish in the same tick) =====
+    void run() {
+        int period = Math.max(40, cfg.planningPeriodTicks);
+        int cool = Math.max(0, cfg.cooldownTicks);
+        for (tick = 1; tick <= ticks; tick++) {
+            long t0 = System.nanoTime();
+            long offThread = 0;
+            curve.update(tick, cfg);
+            if (cfg.playerSchedule.enabled) offThread += planStaggered(period, cool);
+            else for (SimDirector d : directors) {
+                if (tick < d.nextAllowedPlanTick || d.players.isEmpty()) continue;
+                offThread += planAndRun(d, d.players);
+                int j = cfg.jitterTicks > 0 ? d.rng.nextInt(cfg.jitterTicks + 1) : 0;
+                d.nextAllowedPlanTick = tick + governor.stretchTicks(cfg.reactive.timerTicks(period) + cool) + j;
+            }
+            // the heuristic runs on the planner pool in the mod, so only the rest lands on the tick
+            long serverNs = System.nanoTime() - t0 - offThread;
+            perf.recordNanos("tick", serverNs);
+            governor.sample(baseMsptNanos + serverNs);
+            ticksAtLevel[governor.level().ordinal()]++;
+        }
+    }
+
+    // Kostiqai.planStaggered: players due this tick are planned per world, everyone due is rescheduled.
+    private long planStaggered(int period, int cool) {
+        if (schedule.size() != players.size()) {
+            for (SimPlayer p : players)
+                if (!schedule.contains(p.uuid)) schedule.schedule(p.uuid, tick + PlanSchedule.offset(p.uuid, cfg.playerSchedule.periodTicks(p.mode, period)));
+        }
+        duePlayers.clear();
+        schedule.pollDue(tick, duePlayers);
+        if (duePlayers.isEmpty()) return 0;
+
+        Map<SimDirector, List<SimPlayer>> byWorld = new LinkedHashMap<>();
+        for (UUID id : duePlayers) {
+            SimPlayer p = byUuid.get(id);
+            SimDirector d = directors.get(p.world);
+            int base = cfg.reactive.timerTicks(cfg.playerSchedule.periodTicks(p.mode, period));
+            int j = cfg.jitterTicks > 0 ? d.rng.nextInt(cfg.jitterTicks + 1) : 0;
+            schedule.schedule(id, tick + governor.stretchTicks(base + cool) + j);
+            if (!p.mode.equals("OFF")) byWorld.computeIfAbsent(d, k -> new ArrayList<>()).add(p);
+        }
+        long offThread = 0;
+        for (var e : byWorld.entrySet()) offThread += planAndRun(e.getKey(), e.getValue());
+        return offThread;
+    }
+
+    // Returns the nanos spent in the (off-thread) planner.
+    private long planAndRun(SimDirector d, List<SimPlayer> planned) {
+        long t0 = System.nanoTime();
+        JsonObject snapshot = snapshot(d, planned);
+        perf.record("snapshot", t0);
+
+        Set<String> eligible = new HashSet<>();
+        for (String t : ActionCatalog.ALL_TYPES) if (!cfg.banned(t) && governorAllows(t)) eligible.add(t);
+        if (cfg.planAll.enabled) eligible.removeIf(t -> d.diversity.overused(t, cfg.maxTypeShare));
+
+        long p0 = System.nanoTime();
+        JsonArray plan = cfg.planAll.enabled
+                ? HeuristicPlanner.planAll(snapshot, eligible, pacing::lastAction, cfg.planAll.actionsPerPlayer, cfg.planAll.maxActions, cfg.maxTypeShare, d.planRng.nextLong())
+                : HeuristicPlanner.plan(snapshot, eligible, pacing::lastAction, cfg.maxActionsPerCycle, d.planRng);
+        long planNs = System.nanoTime() - p0;
+        perf.recordNanos("plan.heuristic", planNs);
+        d.plans++;
+
+        long a0 = System.nanoTime();
+        runActions(d, plan);
+        perf.record("actions", a0);
+        return planNs;
+    }
+
+    // Only the fields the heuristic reads; the mod's snapshot also carries position, biome, health, etc.
+    private JsonObject snapshot(SimDirector d, List<SimPlayer> planned) {
+        JsonArray arr = new JsonArray();
+        for (SimPlayer p : planned) {
+            JsonObject o = new JsonObject();
+            o.addProperty("uuid", p.uuid.toString());
+            o.addProperty("name", p.name);
+            o.addProperty("mode", p.mode);
+            o.addProperty("isNether", p.nether);
+            JsonArray recent = new JsonArray();
+            for (String t : p.recent) recent.add(t);
+            o.add("recent", recent);
+            arr.add(o);
+        }
+        JsonObject root = new JsonObject();
+        root.add("players", arr);
+        root.addProperty("maxSeverityNow", allowedMaxSeverityNow());
+        root.addProperty("dimension", d.label);
+        return root;
+    }
+
+    private int allowedMaxSeverityNow() {
+        return governor.severityCap(cfg.severityCap(curve.stage(), curve.nasty()));
+    }
+
+    private boolean governorAllows(String type) {
+        if (!governor.allows(type)) return false;
+        return !(governor.worldEditsPaused() && ActionCatalog.WORLD_EDIT_TYPES.contains(type));
+    }
+
+    private boolean safeWindow() {
+        return cfg.difficulty == DifficultyCurve.Difficulty.BALANCED && !curve.nasty();
+    }
+
+    // ===== ACTIONS (Kostiqai.runActions with the same ActionSelector; the do* bodies become bookkeeping) =====
+    private void runActions(SimDirector d, JsonArray actions) {
+        ActionSelector sel = new ActionSelector(cfg, pacing, d.diversity, this::governorAllows, allowedMaxSeverityNow(),
+                safeWindow(), tick, d.rng);
+        Set<UUID> armAfter = new HashSet<>();
+        int ran = 0;
+        for (JsonElement el : actions) {
+            if (ran >= sel.cap()) break;
+            JsonObject a = el.getAsJsonObject();
+            String type = a.get("type").getAsString();
+            if (cfg.banned(type)) continue;
+
+            String admitted = sel.admit(type);
+            if (admitted == null) continue;
+            if (!admitted.equals(type)) substitutions++;
+            String requestedTarget = a.has("target") ? a.get("target").getAsString() : "";
+            String unique = sel.unique(admitted, requestedTarget);
+            if (!unique.equals(admitted)) substitutions++;
+            type = unique;
+
+            List<SimPlayer> candidates = sel.candidates(d.players, p -> !p.mode.equals("OFF") && !pacing.onCooldown(p.uuid, tick), p -> p.uuid);
+            SimPlayer chosen = requestedTarget.isEmpty() ? null : d.byName.get(requestedTarget);
+            if (chosen == null) chosen = sel.pickFair(candidates);
+            List<SimPlayer> targets = cfg.fanoutAll ? candidates : List.of(chosen);
+
+            for (SimPlayer p : targets) {
+                if (pacing.onCooldown(p.uuid, tick)) { skippedCooldown++; continue; }
+                if (p.mode.equals("OFF")) continue;
+                if (ActionSelector.minorRepeat(p.recent, type)) { skippedRepeat++; continue; }
+                String forPlayer = sel.forPlayer(type, p.uuid, p.mode.equals("MILD"), p.recent);
+                if (forPlayer == null) continue;
+                if (!forPlayer.equals(type)) substitutions++;
+                type = forPlayer;
+
+                // the action "runs": same bookkeeping as a successful do* in the mod
+                sel.acted(p.uuid, type, p.recent);
+                if (sel.perTarget()) armAfter.add(p.uuid); else sel.arm(p.uuid);
+
+                p.maxGap = Math.max(p.maxGap, tick - p.lastHit);
+                p.lastHit = tick;
+                p.actions++;
+                mix.merge(type, 1, Integer::sum);
+                bySeverity[ActionCatalog.severityOf(type)]++;
+                digest = digest * 31 + (type.hashCode() * 1_000_003L + p.name.hashCode()) ^ tick;
+            }
+            ran++;
+        }
+        for (UUID id : armAfter) sel.arm(id);
+    }
+
+    // ===== REPORT =====
+    JsonObject report(long wallNanos) {
+        JsonObject r = new JsonObject();
+        r.addProperty("players", players.size());
+        r.addProperty("worlds", directors.size());
+        r.addProperty("ticks", ticks);
+        r.addProperty("wallSeconds", wallNanos / 1e9);
+        r.addProperty("speedup", (ticks / 20.0) / Math.max(1e-9, wallNanos / 1e9));
+        r.addProperty("difficulty", cfg.difficulty.name());
+        r.addProperty("schedule", cfg.playerSchedule.enabled ? "player" : "world");
+        r.addProperty("planAll", cfg.planAll.enabled);
+        r.addProperty("timerPeriodTicks", cfg.reactive.timerTicks(Math.max(40, cfg.planningPeriodTicks)));
+        r.addProperty("digest", Long.toHexString(digest));
+
+        JsonObject cost = new JsonObject();
+        for (var e : perf.summaries().entrySet()) {
+            JsonObject s = new JsonObject();
+            s.addProperty("count", e.getValue().count());
+            s.addProperty("p50Nanos", e.getValue().p50());
+            s.addProperty("p99Nanos", e.getValue().p99());
+            s.addProperty("maxNanos", e.getValue().max());
+            cost.add(e.getKey(), s);
+        }
+        r.add("cost", cost);
+
+        // fairness over players the director may target
+        List<SimPlayer> eligible = new ArrayList<>();
+        for (SimPlayer p : players) if (!p.mode.equals("OFF")) eligible.add(p);
+        int[] counts = new int[eligible.size()];
+        int[] gaps = new int[eligible.size()];
+        for (int i = 0; i < counts.length; i++) {
+            SimPlayer p = eligible.get(i);
+            counts[i] = p.actions;
+            gaps[i] = Math.max(p.maxGap, ticks - p.lastHit); // a never-hit player waited the whole run
+        }
+        Arrays.sort(counts);
+        Arrays.sort(gaps);
+        JsonObject fair = new JsonObject();
+        fair.addProperty("eligiblePlayers", counts.length);
+        fair.addProperty("neverTargeted", (int) Arrays.stream(counts).filter(c -> c == 0).count());
+        fair.addProperty("min", pct(counts, 0.0));
+        fair.addProperty("p10", pct(counts, 0.10));
+        fair.addProperty("p50", pct(counts, 0.50));
+        fair.addProperty("p90", pct(counts, 0.90));
+        fair.addProperty("max", pct(counts, 1.0));
+        fair.addProperty("jain", jain(counts));
+        fair.addProperty("gini", gini(counts));
+        fair.addProperty("maxGapTicksP50", pct(gaps, 0.50));
+        fair.addProperty("maxGapTicksP99", pct(gaps, 0.99));
+        fair.addProperty("maxGapTicksMax", pct(gaps, 1.0));
+        r.add("fairness", fair);
+
+        long total = mix.values().stream().mapToLong(Integer::longValue).sum();
+        JsonObject types = new JsonObject();
+        mix.entrySet().stream().sorted(Map.Entry.<String, Integer>comparingByValue().reversed())
+                .forEach(e -> types.addProperty(e.getKey(), e.getValue()));
+        JsonObject sev = new JsonObject();
+        for (int s = 1; s <= 5; s++) sev.addProperty(String.valueOf(s), bySeverity[s]);
+        JsonObject actions = new JsonObject();
+        actions.addProperty("total", total);
+        actions.addProperty("substitutions", substitutions);
+        actions.addProperty("skippedCooldown", skippedCooldown);
+        actions.addProperty("skippedRepeat", skippedRepeat);
+        actions.add("byType", types);
+        actions.add("bySeverity", sev);
+        r.add("actions", actions);
+
+        JsonObject plans = new JsonObject();
+        for (SimDirector d : directors) plans.addProperty(d.label, d.plans);
+        r.add("plansByWorld", plans);
+
+        JsonObject gov = new JsonObject();
+        for (TickGovernor.Level l : TickGovernor.Level.values()) gov.addProperty(l.name(), ticksAtLevel[l.ordinal()]);
+        r.add("governorTicks", gov);
+        return r;
+    }
+
+    List<String> lines(JsonObject r, long wallNanos) {
+        List<String> out = new ArrayList<>();
+        out.add(String.format(Locale.ROOT, "%d players in %d worlds, %d ticks (%.1f game hours) in %.1fs wall, %.0fx real time, difficulty=%s, digest=%s",
+                players.size(), directors.size(), ticks, ticks / 72000.0, wallNanos / 1e9,
+                r.get("speedup").getAsDouble(), cfg.difficulty, r.get("digest").getAsString()));
+        out.add(String.format(Locale.ROOT, "schedule=%s planAll=%s timer period=%ds%s",
+                r.get("schedule").getAsString(), cfg.planAll.enabled, r.get("timerPeriodTicks").getAsInt() / 20,
+                cfg.reactive.enabled ? " (stretched for reactive plans, which are not simulated)" : ""));
+        out.add("-- cost (server thread: tick, snapshot, actions; planner pool: plan.heuristic)");
+        out.addAll(perf.report());
+        JsonObject f = r.getAsJsonObject("fairness");
+        out.add("-- fairness (actions per eligible player)");
+        out.add(String.format(Locale.ROOT, "n=%d never=%d min=%d p10=%d p50=%d p90=%d max=%d jain=%.3f gini=%.3f",
+                f.get("eligiblePlayers").getAsInt(), f.get("neverTargeted").getAsInt(), f.get("min").getAsInt(), f.get("p10").getAsInt(),
+                f.get("p50").getAsInt(), f.get("p90").getAsInt(), f.get("max").getAsInt(), f.get("jain").getAsDouble(), f.get("gini").getAsDouble()));
+        out.add(String.format(Locale.ROOT, "longest wait per player: p50=%ds p99=%ds max=%ds",
+                f.get("maxGapTicksP50").getAsInt() / 20, f.get("maxGapTicksP99").getAsInt() / 20, f.get("maxGapTicksMax").getAsInt() / 20));
+        JsonObject a = r.getAsJsonObject("actions");
+        long total = Math.max(1, a.get("total").getAsLong());
+        out.add(String.format(Locale.ROOT, "-- action mix (%d total, %d substituted, %d skipped on cooldown, %d skipped as repeats)",
+                a.get("total").getAsLong(), a.get("substitutions").getAsInt(), a.get("skippedCooldown").getAsInt(), a.get("skippedRepeat").getAsInt()));
+        StringBuilder sev = new StringBuilder("by severity:");
+        for (var e : a.getAsJsonObject("bySeverity").entrySet())
+            sev.append(String.format(Locale.ROOT, " %s=%.1f%%", e.getKey(), 100.0 * e.getValue().getAsLong() / total));
+        out.add(sev.toString());
+        for (var e : a.getAsJsonObject("byType").entrySet())
+            out.add(String.format(Locale.ROOT, "%-20s %8d %5.1f%%", e.getKey(), e.getValue().getAsLong(), 100.0 * e.getValue().getAsLong() / total));
+        out.add("-- plans by world " + r.get("plansByWorld") + ", governor ticks " + r.get("governorTicks"));
+        return out;
+    }
+
+    private static int pct(int[] sorted, double q) {
+        if (sorted.length == 0) return 0;
+        return sorted[(int) Math.min(sorted.length - 1, Math.floor(q * (sorted.length - 1) + 0.5))];
+    }
+
+    // 1.0 = perfectly even, 1/n = one player gets everything
+    private static double jain(int[] v) {
+        double sum = 0, sq = 0;
+        for (int x : v) { sum += x; sq += (double) x * x; }
+        return sq == 0 ? 1.0 : (sum * sum) / (v.length * sq);
+    }
+
+    // expects ascending input
+    private static double gini(int[] sorted) {
+        double sum = 0, weighted = 0;
+        for (int i = 0; i < sorted.length; i++) { sum += sorted[i]; weighted += (i + 1.0) * sorted[i]; }
+        return sum == 0 ? 0.0 : (2.0 * weighted) / (sorted.length * sum) - (sorted.length + 1.0) / sorted.length;
+    }
+
+    // ===== ENTRY =====
+    public static void main(String[] args) throws Exception {
+        Map<String, String> opt = new LinkedHashMap<>();
+        for (int i = 0; i < args.length; i++) {
+            String a = args[i];
+            if (!a.startsWith("--")) continue;
+            int eq = a.indexOf('=');
+            if (eq > 0) opt.put(a.substring(2, eq), a.substring(eq + 1));
+            else if (i + 1 < args.length && !args[i + 1].startsWith("--")) opt.put(a.substring(2), args[++i]);
+            else opt.put(a.substring(2), "true");
+        }
+
+        Gson gson = new GsonBuilder().setPrettyPrinting().create();
+        Kostiqai.Cfg cfg = opt.containsKey("config")
+                ? gson.fromJson(Files.readString(Path.of(opt.get("config")), StandardCharsets.UTF_8), Kostiqai.Cfg.class)
+                : new Kostiqai.Cfg();
+        if (opt.containsKey("difficulty")) cfg.difficulty = DifficultyCurve.Difficulty.valueOf(opt.get("difficulty").toUpperCase(Locale.ROOT));
+        if (opt.containsKey("period")) cfg.planningPeriodTicks = Integer.parseInt(opt.get("period"));
+        cfg.freeze();
+
+        DirectorSimulator sim = new DirectorSimulator(cfg, opt);
+        long t0 = System.nanoTime();
+        sim.run();
+        long wall = System.nanoTime() - t0;
+
+        JsonObject report = sim.report(wall);
+        for (String line : sim.lines(report, wall)) System.out.println(line);
+        if (opt.containsKey("json")) {
+            Path out = Path.of(opt.get("json"));
+            if (out.getParent() != null) Files.createDirectories(out.getParent());
+            Files.writeString(out, gson.toJson(report), StandardCharsets.UTF_8);
+            System.out.println("report written to " + out);
+        }
+    }
+}